@@ -17,12 +17,14 @@ package org.greencheek.utils.environment.propertyplaceholder.builder;
 
 import org.greencheek.utils.environment.propertyplaceholder.merger.EnvironmentSpecificPropertiesMerger;
 import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.merger.StringPool;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ResourceLoader;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ResourceLoaderFactory;
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
 /**
@@ -36,6 +38,13 @@ public class EnvironmentSpecificPropertiesMergerBuilder implements PropertiesMer
     private boolean outputtingPropertiesInDebugMode = DEFAULT_OUTPUTTING_PROPERTIES_IN_DEBUG_MODE;
 
     private boolean strictMergingOfProperties = DEFAULT_STRICT_MERGING_OF_PROPERTIES;
+    private boolean returningReadOnlyMergedProperties = DEFAULT_RETURNING_READ_ONLY_MERGED_PROPERTIES;
+    private boolean loadingPropertiesConcurrently = DEFAULT_LOADING_PROPERTIES_CONCURRENTLY;
+    private ExecutorService executorForLoadingProperties;
+    private boolean parsingLargePropertiesFilesInParallel = DEFAULT_PARSING_LARGE_PROPERTIES_FILES_IN_PARALLEL;
+    private boolean deduplicatingPropertyStrings = DEFAULT_DEDUPLICATING_PROPERTY_STRINGS;
+    private StringPool stringPoolForDeduplicatingProperties;
+    private boolean listingDirectoriesOfPropertiesFiles = DEFAULT_LISTING_DIRECTORIES_OF_PROPERTIES_FILES;
     private String nameOfDefaultPropertiesFile = DEFAULT_DEFAULT_PROPERTIES_FILENAME;
 
     private char delimiterUsedForSeparatingSwitchingConfigurationVariables = DEFAULT_DELIMITER_USER_FOR_SEPARATING_SWITCHING_CONFIGURATION_VARIABLES;
@@ -275,6 +284,83 @@ public class EnvironmentSpecificPropertiesMergerBuilder implements PropertiesMer
         return strictMergingOfProperties;
     }
 
+    @Override
+    public PropertiesMergerBuilder setReturningReadOnlyMergedProperties(boolean readOnly) {
+        this.returningReadOnlyMergedProperties = readOnly;
+        return this;
+    }
+
+    @Override
+    public boolean isReturningReadOnlyMergedProperties() {
+        return returningReadOnlyMergedProperties;
+    }
+
+    @Override
+    public PropertiesMergerBuilder setLoadingPropertiesConcurrently(boolean concurrently) {
+        this.loadingPropertiesConcurrently = concurrently;
+        return this;
+    }
+
+    @Override
+    public boolean isLoadingPropertiesConcurrently() {
+        return loadingPropertiesConcurrently;
+    }
+
+    @Override
+    public PropertiesMergerBuilder setExecutorForLoadingProperties(ExecutorService executor) {
+        this.executorForLoadingProperties = executor;
+        return this;
+    }
+
+    @Override
+    public ExecutorService getExecutorForLoadingProperties() {
+        return executorForLoadingProperties;
+    }
+
+    @Override
+    public PropertiesMergerBuilder setParsingLargePropertiesFilesInParallel(boolean parallel) {
+        this.parsingLargePropertiesFilesInParallel = parallel;
+        return this;
+    }
+
+    @Override
+    public boolean isParsingLargePropertiesFilesInParallel() {
+        return parsingLargePropertiesFilesInParallel;
+    }
+
+    @Override
+    public PropertiesMergerBuilder setDeduplicatingPropertyStrings(boolean deduplicating) {
+        this.deduplicatingPropertyStrings = deduplicating;
+        return this;
+    }
+
+    @Override
+    public boolean isDeduplicatingPropertyStrings() {
+        return deduplicatingPropertyStrings;
+    }
+
+    @Override
+    public PropertiesMergerBuilder setStringPoolForDeduplicatingProperties(StringPool pool) {
+        this.stringPoolForDeduplicatingProperties = pool;
+        return this;
+    }
+
+    @Override
+    public StringPool getStringPoolForDeduplicatingProperties() {
+        return stringPoolForDeduplicatingProperties;
+    }
+
+    @Override
+    public PropertiesMergerBuilder setListingDirectoriesOfPropertiesFiles(boolean listing) {
+        this.listingDirectoriesOfPropertiesFiles = listing;
+        return this;
+    }
+
+    @Override
+    public boolean isListingDirectoriesOfPropertiesFiles() {
+        return listingDirectoriesOfPropertiesFiles;
+    }
+
 
     @Override
     public PropertiesMergerBuilder setRelativeLocationOfFilesOverridingDefaultProperties(String relativeLocation) {
@@ -31,6 +31,7 @@ public class EnvironmentSpecificPropertiesResolverBuilder implements PropertiesR
 
     private boolean trimmingPropertyValues = DEFAULT_TRIMMING_PROPERTY_VALUES ;
     private ValueResolver propertyValueResolver = DEFAULT_PROPERTY_VALUE_RESOLVER;
+    private boolean preResolvingPropertyValues = DEFAULT_PRE_RESOLVING_PROPERTY_VALUES;
 
     @Override
     public PropertiesResolverBuilder setTrimmingPropertyValues(boolean trimValues) {
@@ -43,6 +44,17 @@ public class EnvironmentSpecificPropertiesResolverBuilder implements PropertiesR
         return this.trimmingPropertyValues;
     }
 
+    @Override
+    public PropertiesResolverBuilder setPreResolvingPropertyValues(boolean preResolve) {
+        this.preResolvingPropertyValues = preResolve;
+        return this;
+    }
+
+    @Override
+    public boolean isPreResolvingPropertyValues() {
+        return this.preResolvingPropertyValues;
+    }
+
     @Override
     public PropertiesResolverBuilder setPropertyValueResolver(ValueResolver resolver) {
         propertyValueResolver = resolver;
@@ -16,6 +16,7 @@
 package org.greencheek.utils.environment.propertyplaceholder.builder;
 
 import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.merger.StringPool;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.JavaPlatformOperatingEnvironmentVariableReader;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.*;
@@ -24,6 +25,7 @@ import org.greencheek.utils.environment.propertyplaceholder.resolver.value.Varia
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
 /**
@@ -59,6 +61,11 @@ public interface PropertiesMergerBuilder {
 
     final static String DEFAULT_DEFAULT_PROPERTIES_FILENAME = "default";
     final static boolean DEFAULT_STRICT_MERGING_OF_PROPERTIES = false;
+    final static boolean DEFAULT_RETURNING_READ_ONLY_MERGED_PROPERTIES = false;
+    final static boolean DEFAULT_LOADING_PROPERTIES_CONCURRENTLY = false;
+    final static boolean DEFAULT_PARSING_LARGE_PROPERTIES_FILES_IN_PARALLEL = false;
+    final static boolean DEFAULT_DEDUPLICATING_PROPERTY_STRINGS = false;
+    final static boolean DEFAULT_LISTING_DIRECTORIES_OF_PROPERTIES_FILES = false;
     final static String DEFAULT_RELATIVE_LOCATION_OF_FILES_OVERRIDE_DEFAULT = "environments/";
     final static String DEFAULT_OPERATIONAL_OVERRIDE_LOCATION = (System.getProperty("os.name")==null ||
                                                                  System.getProperty("os.name").toLowerCase().startsWith("win"))
@@ -226,6 +233,88 @@ public interface PropertiesMergerBuilder {
     public PropertiesMergerBuilder setStrictMergingOfProperties(boolean strict);
     public boolean isStrictMergingOfProperties();
 
+    /**
+     * When true the merger returns the same read only view of the merged properties from every call to
+     * {@link PropertiesMerger#getMergedProperties()}, and the same unmodifiable map from every call to
+     * {@link PropertiesMerger#getMergedPropertiesAsMap()}; rather than a new copy on each call.
+     * Attempts to modify the returned properties throw an {@link UnsupportedOperationException}.
+     *
+     * @param readOnly true if the merged properties are to be returned as a shared read only view
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setReturningReadOnlyMergedProperties(boolean readOnly);
+    public boolean isReturningReadOnlyMergedProperties();
+
+    /**
+     * When true the default properties file, each of the environment override files and each of the operational
+     * override files are looked for and read at the same time, rather than one after another.  This reduces the time
+     * taken to build the merger when the files are on a slow (i.e. network) filesystem.  The files are still merged
+     * in the same order.
+     *
+     * @param concurrently true if the properties files are to be loaded concurrently
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setLoadingPropertiesConcurrently(boolean concurrently);
+    public boolean isLoadingPropertiesConcurrently();
+
+    /**
+     * The executor used to load the properties files concurrently.  When null (the default) a thread is started for
+     * each file; a virtual thread if the java platform supports them.  An executor that is set is not shutdown
+     * by the merger.
+     *
+     * @param executor the executor on which the properties files are loaded, or null.
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setExecutorForLoadingProperties(ExecutorService executor);
+    public ExecutorService getExecutorForLoadingProperties();
+
+    /**
+     * When true a large properties file (one that can be split into chunks of at least
+     * {@link org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesParser#MINIMUM_CHUNK_SIZE} bytes) is
+     * split into chunks at the end of logical lines, that are parsed in parallel on the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}.  The result is the same as parsing the file in one go.
+     *
+     * @param parallel true if large properties files are to be parsed in parallel
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setParsingLargePropertiesFilesInParallel(boolean parallel);
+    public boolean isParsingLargePropertiesFilesInParallel();
+
+    /**
+     * When true the keys and values read from the properties files are deduplicated, as they are loaded; so that
+     * equal keys and values share a single String object.  Unless a pool is given with
+     * {@link #setStringPoolForDeduplicatingProperties(StringPool)}, a pool is created for each merge.
+     *
+     * @param deduplicating true if the keys and values of the properties are to be deduplicated
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setDeduplicatingPropertyStrings(boolean deduplicating);
+    public boolean isDeduplicatingPropertyStrings();
+
+    /**
+     * The pool that the keys and values of the properties are deduplicated against, when deduplicating.  When null (the
+     * default) a pool is created for each merge.  Use
+     * {@link org.greencheek.utils.environment.propertyplaceholder.merger.WeakStringPool#getSharedInstance()} to
+     * deduplicate the properties of every merger in the JVM against each other.
+     *
+     * @param pool the pool to deduplicate the strings of the properties against, or null
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setStringPoolForDeduplicatingProperties(StringPool pool);
+    public StringPool getStringPoolForDeduplicatingProperties();
+
+    /**
+     * When true, the directories on the filesystem that properties files are looked for in are listed once per
+     * merge; and whether each of the possible files exists is answered from the listing, rather than checking for
+     * each file.  This is of most use when the configuration is on a network filesystem.  Files on the classpath
+     * are not affected.
+     *
+     * @param listing true if the directories of the properties files are to be listed
+     * @return The builder
+     */
+    public PropertiesMergerBuilder setListingDirectoriesOfPropertiesFiles(boolean listing);
+    public boolean isListingDirectoriesOfPropertiesFiles();
+
 
 
 
@@ -35,6 +35,7 @@ import java.util.Properties;
 public interface PropertiesResolverBuilder {
     final static boolean DEFAULT_TRIMMING_PROPERTY_VALUES = true;
     final static ValueResolver DEFAULT_PROPERTY_VALUE_RESOLVER = new VariablePlaceholderValueResolver();
+    final static boolean DEFAULT_PRE_RESOLVING_PROPERTY_VALUES = false;
 
     public PropertiesResolver build(PropertiesMerger mergedPropertiesLoader);
 
@@ -65,5 +66,20 @@ public interface PropertiesResolverBuilder {
     public PropertiesResolverBuilder setTrimmingPropertyValues(boolean b);
     public boolean isTrimmingPropertyValues();
 
+    /**
+     * When enabled the PropertiesResolver resolves all of the merged properties once, when it is built, and
+     * holds the resolved values in an immutable index.  {@link PropertiesResolver#getProperty(String)} is then
+     * a single map lookup, rather than a resolution of the value's placeholders on every call.
+     * <p>
+     * As the values are resolved at build time, any environment or system properties used to resolve
+     * placeholders are those available at the time the resolver was built.
+     * </p>
+     *
+     * @param preResolve true if the property values are to be resolved when the resolver is built
+     * @return The builder
+     */
+    public PropertiesResolverBuilder setPreResolvingPropertyValues(boolean preResolve);
+    public boolean isPreResolvingPropertyValues();
+
 
 }
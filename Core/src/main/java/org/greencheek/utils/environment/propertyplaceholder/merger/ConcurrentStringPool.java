@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link StringPool} that holds its strings until the pool itself is no longer referenced.  The merger creates one
+ * for each merge, so that the strings of the files being merged are deduplicated against each other.
+ */
+public class ConcurrentStringPool implements StringPool {
+
+    private final ConcurrentMap<String,String> strings = new ConcurrentHashMap<String,String>();
+
+    @Override
+    public String intern(String string) {
+        String pooled = strings.get(string);
+        if(pooled == null) {
+            pooled = strings.putIfAbsent(string,string);
+            if(pooled == null) pooled = string;
+        }
+        return pooled;
+    }
+
+    /**
+     * @return the number of distinct strings in the pool
+     */
+    public int size() {
+        return strings.size();
+    }
+}
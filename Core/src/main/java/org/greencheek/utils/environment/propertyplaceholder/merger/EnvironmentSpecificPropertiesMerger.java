@@ -19,18 +19,30 @@ import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMe
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.exception.NoDefaultPropertiesFileException;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.exception.NoMatchingPropertyException;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.DirectoryListing;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.JarFileCache;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.MetadataResource;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.Resource;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.SnapshotResource;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * Thread safe implementation of the @{link #PropertiesMerger}.  The implementation is constructed via a
@@ -53,6 +65,20 @@ import java.util.regex.Pattern;
  * The obtained properties' values are not modified in any way.  Variables contained within the values should not be
  * modified or resolved.
  *
+ * When the builder is set to return read only merged properties, a single {@link ReadOnlyProperties} is created
+ * once the properties are merged, and it (and its map) are returned from every call; rather than a new copy.
+ *
+ * When the builder is set to deduplicate property strings, the keys and values of each file are replaced, as the file
+ * is loaded, with the instances held by a {@link StringPool}; so equal keys and values share one String object.
+ *
+ * The file that supplied each merged property is recorded, in a compact {@link PropertySources}.
+ *
+ * When the builder is set to load properties concurrently, all of the files are looked for and read at the same
+ * time (on virtual threads when available); the files are then merged in the same order as when loaded one by one.
+ *
+ * When the builder is set to list the directories of the properties files, each directory on the filesystem is
+ * listed once per merge, in a {@link DirectoryListing}; the files that are not in the listing are not looked for.
+ *
  * The implementation is thread safe.
  *
  * User: dominictootell
@@ -82,7 +108,19 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
 
     private final OperatingEnvironmentVariableReader operatingEnvironmentVariableReader;
 
-    private final Properties mergedProperties;
+    private final boolean loadingPropertiesConcurrently;
+    private final ExecutorService executorForLoadingProperties;
+    private final boolean parsingLargePropertiesFilesInParallel;
+    private final boolean deduplicatingPropertyStrings;
+    private final StringPool stringPoolForDeduplicatingProperties;
+    private final boolean listingDirectoriesOfPropertiesFiles;
+
+    /**
+     * The merged properties, which are copied for the caller unless they are returned read only
+     */
+    private final ReadOnlyProperties mergedProperties;
+    private final boolean returningReadOnlyMergedProperties;
+    private final PropertySources propertySources;
 
     /**
      * Holds the list of files that are to be looked for
@@ -90,7 +128,41 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
      */
     private final List<String> possibleOverrideFiles;
 
+    /**
+     * When retaining the layers, the files that were read and the layers they were merged from; so that a changed
+     * file can be merged again without reading the others.
+     */
+    private final boolean retainingLayers;
+    private final List<PropertiesFile> propertiesFiles;
+    private final LayeredProperties layers;
+
+    /**
+     * The files read by other mergers, or null to read every file
+     */
+    private final PropertiesFileCache propertiesFileCache;
+
     public EnvironmentSpecificPropertiesMerger(PropertiesMergerBuilder builder) {
+        this(builder,false);
+    }
+
+    /**
+     * @param builder the configuration of the merger
+     * @param retainingLayers if the properties of each file are kept, for {@link #reload(Set)}
+     */
+    EnvironmentSpecificPropertiesMerger(PropertiesMergerBuilder builder, boolean retainingLayers) {
+        this(builder,builder.getOperatingEnvironmentVariableReader(),retainingLayers,null);
+    }
+
+    /**
+     * @param builder the configuration of the merger
+     * @param operatingEnvironmentVariableReader reads the variables used for switching configuration, in place of
+     *                                           the builder's
+     * @param retainingLayers if the properties of each file are kept, for {@link #reload(Set)}
+     * @param propertiesFileCache the files read by other mergers, that are not read again; or null
+     */
+    EnvironmentSpecificPropertiesMerger(PropertiesMergerBuilder builder,
+                                        OperatingEnvironmentVariableReader operatingEnvironmentVariableReader,
+                                        boolean retainingLayers, PropertiesFileCache propertiesFileCache) {
         List<String> overrideFiles = new ArrayList<String>();
         this.applicationName = builder.getApplicationName();
 
@@ -116,11 +188,18 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
 
         this.strictMergingOfProperties = builder.isStrictMergingOfProperties();
         this.delimiterUsedForSeparatingSwitchingConfigurationVariables = builder.getDelimiterUsedForSeparatingSwitchingConfigurationVariables();
-        this.operatingEnvironmentVariableReader = builder.getOperatingEnvironmentVariableReader();
+        this.operatingEnvironmentVariableReader = operatingEnvironmentVariableReader;
+        this.propertiesFileCache = propertiesFileCache;
 
         this.relativeLocationOfFilesOverridingDefaultProperties = builder.getRelativeLocationOfFilesOverridingDefaultProperties();
         this.sensitivePropertyMasker = builder.getSensitivePropertyMasker();
         this.outputtingPropertiesInDebugMode = builder.isOutputtingPropertiesInDebugMode();
+        this.loadingPropertiesConcurrently = builder.isLoadingPropertiesConcurrently();
+        this.executorForLoadingProperties = builder.getExecutorForLoadingProperties();
+        this.parsingLargePropertiesFilesInParallel = builder.isParsingLargePropertiesFilesInParallel();
+        this.deduplicatingPropertyStrings = builder.isDeduplicatingPropertyStrings();
+        this.stringPoolForDeduplicatingProperties = builder.getStringPoolForDeduplicatingProperties();
+        this.listingDirectoriesOfPropertiesFiles = builder.isListingDirectoriesOfPropertiesFiles();
 
 //        SERVER_ENV
 //        SERVER_ENV.TARGET_ENV
@@ -157,15 +236,171 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
         }
 
         possibleOverrideFiles = overrideFiles;
-        mergedProperties = mergeProperties();
+        this.retainingLayers = retainingLayers;
+        List<PropertiesFile> files = createPropertiesFiles();
+        LayeredProperties merged = mergeProperties(files);
+        mergedProperties = ReadOnlyProperties.wrap(merged.flattenToMap());
+        returningReadOnlyMergedProperties = builder.isReturningReadOnlyMergedProperties();
+        propertySources = merged.getSources();
+        propertiesFiles = retainingLayers ? files : null;
+        layers = retainingLayers ? merged.copyLayers() : null;
+
+    }
+
+    /**
+     * Creates a merger with the same configuration as the given merger.  The files looked for are not recalculated
+     * from the environment.
+     *
+     * @param configuration the merger to copy the configuration of
+     * @param files the files that were read, or null to read all the files again
+     * @param merged the layers merged from the files, or null to read all the files again
+     * @param mergedProperties the flattened layers, or null to read all the files again
+     * @param propertySources the sources of the flattened layers, or null to read all the files again
+     */
+    private EnvironmentSpecificPropertiesMerger(EnvironmentSpecificPropertiesMerger configuration,
+                                                List<PropertiesFile> files, LayeredProperties merged,
+                                                ReadOnlyProperties mergedProperties, PropertySources propertySources) {
+        this.applicationName = configuration.applicationName;
+        this.operationalOverridesResourceLoader = configuration.operationalOverridesResourceLoader;
+        this.resourceLoaderForLoadingConfigurationProperties = configuration.resourceLoaderForLoadingConfigurationProperties;
+        this.extensionForPropertiesFile = configuration.extensionForPropertiesFile;
+        this.extensionSeparatorCharForPropertiesFile = configuration.extensionSeparatorCharForPropertiesFile;
+        this.nameOfDefaultPropertiesFile = configuration.nameOfDefaultPropertiesFile;
+        this.strictMergingOfProperties = configuration.strictMergingOfProperties;
+        this.delimiterUsedForSeparatingSwitchingConfigurationVariables = configuration.delimiterUsedForSeparatingSwitchingConfigurationVariables;
+        this.operatingEnvironmentVariableReader = configuration.operatingEnvironmentVariableReader;
+        // the files are read again
+        this.propertiesFileCache = null;
+        this.relativeLocationOfFilesOverridingDefaultProperties = configuration.relativeLocationOfFilesOverridingDefaultProperties;
+        this.sensitivePropertyMasker = configuration.sensitivePropertyMasker;
+        this.outputtingPropertiesInDebugMode = configuration.outputtingPropertiesInDebugMode;
+        this.loadingPropertiesConcurrently = configuration.loadingPropertiesConcurrently;
+        this.executorForLoadingProperties = configuration.executorForLoadingProperties;
+        this.parsingLargePropertiesFilesInParallel = configuration.parsingLargePropertiesFilesInParallel;
+        this.deduplicatingPropertyStrings = configuration.deduplicatingPropertyStrings;
+        this.stringPoolForDeduplicatingProperties = configuration.stringPoolForDeduplicatingProperties;
+        this.listingDirectoriesOfPropertiesFiles = configuration.listingDirectoriesOfPropertiesFiles;
+
+        possibleOverrideFiles = configuration.possibleOverrideFiles;
+        this.retainingLayers = configuration.retainingLayers;
+        if(files==null || merged==null || mergedProperties==null || propertySources==null) {
+            files = createPropertiesFiles();
+            for(PropertiesFile file : files) {
+                file.setFailingOnReadErrors();
+            }
+            merged = mergeProperties(files);
+            mergedProperties = ReadOnlyProperties.wrap(merged.flattenToMap());
+            propertySources = merged.getSources();
+        }
+        this.mergedProperties = mergedProperties;
+        this.returningReadOnlyMergedProperties = configuration.returningReadOnlyMergedProperties;
+        this.propertySources = propertySources;
+        this.propertiesFiles = retainingLayers ? files : null;
+        this.layers = retainingLayers ? merged.copyLayers() : null;
+    }
 
+    /**
+     * Reads and merges the properties files again, into a new merger; this merger is not changed.
+     *
+     * @return a merger with the same configuration as this one, holding the current contents of the files
+     * @throws UncheckedIOException if a file that exists cannot be read (i.e. it is locked, or being replaced), or a
+     *         directory that exists cannot be listed; rather than the file being merged as if it were empty or absent
+     */
+    EnvironmentSpecificPropertiesMerger reload() {
+        return new EnvironmentSpecificPropertiesMerger(this,null,null,null,null);
     }
 
     /**
      * <p>
-     * uses java.util.Properties.load(InputStream), to load in the given stream into a
-     * Properties object.  This method also checks to see if
-     * the logger is in debug mode and output the contents of the properties object into it.
+     * Reads only the given files again, if this merger retained its layers, and merges them into a new merger; this
+     * merger is not changed.  The layers of the other files are shared with the new merger, and only the keys in the
+     * previous or new contents of the changed files are merged again.
+     * </p>
+     * <p>
+     * All the files are read again if the layers were not retained, or if a changed file has been created or deleted
+     * (which adds or removes a layer).  A changed file whose contents have the same length and CRC32 checksum as
+     * before (i.e. it was saved without being edited) is not parsed or merged again.
+     * </p>
+     * <p>
+     * The winning layer of only the changed keys is looked up, through the layers.  The changed keys are overlaid on
+     * this merger's properties and sources, which are shared rather than copied (see {@link OverlaidProperties});
+     * so the cost of a reload is in proportion to the keys that changed, rather than to all of the keys.
+     * </p>
+     *
+     * @param changedFiles the files that have changed, or null if it is not known which files changed
+     * @return a merger holding the current contents of the files, or this merger if none of the files it reads
+     *         have changed
+     * @throws UncheckedIOException if a changed file that exists cannot be read
+     */
+    EnvironmentSpecificPropertiesMerger reload(Set<File> changedFiles) {
+        if(layers==null || changedFiles==null) return reload();
+
+        List<PropertiesFile> files = new ArrayList<PropertiesFile>(propertiesFiles);
+        List<PropertiesFile> changed = new ArrayList<PropertiesFile>();
+        boolean contentsChanged = false;
+        DirectoryListing listing = createDirectoryListing();
+        for(int i=0;i<files.size();i++) {
+            PropertiesFile file = files.get(i);
+            if(changedFiles.contains(file.getFile())) {
+                if(file.getLayer()==0 && file.getProperties() instanceof PropertiesSnapshot) {
+                    log.debug("{} is the snapshot the other files are merged over, reading all the properties files",file.getResource());
+                    return reload();
+                }
+                PropertiesFile reread = file.copy(listing);
+                files.set(i,reread);
+                changed.add(reread);
+            }
+        }
+        if(changed.isEmpty()) return this;
+
+        loadPropertiesFiles(changed);
+        LayeredProperties merged = layers.copyLayers();
+        Set<String> keys = new HashSet<String>();
+        for(PropertiesFile file : changed) {
+            if(file.isAvailable() != (file.getLayer()!=-1)) {
+                log.debug("{} has been created or deleted, reading all the properties files",file.getResource());
+                return reload();
+            }
+            if(file.isUnchanged()) {
+                log.debug("{} has the same contents, its properties have not been parsed again",file.getResource());
+            } else if(file.isAvailable()) {
+                keys.addAll(merged.replaceLayer(file.getLayer(),file.getProperties()));
+                contentsChanged = true;
+            }
+        }
+        if(!contentsChanged) return this;
+
+        Map<String,String> values = new HashMap<String,String>(keys.size()*4/3+1);
+        Map<String,Integer> sources = new HashMap<String,Integer>(keys.size()*4/3+1);
+        for(String key : keys) {
+            values.put(key,merged.getProperty(key));
+            sources.put(key,merged.getWinningLayer(key));
+        }
+
+        Map<String,String> properties = OverlaidProperties.overlay(mergedProperties.getWrappedMap(),values);
+        log.debug("Merged {} properties from {} changed files",keys.size(),changed.size());
+        return new EnvironmentSpecificPropertiesMerger(this,files,merged,ReadOnlyProperties.wrap(properties),propertySources.update(sources));
+    }
+
+    /**
+     * @return the directories, of the resource loaders that read from the filesystem, that contain the properties
+     *         files that are looked for.  Files read from the classpath are not included.
+     */
+    Set<File> getDirectoriesOfPropertiesFiles() {
+        Set<File> directories = new LinkedHashSet<File>();
+        for(PropertiesFile file : createPropertiesFiles()) {
+            if(file.getFile()!=null) {
+                directories.add(file.getFile().getParentFile());
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * <p>
+     * uses the {@link PropertiesParser}, to parse the given buffer into a map of the
+     * properties; in parallel chunks if the builder set parsing of large files in parallel.  This method also checks to see if
+     * the logger is in debug mode and output the contents of the properties into it.
      * </p>
      * <p>
      * Developers need to be aware that this means  sensitive information could leak into log files
@@ -176,20 +411,20 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
      * not leak into the log files
      * </p>
      *
-     * @param stream
-     * @return
-     * @throws java.io.IOException
+     * @param buffer the contents of the properties file
+     * @return the properties
      */
-    private Properties load(InputStream stream) throws IOException {
+    private Map<String,String> load(ByteBuffer buffer) {
 
-        Properties properties = new Properties();
-        properties.load(stream);
+        Map<String,String> properties = parsingLargePropertiesFilesInParallel ?
+                PropertiesParser.parse(buffer,new HashMap<String,String>(),ForkJoinPool.commonPool()) :
+                PropertiesParser.parse(buffer,new HashMap<String,String>());
 
         if (log.isDebugEnabled() && isOutputtingPropertiesInDebugMode()) {
 
-            for (Object keyItem : properties.keySet()) {
-                String key = (String)keyItem;
-                String value = properties.getProperty(key);
+            for (Map.Entry<String,String> entry : properties.entrySet()) {
+                String key = entry.getKey();
+                String value = entry.getValue();
 
                 Matcher m = getSensitivePropertyMasker().matcher(key);
                 if(m.matches()) {
@@ -205,23 +440,32 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
     }
 
     /**
-     * For a given file, that represents a properties file, loads the contents into a Properties file
-     * @param resource the file to convert to a Properties file.
-     * @return a Properties object, will always return a properties object.
+     * For a given file, that represents a properties file, loads the contents into a map of properties.  A
+     * {@link MetadataResource} is read directly into a buffer: a file on the filesystem is read (or memory mapped when
+     * large), and a file on the classpath is read from its jar into a buffer of the file's size.  Other resources are
+     * read from their stream.  A properties snapshot is not parsed, the mapped snapshot is itself the map of properties.
+     *
+     * @param resource the file to convert to a map of properties.
+     * @return the properties, will always return a map.
+     * @throws IOException if the resource is available, but cannot be read
      */
-    private Properties load(Resource resource) {
+    private Map<String,String> load(Resource resource) throws IOException {
         if(resource == null || !resource.isAvailable()) {
-            return new Properties();
+            return new HashMap<String,String>();
         }
 
         InputStream is = null;
-        Properties p = null;
+        Map<String,String> p = null;
         try {
             log.debug("loading properties from {}",resource);
-            is = resource.getStream();
-            p = load(is);
-        } catch(IOException e ) {
-            log.warn("Unable to read file: {}",resource,e);
+            if(resource instanceof SnapshotResource) {
+                p = ((SnapshotResource)resource).getSnapshot();
+            } else if(resource instanceof MetadataResource) {
+                p = load(((MetadataResource)resource).getByteBuffer());
+            } else {
+                is = resource.getStream();
+                p = load(PropertiesParser.read(is));
+            }
         } finally {
             if(is!=null) {
                 try {
@@ -232,7 +476,7 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
             }
         }
 
-        return (p==null) ? new Properties() : p;
+        return (p==null) ? new HashMap<String,String>() : p;
     }
 
     /**
@@ -285,28 +529,66 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
 
     }
 
-    private Resource[] loadFiles(List<String> files, ResourceLoader resourceLoader) {
-        List<Resource> foundFiles = new ArrayList<Resource>(files.size());
+    /**
+     * @return the files to merge, in order: the default properties, each of the override files, and then the
+     *         operational overrides.
+     */
+    private List<PropertiesFile> createPropertiesFiles() {
+        ResourceLoader defaultAppPropertiesLoader = getResourceLoaderForLoadingConfigurationProperties();
+        StringPool stringPool = createStringPool();
+        DirectoryListing listing = createDirectoryListing();
 
-        for(String location : files) {
-            log.debug("Checking for override file: {} in location {}",location,resourceLoader.getBaseLocation());
-            Resource override = resourceLoader.getFile(location);
-            if(override.isAvailable()) {
-                log.debug("Override {} is available for sourcing",override);
-                foundFiles.add(override);
-            }
+        List<PropertiesFile> files = new ArrayList<PropertiesFile>(getPossibleOverrideFiles().size()*2+2);
+        files.add(new PropertiesFile(defaultAppPropertiesLoader,getNameOfDefaultPropertiesFile(),stringPool,listing));
+        for(String location : getPossibleOverrideFiles()) {
+            files.add(new PropertiesFile(defaultAppPropertiesLoader,location,stringPool,listing));
         }
 
-        return foundFiles.toArray(new Resource[foundFiles.size()]);
+        // read overrides
+        ResourceLoader overridesResourceLoader = getOperationalOverridesResourceLoader();
+        if(overridesResourceLoader!=null)
+            files.addAll(getOperationalOverrideFiles(overridesResourceLoader,stringPool,listing));
+        return files;
     }
 
-    private Properties mergeProperties() {
-        Properties merged;
+    /**
+     * @return a new listing of the directories of the files, for a merge; or null if the files are looked for
+     *         one at a time
+     */
+    private DirectoryListing createDirectoryListing() {
+        return listingDirectoriesOfPropertiesFiles ? new DirectoryListing() : null;
+    }
 
-        ResourceLoader defaultAppPropertiesLoader = getResourceLoaderForLoadingConfigurationProperties();
-        log.debug("Attempting to source default properties file {} from location {}",getNameOfDefaultPropertiesFile(),defaultAppPropertiesLoader.getBaseLocation());
+    /**
+     * @return the pool the files of a merge deduplicate their strings against; a new pool for the merge unless the
+     *         builder set one, or null if not deduplicating
+     */
+    private StringPool createStringPool() {
+        if(!deduplicatingPropertyStrings) return null;
+        return stringPoolForDeduplicatingProperties!=null ? stringPoolForDeduplicatingProperties : new ConcurrentStringPool();
+    }
+
+    /**
+     * @return a copy of the properties, with the keys and values replaced by the pool's instances
+     */
+    private static Map<String,String> deduplicate(Map<String,String> properties, StringPool stringPool) {
+        Map<String,String> deduplicated = new HashMap<String,String>(properties.size()*4/3+1);
+        for(Map.Entry<String,String> entry : properties.entrySet()) {
+            deduplicated.put(stringPool.intern(entry.getKey()),stringPool.intern(entry.getValue()));
+        }
+        return deduplicated;
+    }
+
+    /**
+     * Reads the default properties, and each of the override files, as layers over the top of each other.  The layers
+     * are flattened into the merged properties once, after the operational overrides have been read.
+     */
+    private LayeredProperties mergeProperties(List<PropertiesFile> files) {
+        log.debug("Attempting to source default properties file {} from location {}",getNameOfDefaultPropertiesFile(),getResourceLoaderForLoadingConfigurationProperties().getBaseLocation());
+        PropertiesFile defaultProperties = files.get(0);
+
+        loadPropertiesFiles(files);
 
-        Resource defaultProperties = defaultAppPropertiesLoader.getFile(getNameOfDefaultPropertiesFile());
         if(!defaultProperties.isAvailable()) {// || !defaultProperties.canRead()) {
             String message = "Unable to source default properties file:" + getNameOfDefaultPropertiesFile();
             log.warn(message);
@@ -314,20 +596,16 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
                 throw new NoDefaultPropertiesFileException(message);
         }
 
+        LayeredProperties layers = new LayeredProperties(strictMergingOfProperties);
+        layers.addLayer(defaultProperties.getResource().toString(),
+                        defaultProperties.isAvailable() ? defaultProperties.getProperties() : new HashMap<String,String>());
+        if(defaultProperties.isAvailable()) defaultProperties.setLayer(0);
+        addAvailableFiles(layers,files.subList(1,files.size()));
 
-        merged = load(defaultProperties);
-
-        for(Resource file : loadFiles(getPossibleOverrideFiles(),defaultAppPropertiesLoader)) {
-            merged = mergeProperties(merged,load(file),strictMergingOfProperties);
-
+        if(log.isDebugEnabled()) {
+            log.debug("Merged {} properties from {} layers",layers.size(),layers.getNumberOfLayers());
         }
-
-        // read overrides
-        ResourceLoader overridesResourceLoader = getOperationalOverridesResourceLoader();
-        if(overridesResourceLoader!=null)
-            merged = mergePropertiesAgainstOverrides(merged,overridesResourceLoader);
-
-        return merged;
+        return layers;
     }
 
     /**
@@ -339,43 +617,326 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
      *                          that are to be found by the overrides location's resource loader
      */
     protected Properties mergePropertiesAgainstOverrides(Properties currentProperties, ResourceLoader overridesLocationLoader) {
-        Properties merged = new Properties();
+        List<PropertiesFile> files = getOperationalOverrideFiles(overridesLocationLoader,createStringPool(),createDirectoryListing());
+        loadPropertiesFiles(files);
+
+        LayeredProperties layers = new LayeredProperties(strictMergingOfProperties);
+        Map<String,String> current = new HashMap<String,String>();
+        if(currentProperties!=null) {
+            for(String key : currentProperties.stringPropertyNames()) {
+                current.put(key,currentProperties.getProperty(key));
+            }
+        }
+        layers.addLayer("current properties",current);
+        addAvailableFiles(layers,files);
+        return layers.flatten();
+    }
 
-        if(currentProperties!=null){
-            for (final Object entry : currentProperties.keySet()) {
-                final String key = entry.toString();
-                merged.setProperty(key,currentProperties.getProperty(key));
+    private List<PropertiesFile> getOperationalOverrideFiles(ResourceLoader overridesLocationLoader, StringPool stringPool,
+                                                             DirectoryListing listing) {
+        List<PropertiesFile> files = new ArrayList<PropertiesFile>(getPossibleOverrideFiles().size()+1);
+        files.add(new PropertiesFile(overridesLocationLoader,getNameOfDefaultPropertiesFile(),stringPool,listing));
+        for(String location : getPossibleOverrideFiles()) {
+            files.add(new PropertiesFile(overridesLocationLoader,location,stringPool,listing));
+        }
+        return files;
+    }
+
+    /**
+     * Adds the files that were available as layers, in the order of the list
+     */
+    private void addAvailableFiles(LayeredProperties layers, List<PropertiesFile> files) {
+        for(PropertiesFile file : files) {
+            if(file.isAvailable()) {
+                layers.addLayer(file.getResource().toString(),file.getProperties());
+                file.setLayer(layers.getNumberOfLayers()-1);
             }
         }
+    }
 
-        List<String> possibleOverrideFiles = new ArrayList<String>(getPossibleOverrideFiles());
-        possibleOverrideFiles.add(0,getNameOfDefaultPropertiesFile());
+    /**
+     * Looks for, and reads, each of the given files.  When loading concurrently, all the files are loaded at the
+     * same time and this method returns once they have all been loaded.  The files in jars are read from jar files
+     * that are opened once for the load, and closed once all the files are loaded.
+     */
+    private void loadPropertiesFiles(List<PropertiesFile> files) {
+        JarFileCache jars = new JarFileCache();
+        try {
+            for(PropertiesFile file : files) {
+                file.jars = jars;
+            }
+            readPropertiesFiles(files);
+        } finally {
+            jars.close();
+            for(PropertiesFile file : files) {
+                file.jars = null;
+            }
+        }
+    }
 
-        for(Resource file : loadFiles(possibleOverrideFiles,overridesLocationLoader)) {
-            merged = mergeProperties(merged,load(file),strictMergingOfProperties);
+    private void readPropertiesFiles(List<PropertiesFile> files) {
+        if(!loadingPropertiesConcurrently || files.size()<2) {
+            for(PropertiesFile file : files) {
+                file.call();
+            }
+            return;
         }
 
-        return merged;
+        ExecutorService executor = executorForLoadingProperties;
+        boolean shutdownExecutor = false;
+        if(executor==null) {
+            executor = newExecutorForLoadingProperties(files.size());
+            shutdownExecutor = true;
+        }
+
+        try {
+            for(Future<PropertiesFile> loaded : executor.invokeAll(files)) {
+                loaded.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst loading properties files",e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if(cause instanceof Error) throw (Error)cause;
+            throw new IllegalStateException("Unable to load properties files",cause);
+        } finally {
+            if(shutdownExecutor) executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates an executor that runs each task in a virtual thread, if the java platform has them; otherwise
+     * an executor with a daemon thread per file.
+     */
+    private static ExecutorService newExecutorForLoadingProperties(int numberOfFiles) {
+        try {
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)virtualThreadExecutor.invoke(null);
+        } catch (Exception e) {
+            log.debug("Virtual threads are not available, using platform threads to load properties files");
+        }
+
+        return Executors.newFixedThreadPool(numberOfFiles,new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r,"environment-properties-loader-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
     }
 
+    /**
+     * A properties file that is looked for by a resource loader, which once loaded holds the resource and,
+     * if the resource was available, its properties and the index of the layer they were merged as.
+     */
+    private final class PropertiesFile implements Callable<PropertiesFile> {
+        private final ResourceLoader resourceLoader;
+        private final String location;
+        private final StringPool stringPool;
+        private final DirectoryListing listing;
+        private Resource resource;
+        private Map<String,String> properties;
+        private int layer = -1;
+        /**
+         * The length and CRC32 checksum of the contents, when retaining layers; which are compared with the
+         * previous read of the file (the file this is a copy of) to find if the contents have changed.
+         */
+        private long length = -1;
+        private long fingerprint = -1;
+        private PropertiesFile previous;
+        private boolean unchanged;
+        /**
+         * The jar files opened for the load of the file, whilst it is loaded
+         */
+        private JarFileCache jars;
+        /**
+         * When reloading, a file that cannot be read fails the reload; rather than being merged as an empty file
+         */
+        private boolean failingOnReadErrors;
+
+        /**
+         * @param stringPool the pool to deduplicate the keys and values of the properties against, or null
+         * @param listing the listing to look for a file on the filesystem in, or null to ask the filesystem
+         */
+        PropertiesFile(ResourceLoader resourceLoader, String location, StringPool stringPool, DirectoryListing listing) {
+            this.resourceLoader = resourceLoader;
+            this.location = location;
+            this.stringPool = stringPool;
+            this.listing = listing;
+        }
+
+        @Override
+        public PropertiesFile call() {
+            if(propertiesFileCache==null) {
+                read();
+            } else {
+                PropertiesFileCache.LoadedFile file = propertiesFileCache.get(resourceLoader,location,
+                        new Callable<PropertiesFileCache.LoadedFile>() {
+                            @Override
+                            public PropertiesFileCache.LoadedFile call() {
+                                read();
+                                return new PropertiesFileCache.LoadedFile(resource,properties);
+                            }
+                        });
+                resource = file.getResource();
+                properties = file.getProperties();
+            }
+            return this;
+        }
+
+        /**
+         * @return the file, looked for in the listing of its directory; or if the directory cannot be listed, the
+         *         file as it is on the filesystem, unless read errors are failing the merge
+         */
+        private Resource getListedFile() {
+            try {
+                return ((FileSystemResourceLoader)resourceLoader).getFile(location,listing);
+            } catch (IOException e) {
+                if(failingOnReadErrors) {
+                    throw new UncheckedIOException("Unable to list the directory of file: " + location,e);
+                }
+                log.warn("Unable to list the directory of file: " + location + " in location " +
+                        resourceLoader.getBaseLocation(),e);
+                return resourceLoader.getFile(location);
+            }
+        }
 
+        private void read() {
+            log.debug("Checking for properties file: {} in location {}",location,resourceLoader.getBaseLocation());
+            if(listing!=null && resourceLoader instanceof FileSystemResourceLoader) {
+                resource = getListedFile();
+            } else if(resourceLoader instanceof ClassPathResourceLoader) {
+                resource = ((ClassPathResourceLoader)resourceLoader).getFile(location,jars);
+            } else {
+                resource = resourceLoader.getFile(location);
+            }
+            if(resource.isAvailable()) {
+                log.debug("{} is available for sourcing",resource);
+                try {
+                    if(retainingLayers && resource instanceof MetadataResource) {
+                        readFingerprinted((MetadataResource)resource);
+                    } else {
+                        properties = load(resource);
+                    }
+                } catch (IOException e) {
+                    if(failingOnReadErrors) {
+                        throw new UncheckedIOException("Unable to read file: " + resource,e);
+                    }
+                    log.warn("Unable to read file: {}",resource,e);
+                    properties = new HashMap<String,String>();
+                }
+                // a snapshot is read from its file as it is used, deduplicating would read all of it
+                if(!unchanged && stringPool!=null && !(properties instanceof PropertiesSnapshot)) {
+                    properties = deduplicate(properties,stringPool);
+                }
+            }
+            previous = null;
+        }
+
+        /**
+         * Reads the contents of the resource, recording their length and checksum.  If they are the same as the
+         * previous read of the file, the properties of the previous read are used rather than parsing them again.
+         */
+        private void readFingerprinted(MetadataResource resource) throws IOException {
+            ByteBuffer buffer = resource.getByteBuffer();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            length = buffer.remaining();
+            fingerprint = crc.getValue();
+
+            if(previous!=null && previous.properties!=null &&
+               previous.length==length && previous.fingerprint==fingerprint) {
+                properties = previous.properties;
+                unchanged = true;
+            } else {
+                properties = load(buffer);
+            }
+        }
+
+        void setFailingOnReadErrors() {
+            this.failingOnReadErrors = true;
+        }
+
+        /**
+         * @return true if the file had the same contents as the previous read of the file
+         */
+        boolean isUnchanged() {
+            return unchanged;
+        }
+
+        Resource getResource() {
+            return resource;
+        }
+
+        Map<String,String> getProperties() {
+            return properties;
+        }
+
+        int getLayer() {
+            return layer;
+        }
+
+        void setLayer(int layer) {
+            this.layer = layer;
+        }
+
+        /**
+         * @return the file on the filesystem, or null if the resource loader does not read from the filesystem
+         */
+        File getFile() {
+            if(!(resourceLoader instanceof FileSystemResourceLoader)) return null;
+            return new File(resourceLoader.getBaseLocation(),location).getAbsoluteFile();
+        }
+
+        /**
+         * @param listing the listing to look for the file in, or null to ask the filesystem
+         * @return a copy of this file, merged as the same layer, that has not been loaded; when it is loaded its
+         *         contents are compared with this file's
+         */
+        PropertiesFile copy(DirectoryListing listing) {
+            PropertiesFile copy = new PropertiesFile(resourceLoader,location,stringPool,listing);
+            copy.layer = layer;
+            copy.previous = this;
+            copy.failingOnReadErrors = true;
+            return copy;
+        }
+
+        boolean isAvailable() {
+            return properties!=null;
+        }
+    }
 
 
 
     @Override
     public Properties getMergedProperties() {
-        Properties mergedProperties = _getMergedProperties();
+        if(returningReadOnlyMergedProperties) return mergedProperties;
         Properties p = new Properties();
-        for(Object key : mergedProperties.keySet()) {
-            p.setProperty((String)key,mergedProperties.getProperty((String) key));
+        for(Map.Entry<String,String> entry : mergedProperties.asMap().entrySet()) {
+            p.setProperty(entry.getKey(),entry.getValue());
         }
         return p;
     }
 
     @Override
     public Map<String, String> getMergedPropertiesAsMap() {
-        Properties mergedProperties = _getMergedProperties();
-        return new ConcurrentHashMap(mergedProperties);
+        if(returningReadOnlyMergedProperties) return mergedProperties.asMap();
+        return new ConcurrentHashMap<String,String>(mergedProperties.asMap());
+    }
+
+    @Override
+    public String getSourceOfProperty(String key) {
+        return propertySources.getSourceOfProperty(key);
+    }
+
+    @Override
+    public PropertySources getSourcesOfProperties() {
+        return propertySources;
     }
 
 
@@ -408,9 +969,5 @@ public class EnvironmentSpecificPropertiesMerger implements PropertiesMerger {
         return operationalOverridesResourceLoader;
     }
 
-    private Properties _getMergedProperties() {
-        return mergedProperties;
-    }
-
 
 }
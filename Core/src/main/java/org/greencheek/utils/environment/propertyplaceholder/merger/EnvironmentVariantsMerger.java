@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Creates the {@link PropertiesMerger} for each of a number of variants of the environment; i.e. each combination of
+ * ENV, SERVER_TYPE and TARGET_ENV, in order to validate the configuration of every environment.  Each variant is
+ * given as the values of the variables used for switching configuration, rather than them being read from the
+ * java process's environment.
+ * </p>
+ * <p>
+ * Each distinct properties file (i.e. default.properties, and the environment files that several variants have in
+ * common) is read and parsed once, by the first variant that needs it.  The properties of the file are then shared by
+ * the layers of every variant that merges it, rather than being copied.
+ * </p>
+ * <p>
+ * The mergers are configured by the builder as it is when each variant is merged, so the builder should not be
+ * changed once this is created.  The files are read once; to see changes to them, create a new
+ * EnvironmentVariantsMerger.  This class is thread safe.
+ * </p>
+ */
+public class EnvironmentVariantsMerger {
+
+    private final PropertiesMergerBuilder builder;
+    private final PropertiesFileCache propertiesFileCache = new PropertiesFileCache();
+
+    public EnvironmentVariantsMerger(PropertiesMergerBuilder builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * Merges the properties for a single variant of the environment.
+     *
+     * @param variables the values of the variables used for switching configuration; a variable that is not in the
+     *                  map is not set
+     * @return the merger for the variant
+     */
+    public PropertiesMerger merge(Map<String,String> variables) {
+        return new EnvironmentSpecificPropertiesMerger(builder,new VariantVariableReader(variables),false,
+                                                       propertiesFileCache);
+    }
+
+    /**
+     * Merges the properties for each of the variants of the environment.
+     *
+     * @param variants the values of the variables used for switching configuration, for each variant
+     * @return the merger of each variant, in the order of the variants
+     */
+    public Map<Map<String,String>,PropertiesMerger> merge(Collection<Map<String,String>> variants) {
+        Map<Map<String,String>,PropertiesMerger> mergers = new LinkedHashMap<Map<String,String>,PropertiesMerger>();
+        for(Map<String,String> variables : variants) {
+            mergers.put(variables,merge(variables));
+        }
+        return mergers;
+    }
+
+    /**
+     * @return the number of distinct files that have been looked for
+     */
+    int getNumberOfFilesRead() {
+        return propertiesFileCache.size();
+    }
+
+    /**
+     * Reads the variables of a variant, as both system properties and environment variables
+     */
+    private static final class VariantVariableReader implements OperatingEnvironmentVariableReader {
+        private final Map<String,String> variables;
+
+        VariantVariableReader(Map<String,String> variables) {
+            this.variables = new HashMap<String,String>(variables);
+        }
+
+        @Override
+        public String getProperty(String property, String defaultValue) {
+            String value = variables.get(property);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        public String getEnv(String property, String defaultValue) {
+            return getProperty(property,defaultValue);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.exception.NoMatchingPropertyException;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * <p>
+ * A stack of properties, in which each layer overrides the layers beneath it.  Adding a layer does not copy the
+ * layers beneath it; instead the index of the layer that defines each key is recorded as the layer is added.  A
+ * lookup reads through to the layer that won the key, and {@link #flatten()} creates the merged properties in a
+ * single pass over the keys.  Merging n layers therefore costs the total number of entries in the layers, rather
+ * than copying every key once per layer.
+ * </p>
+ * <p>
+ * The layers can be copied without the index, via {@link #copyLayers()}, so that a layer can be replaced without
+ * copying an entry per key.  A lookup in such a copy looks for the key in each layer, from the highest down.
+ * </p>
+ * <p>
+ * When the defaults are a {@link PropertiesSnapshot}, their keys are not indexed; a key that no other layer defines
+ * is looked up in the snapshot.  The defaults are then flattened as the snapshot overlaid by the keys of the other
+ * layers, so only the keys of the other layers are read from the snapshot when merging.
+ * </p>
+ * <p>
+ * As with {@link EnvironmentSpecificPropertiesMerger#mergeProperties(Properties, Properties, boolean)}, a property in
+ * an overriding layer that is not defined in any layer beneath it is logged; or throws a
+ * {@link NoMatchingPropertyException} when merging strictly.
+ * </p>
+ * This class is not thread safe; it is used by a single thread whilst the properties are merged.
+ */
+class LayeredProperties {
+
+    /**
+     * Warnings are logged as the merger's, where they have always been logged
+     */
+    private static final Logger log = LoggerFactory.getLogger(EnvironmentSpecificPropertiesMerger.class);
+
+    private final boolean strict;
+    private final List<Map<String,String>> layers = new ArrayList<Map<String,String>>();
+    private final List<String> layerNames = new ArrayList<String>();
+    /**
+     * The index of the highest layer defining each key, or null if the layers were copied without the index
+     */
+    private final Map<String,Integer> winningLayers;
+    /**
+     * The defaults, when they are a snapshot whose keys are not indexed; or null
+     */
+    private Map<String,String> base;
+
+    LayeredProperties(boolean strict) {
+        this(strict,new HashMap<String,Integer>());
+    }
+
+    private LayeredProperties(boolean strict, Map<String,Integer> winningLayers) {
+        this.strict = strict;
+        this.winningLayers = winningLayers;
+    }
+
+    /**
+     * Adds a layer that overrides all the existing layers.  The first layer added is the defaults, any property in a
+     * later layer should be defined by a layer beneath it.
+     *
+     * @param name the name of the layer, i.e. the resource it was read from
+     * @param properties the properties of the layer, which must not be modified after they are added
+     * @throws NoMatchingPropertyException if merging strictly, and a property is not defined by a layer beneath it
+     */
+    void addLayer(String name, Map<String,String> properties) throws NoMatchingPropertyException {
+        checkIndexed();
+        Integer layer = layers.size();
+        if(layer > 0) {
+            for (String key : properties.keySet()) {
+                if (!winningLayers.containsKey(key) && (base == null || !base.containsKey(key))) {
+                    String msg = "NoMatchingPropertyWarning: Property \"" + key + "\" from overriding properties does not exist in original properties";
+                    log.warn(msg);
+                    if (strict) {
+                        throw new NoMatchingPropertyException(msg);
+                    }
+                }
+            }
+        }
+
+        layers.add(properties);
+        layerNames.add(name);
+        if (layer == 0 && properties instanceof PropertiesSnapshot) {
+            base = properties;
+            return;
+        }
+        for (String key : properties.keySet()) {
+            winningLayers.put(key,layer);
+        }
+    }
+
+    /**
+     * Replaces the properties of an existing layer, recalculating the winning layer of only the keys that were in
+     * the previous or the new properties of the layer.  If the layers were copied without the index, the keys'
+     * winning layers are looked up when needed.
+     *
+     * @param layer the index of the layer to replace
+     * @param properties the new properties of the layer, which must not be modified after they are added
+     * @return the keys whose winning layer was recalculated
+     * @throws NoMatchingPropertyException if merging strictly, and one of the keys is then defined by a layer that
+     *         does not have the key defined by a layer beneath it
+     */
+    Set<String> replaceLayer(int layer, Map<String,String> properties) throws NoMatchingPropertyException {
+        Map<String,String> previous = layers.set(layer,properties);
+        if (layer == 0 && base != null) base = properties;
+        Set<String> keys = new HashSet<String>(previous.keySet());
+        keys.addAll(properties.keySet());
+
+        for (String key : keys) {
+            int lowest = -1;
+            int highest = -1;
+            for (int i = 0; i < layers.size(); i++) {
+                if (layers.get(i).containsKey(key)) {
+                    if (lowest == -1) lowest = i;
+                    highest = i;
+                }
+            }
+
+            if (lowest > 0) {
+                String msg = "NoMatchingPropertyWarning: Property \"" + key + "\" from overriding properties does not exist in original properties";
+                log.warn(msg);
+                if (strict) {
+                    throw new NoMatchingPropertyException(msg);
+                }
+            }
+
+            if (winningLayers == null) {
+                continue;
+            } else if (highest == -1 || (highest == 0 && base != null)) {
+                winningLayers.remove(key);
+            } else {
+                winningLayers.put(key,highest);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return a copy of the layers without the index of the winning layer of each key; so copying costs the number
+     *         of layers, rather than the number of keys.  Only {@link #replaceLayer(int, Map)} and the lookups of a
+     *         key can be used on the copy.
+     */
+    LayeredProperties copyLayers() {
+        LayeredProperties copy = new LayeredProperties(strict,null);
+        copy.layers.addAll(layers);
+        copy.layerNames.addAll(layerNames);
+        return copy;
+    }
+
+    /**
+     * @return the index of the highest layer that defines the property, or -1 if no layer defines it.
+     */
+    int getWinningLayer(String key) {
+        if (winningLayers == null) {
+            for (int i = layers.size() - 1; i >= 0; i--) {
+                if (layers.get(i).containsKey(key)) return i;
+            }
+            return -1;
+        }
+        Integer layer = winningLayers.get(key);
+        if (layer != null) return layer;
+        return base != null && base.containsKey(key) ? 0 : -1;
+    }
+
+    /**
+     * @return the value of the property from the highest layer that defines it, or null.
+     */
+    String getProperty(String key) {
+        int layer = getWinningLayer(key);
+        return layer == -1 ? null : layers.get(layer).get(key);
+    }
+
+    /**
+     * @return the name of the highest layer that defines the property, or null if no layer defines it.
+     */
+    String getNameOfWinningLayer(String key) {
+        int layer = getWinningLayer(key);
+        return layer == -1 ? null : layerNames.get(layer);
+    }
+
+    int size() {
+        checkIndexed();
+        if (base == null) return winningLayers.size();
+        int size = base.size();
+        for (String key : winningLayers.keySet()) {
+            if (!base.containsKey(key)) size++;
+        }
+        return size;
+    }
+
+    int getNumberOfLayers() {
+        return layers.size();
+    }
+
+    /**
+     * @return the name of the layer that won each key, recorded in an array of the keys ordered by hash code, and
+     *         an array of the index of each key's layer.  The keys that only the snapshot of the defaults defines are
+     *         not recorded, they are looked up in the snapshot.
+     */
+    PropertySources getSources() {
+        checkIndexed();
+        int size = winningLayers.size();
+        String[] unordered = new String[size];
+        int[] unorderedLayers = new int[size];
+        // the hash code in the high bits, and the index in the low bits; so the order is by hash code
+        long[] order = new long[size];
+        int i = 0;
+        for (Map.Entry<String,Integer> entry : winningLayers.entrySet()) {
+            unordered[i] = entry.getKey();
+            unorderedLayers[i] = entry.getValue();
+            order[i] = ((long)unordered[i].hashCode() << 32) | i;
+            i++;
+        }
+        Arrays.sort(order);
+
+        String[] keys = new String[size];
+        int[] sources = new int[size];
+        for (i = 0; i < size; i++) {
+            int index = (int)order[i];
+            keys[i] = unordered[index];
+            sources[i] = unorderedLayers[index];
+        }
+        String[] names = layerNames.toArray(new String[layerNames.size()]);
+        return base == null ? new PropertySources(keys,sources,names) : new PropertySources(keys,sources,names,base,size());
+    }
+
+    /**
+     * @return a new Properties object containing the value of each key from the layer that won it.
+     */
+    Properties flatten() {
+        checkIndexed();
+        Properties merged = new Properties();
+        if (base != null) {
+            for (Map.Entry<String,String> entry : flattenToMap().entrySet()) {
+                merged.setProperty(entry.getKey(),entry.getValue());
+            }
+            return merged;
+        }
+        for (Map.Entry<String,Integer> entry : winningLayers.entrySet()) {
+            String key = entry.getKey();
+            merged.setProperty(key,layers.get(entry.getValue()).get(key));
+        }
+        return merged;
+    }
+
+    /**
+     * @return a new map containing the value of each key from the layer that won it; or when the defaults are a
+     *         snapshot, the snapshot overlaid by the value of each of the other layers' keys (the snapshot itself
+     *         if it is the only layer).  The map must not be modified.
+     */
+    Map<String,String> flattenToMap() {
+        checkIndexed();
+        Map<String,String> merged = new HashMap<String,String>(winningLayers.size()*4/3+1);
+        for (Map.Entry<String,Integer> entry : winningLayers.entrySet()) {
+            String key = entry.getKey();
+            merged.put(key,layers.get(entry.getValue()).get(key));
+        }
+        if (base == null) return merged;
+        return merged.isEmpty() ? base : new OverlaidProperties(base,merged);
+    }
+
+    private void checkIndexed() {
+        if (winningLayers == null) {
+            throw new IllegalStateException("The layers were copied without the index of the winning layers");
+        }
+    }
+}
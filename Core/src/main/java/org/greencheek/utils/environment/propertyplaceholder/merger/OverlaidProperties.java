@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * Merged properties that are a base map, overlaid by the keys whose values differ from the base's.  The overlay
+ * holds the value of each of its keys, or null if the key is not in the merged properties.  A lookup reads the
+ * overlay and then the base, so the two are never copied into a single map.
+ * </p>
+ * <p>
+ * The properties merged over a {@link PropertiesSnapshot} are the snapshot overlaid by the keys of the layers above
+ * it; so only the keys that are looked up are read from the snapshot, and iterating decodes each entry once.
+ * </p>
+ * <p>
+ * When a reload changes some of the keys, the changed keys are overlaid on the previous merged properties via
+ * {@link #overlay(Map, Map)}, rather than the previous properties being copied.  Once the overlay holds more than
+ * 1/{@value #COMPACTING_RATIO} of the keys of the base, the two are copied into a new base; so the cost of copying
+ * is spread over the reloads that changed that many keys.  A snapshot is never copied into a new base, as that would
+ * read all of it; its overlay only holds the keys of the files merged over it.
+ * </p>
+ * The base and the overlay are never modified, so the properties can be shared by any number of threads.
+ */
+final class OverlaidProperties extends AbstractMap<String,String> {
+
+    /**
+     * The overlay is copied into a new base once it holds more than this fraction of the keys of the base
+     */
+    static final int COMPACTING_RATIO = 8;
+
+    private final Map<String,String> base;
+    private final Map<String,String> overlay;
+    private final int size;
+    private Set<Map.Entry<String,String>> entrySet;
+
+    /**
+     * @param base the properties that are overlaid, which must not be modified afterwards
+     * @param overlay the value of each key that differs from the base, or null if the key is removed; which must
+     *                not be modified afterwards
+     */
+    OverlaidProperties(Map<String,String> base, Map<String,String> overlay) {
+        this.base = base;
+        this.overlay = overlay;
+        int size = base.size();
+        for(Map.Entry<String,String> entry : overlay.entrySet()) {
+            boolean inBase = base.containsKey(entry.getKey());
+            if(entry.getValue()==null) {
+                if(inBase) size--;
+            } else if(!inBase) {
+                size++;
+            }
+        }
+        this.size = size;
+    }
+
+    /**
+     * @param properties the merged properties, which are not changed
+     * @param changed the new value of each changed key, or null if the key was removed
+     * @return the merged properties, with the changed keys overlaid
+     */
+    static Map<String,String> overlay(Map<String,String> properties, Map<String,String> changed) {
+        Map<String,String> base = properties;
+        Map<String,String> overlay;
+        if(properties instanceof OverlaidProperties) {
+            base = ((OverlaidProperties)properties).base;
+            overlay = new HashMap<String,String>(((OverlaidProperties)properties).overlay);
+            overlay.putAll(changed);
+        } else {
+            overlay = new HashMap<String,String>(changed);
+        }
+
+        OverlaidProperties overlaid = new OverlaidProperties(base,overlay);
+        if(base instanceof PropertiesSnapshot || overlay.size() <= base.size()/COMPACTING_RATIO) return overlaid;
+
+        Map<String,String> compacted = new HashMap<String,String>(overlaid.size()*4/3+1);
+        for(Map.Entry<String,String> entry : overlaid.entrySet()) {
+            compacted.put(entry.getKey(),entry.getValue());
+        }
+        return compacted;
+    }
+
+    @Override
+    public String get(Object key) {
+        String value = overlay.get(key);
+        if(value!=null) return value;
+        return overlay.containsKey(key) ? null : base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key)!=null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String,String>> entrySet() {
+        Set<Map.Entry<String,String>> entries = entrySet;
+        if(entries == null) {
+            entrySet = entries = new AbstractSet<Map.Entry<String,String>>() {
+                @Override
+                public Iterator<Map.Entry<String,String>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entries;
+    }
+
+    /**
+     * Iterates the entries of the overlay that have a value, and then the entries of the base that are not overlaid
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String,String>> {
+        private Iterator<Map.Entry<String,String>> entries = overlay.entrySet().iterator();
+        private boolean readingBase;
+        private Map.Entry<String,String> next;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while(true) {
+                while(entries.hasNext()) {
+                    Map.Entry<String,String> entry = entries.next();
+                    if(readingBase ? !overlay.containsKey(entry.getKey()) : entry.getValue()!=null) {
+                        next = entry;
+                        return;
+                    }
+                }
+                if(readingBase) {
+                    next = null;
+                    return;
+                }
+                readingBase = true;
+                entries = base.entrySet().iterator();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next!=null;
+        }
+
+        @Override
+        public Map.Entry<String,String> next() {
+            Map.Entry<String,String> entry = next;
+            if(entry == null) throw new NoSuchElementException();
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The merged properties are read only");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.Resource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ResourceLoader;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * <p>
+ * The properties files that have been read by a number of mergers, so that each file is read and parsed once, and
+ * its properties are shared by the layers of every merger that reads it.  A file is identified by the type and base
+ * location of the resource loader it is read by, and its location relative to that; so mergers that each create
+ * their own resource loader, for the same location, share the files.
+ * </p>
+ * <p>
+ * The cache is thread safe; when several threads ask for the same file at the same time, one reads it and the others
+ * wait for it to be read.  Files are never read again, so the cache holds the contents of the files at the time they
+ * were first read.
+ * </p>
+ */
+class PropertiesFileCache {
+
+    /**
+     * A file that has been looked for, and its properties if it was available
+     */
+    static final class LoadedFile {
+        private final Resource resource;
+        private final Map<String,String> properties;
+
+        LoadedFile(Resource resource, Map<String,String> properties) {
+            this.resource = resource;
+            this.properties = properties;
+        }
+
+        Resource getResource() {
+            return resource;
+        }
+
+        Map<String,String> getProperties() {
+            return properties;
+        }
+    }
+
+    private final ConcurrentMap<FileKey,FutureTask<LoadedFile>> files = new ConcurrentHashMap<FileKey,FutureTask<LoadedFile>>();
+
+    /**
+     * Returns the file, loading it with the given loader if it has not been loaded before.
+     *
+     * @param resourceLoader the resource loader the file is read by
+     * @param location the location of the file, relative to the resource loader
+     * @param loader reads the file, the first time it is asked for
+     * @return the file
+     */
+    LoadedFile get(ResourceLoader resourceLoader, String location, Callable<LoadedFile> loader) {
+        FileKey key = new FileKey(resourceLoader,location);
+        FutureTask<LoadedFile> file = files.get(key);
+        if(file == null) {
+            FutureTask<LoadedFile> load = new FutureTask<LoadedFile>(loader);
+            file = files.putIfAbsent(key,load);
+            if(file == null) {
+                file = load;
+                load.run();
+            }
+        }
+
+        try {
+            return file.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst waiting for properties file " + location + " to be read",e);
+        } catch (ExecutionException e) {
+            // let a later merger try again
+            files.remove(key,file);
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if(cause instanceof Error) throw (Error)cause;
+            throw new IllegalStateException("Unable to read properties file " + location,cause);
+        }
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    private static final class FileKey {
+        private final Class<?> resourceLoaderType;
+        private final String baseLocation;
+        private final String location;
+
+        FileKey(ResourceLoader resourceLoader, String location) {
+            this.resourceLoaderType = resourceLoader.getClass();
+            this.baseLocation = resourceLoader.getBaseLocation();
+            this.location = location;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FileKey)) return false;
+            FileKey other = (FileKey) o;
+            return resourceLoaderType == other.resourceLoaderType &&
+                   (baseLocation == null ? other.baseLocation == null : baseLocation.equals(other.baseLocation)) &&
+                   location.equals(other.location);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resourceLoaderType.hashCode();
+            result = 31 * result + (baseLocation == null ? 0 : baseLocation.hashCode());
+            return 31 * result + location.hashCode();
+        }
+    }
+}
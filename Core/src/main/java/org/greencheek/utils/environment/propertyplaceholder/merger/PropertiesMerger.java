@@ -59,4 +59,24 @@ public interface PropertiesMerger {
      */
     Properties getMergedProperties();
     Map<String,String> getMergedPropertiesAsMap();
+
+    /**
+     * Returns the name of the file (i.e. the default properties, an environment file or an operational override)
+     * that supplied the merged value of the property.
+     *
+     * @param key the property
+     * @return the name of the file, or null if there is no such property, or the sources were not recorded.  By
+     *         default the sources are not recorded, so null is returned.
+     */
+    default String getSourceOfProperty(String key) {
+        return null;
+    }
+
+    /**
+     * @return the file that supplied each of the merged properties, or null if the sources were not recorded.  By
+     *         default the sources are not recorded, so null is returned.
+     */
+    default PropertySources getSourcesOfProperties() {
+        return null;
+    }
 }
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Parses the contents of a .properties file, in the same way as {@link java.util.Properties#load(InputStream)}:
+ * the bytes are ISO 8859-1; comments start with <code>#</code> or <code>!</code>; a key is separated from its
+ * value by <code>=</code>, <code>:</code> or whitespace; a line ending in a backslash continues onto the next line;
+ * and <code>\t</code>, <code>\n</code>, <code>\r</code>, <code>\f</code>, <code>&#92;uxxxx</code> and escaped
+ * characters are converted.  As with Properties, a malformed <code>&#92;uxxxx</code> escape throws an
+ * {@link IllegalArgumentException}.
+ * </p>
+ * <p>
+ * The bytes are parsed from a {@link ByteBuffer}, which can be a memory mapped file, and each property is put
+ * directly into the given map.  The keys and values of lines that contain no backslash are created directly from
+ * the bytes of the buffer; only lines with a backslash are copied and converted character by character.
+ * </p>
+ * <p>
+ * A large buffer can be parsed in parallel on a {@link ForkJoinPool}.  The buffer is split into chunks at the end of
+ * lines that are not continued onto the next line (lines ending in an even number of backslashes), so that each chunk
+ * starts with a new logical line.  The chunks are parsed at the same time, and then their properties are put into
+ * the target map in the order of the chunks; so a key that is defined more than once has its last value, as with
+ * {@link java.util.Properties#load(InputStream)}.
+ * </p>
+ * A parser is used by a single thread to parse a single buffer (or chunk), and is created by the static parse methods.
+ */
+public final class PropertiesParser {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Buffers are not split into chunks smaller than this when parsed in parallel
+     */
+    public static final int MINIMUM_CHUNK_SIZE = 1024*1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final int arrayOffset;
+    private final int end;
+
+    private char[] lineBuffer = new char[256];
+    private int lineLength;
+    private final StringBuilder converted = new StringBuilder();
+    private ByteBuffer view;
+    private byte[] scratch;
+
+    private PropertiesParser(ByteBuffer buffer) {
+        this(buffer,buffer.limit());
+    }
+
+    private PropertiesParser(ByteBuffer buffer, int end) {
+        this.buffer = buffer;
+        if(buffer.hasArray()) {
+            this.array = buffer.array();
+            this.arrayOffset = buffer.arrayOffset();
+        } else {
+            this.array = null;
+            this.arrayOffset = 0;
+        }
+        this.end = end;
+    }
+
+    /**
+     * Parses the properties between the position and limit of the buffer into the given map.  The position of the
+     * buffer is not changed.
+     *
+     * @param buffer the ISO 8859-1 encoded contents of a properties file
+     * @param target the map in which to put the properties
+     * @return the target map
+     */
+    public static <M extends Map<? super String,? super String>> M parse(ByteBuffer buffer, M target) {
+        new PropertiesParser(buffer).parse(buffer.position(),target);
+        return target;
+    }
+
+    /**
+     * Parses the properties between the position and limit of the buffer into the given map, splitting the buffer
+     * into chunks that are parsed in parallel on the given pool.  A buffer that is too small to be split into chunks
+     * of at least {@link #MINIMUM_CHUNK_SIZE} bytes is parsed by the calling thread.  The position of the buffer
+     * is not changed.
+     *
+     * @param buffer the ISO 8859-1 encoded contents of a properties file
+     * @param target the map in which to put the properties
+     * @param pool the pool on which the chunks are parsed
+     * @return the target map
+     */
+    public static <M extends Map<? super String,? super String>> M parse(ByteBuffer buffer, M target, ForkJoinPool pool) {
+        int numberOfChunks = Math.min(pool.getParallelism()*CHUNKS_PER_THREAD,buffer.remaining()/MINIMUM_CHUNK_SIZE);
+        return parse(buffer,target,pool,numberOfChunks);
+    }
+
+    static <M extends Map<? super String,? super String>> M parse(ByteBuffer buffer, M target,
+                                                                  ForkJoinPool pool, int numberOfChunks) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        List<Integer> boundaries = new ArrayList<Integer>(numberOfChunks+1);
+        boundaries.add(start);
+        for(int i=1;i<numberOfChunks;i++) {
+            int boundary = indexOfStartOfLogicalLine(buffer,start + (int)((long)(end-start)*i/numberOfChunks),end);
+            if(boundary > boundaries.get(boundaries.size()-1) && boundary < end) boundaries.add(boundary);
+        }
+        boundaries.add(end);
+
+        if(boundaries.size() < 3) return parse(buffer,target);
+
+        final List<ChunkTask> chunks = new ArrayList<ChunkTask>(boundaries.size()-1);
+        for(int i=1;i<boundaries.size();i++) {
+            chunks.add(new ChunkTask(buffer,boundaries.get(i-1),boundaries.get(i)));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(chunks);
+            }
+        });
+
+        for(ChunkTask chunk : chunks) {
+            target.putAll(chunk.getRawResult());
+        }
+        return target;
+    }
+
+    /**
+     * Finds the start of the first line after the given index, that is not a continuation of the line before it.
+     * The line before ends in a \n, and the natural line it ends (ignoring a \r before the \n) ends with an even number
+     * of backslashes.  A \n is used, rather than \r, so that a \r\n is never split.
+     *
+     * @return the index after the \n that ends the line, or the end of the buffer if there is no such line
+     */
+    static int indexOfStartOfLogicalLine(ByteBuffer buffer, int from, int end) {
+        int start = buffer.position();
+        for(int i = from; i < end; i++) {
+            if(buffer.get(i) != '\n') continue;
+
+            int last = i - 1;
+            if(last >= start && buffer.get(last) == '\r') last--;
+            int backslashes = 0;
+            while(last >= start && buffer.get(last) == '\\') {
+                backslashes++;
+                last--;
+            }
+            if((backslashes & 1) == 0) return i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Parses one chunk of the buffer into its own map
+     */
+    private static final class ChunkTask extends RecursiveTask<Map<String,String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        ChunkTask(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Map<String,String> compute() {
+            Map<String,String> properties = new HashMap<String,String>();
+            new PropertiesParser(buffer,end).parse(start,properties);
+            return properties;
+        }
+    }
+
+    /**
+     * Reads the whole stream and parses the properties into the given map.  The stream is not closed.
+     *
+     * @param stream the ISO 8859-1 encoded contents of a properties file
+     * @param target the map in which to put the properties
+     * @return the target map
+     * @throws IOException if the stream cannot be read
+     */
+    public static <M extends Map<? super String,? super String>> M parse(InputStream stream, M target) throws IOException {
+        return parse(read(stream),target);
+    }
+
+    /**
+     * Reads the whole of the stream into a buffer.  The stream is not closed.
+     */
+    static ByteBuffer read(InputStream stream) throws IOException {
+        if(stream==null) throw new IOException("No stream to read properties from");
+        byte[] bytes = new byte[8192];
+        int length = 0;
+        int read;
+        while((read = stream.read(bytes,length,bytes.length-length))!=-1) {
+            length+=read;
+            if(length==bytes.length) bytes = Arrays.copyOf(bytes,length*2);
+        }
+        return ByteBuffer.wrap(bytes,0,length);
+    }
+
+    private byte byteAt(int index) {
+        return array == null ? buffer.get(index) : array[arrayOffset + index];
+    }
+
+    private void parse(int start, Map<? super String,? super String> target) {
+        int pos = start;
+        while(pos < end) {
+            byte b = byteAt(pos);
+            if(b == ' ' || b == '\t' || b == '\f' || b == '\r' || b == '\n') {
+                pos++;
+                continue;
+            }
+            if(b == '#' || b == '!') {
+                pos = indexOfEndOfLine(pos+1);
+                continue;
+            }
+
+            int lineEnd = pos;
+            boolean escaped = false;
+            while(lineEnd < end) {
+                b = byteAt(lineEnd);
+                if(b == '\n' || b == '\r') break;
+                if(b == '\\') {
+                    escaped = true;
+                    break;
+                }
+                lineEnd++;
+            }
+
+            if(escaped) {
+                pos = parseLogicalLine(pos,target);
+            } else {
+                putProperty(pos,lineEnd,target);
+                pos = lineEnd;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the next \r or \n at or after the given index, or the end of the buffer
+     */
+    private int indexOfEndOfLine(int from) {
+        while(from < end) {
+            byte b = byteAt(from);
+            if(b <= '\r' && (b == '\r' || b == '\n')) return from;
+            from++;
+        }
+        return end;
+    }
+
+    /**
+     * Puts the property from a line that contains no backslash, so it is neither continued nor escaped.
+     */
+    private void putProperty(int lineStart, int lineEnd, Map<? super String,? super String> target) {
+        int keyEnd = lineStart;
+        int valueStart = lineEnd;
+        boolean hasSeparator = false;
+        while(keyEnd < lineEnd) {
+            byte b = byteAt(keyEnd);
+            if(b == '=' || b == ':') {
+                valueStart = keyEnd + 1;
+                hasSeparator = true;
+                break;
+            } else if(b == ' ' || b == '\t' || b == '\f') {
+                valueStart = keyEnd + 1;
+                break;
+            }
+            keyEnd++;
+        }
+        while(valueStart < lineEnd) {
+            byte b = byteAt(valueStart);
+            if(b != ' ' && b != '\t' && b != '\f') {
+                if(!hasSeparator && (b == '=' || b == ':')) {
+                    hasSeparator = true;
+                } else {
+                    break;
+                }
+            }
+            valueStart++;
+        }
+        target.put(latin1(lineStart,keyEnd),latin1(valueStart,lineEnd));
+    }
+
+    private String latin1(int from, int to) {
+        int length = to - from;
+        if(length == 0) return "";
+        if(array != null) return new String(array,arrayOffset+from,length,ISO_8859_1);
+
+        if(view == null) view = buffer.duplicate();
+        if(scratch == null || scratch.length < length) scratch = new byte[Math.max(length,256)];
+        ((Buffer)view).position(from);
+        view.get(scratch,0,length);
+        return new String(scratch,0,length,ISO_8859_1);
+    }
+
+    /**
+     * Reads the logical line starting at the given index, which may be continued over several lines, and puts its
+     * property; in the same way as {@link java.util.Properties#load(InputStream)}.
+     *
+     * @return the index after the logical line
+     */
+    private int parseLogicalLine(int start, Map<? super String,? super String> target) {
+        int pos = readLogicalLine(start);
+        int limit = lineLength;
+        if(limit < 0) return pos;
+
+        char[] line = lineBuffer;
+        int keyLength = 0;
+        int valueStart = limit;
+        boolean hasSeparator = false;
+        boolean precedingBackslash = false;
+        while(keyLength < limit) {
+            char c = line[keyLength];
+            if((c == '=' || c == ':') && !precedingBackslash) {
+                valueStart = keyLength + 1;
+                hasSeparator = true;
+                break;
+            } else if((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash) {
+                valueStart = keyLength + 1;
+                break;
+            }
+            precedingBackslash = (c == '\\') ? !precedingBackslash : false;
+            keyLength++;
+        }
+        while(valueStart < limit) {
+            char c = line[valueStart];
+            if(c != ' ' && c != '\t' && c != '\f') {
+                if(!hasSeparator && (c == '=' || c == ':')) {
+                    hasSeparator = true;
+                } else {
+                    break;
+                }
+            }
+            valueStart++;
+        }
+        target.put(convert(line,0,keyLength),convert(line,valueStart,limit-valueStart));
+        return pos;
+    }
+
+    /**
+     * Copies the logical line into the line buffer, joining continued lines and removing the whitespace at the
+     * start of each continuation.  Sets the line length to -1 if there is no line before the end of the buffer.
+     *
+     * @return the index after the logical line
+     */
+    private int readLogicalLine(int off) {
+        char[] line = lineBuffer;
+        int len = 0;
+        boolean skipWhiteSpace = true;
+        boolean appendedLineBegin = false;
+        boolean precedingBackslash = false;
+
+        while(true) {
+            if(off >= end) {
+                lineLength = len == 0 ? -1 : precedingBackslash ? len - 1 : len;
+                return off;
+            }
+
+            char c = (char)(byteAt(off++) & 0xFF);
+
+            if(skipWhiteSpace) {
+                if(c == ' ' || c == '\t' || c == '\f') {
+                    continue;
+                }
+                if(!appendedLineBegin && (c == '\r' || c == '\n')) {
+                    continue;
+                }
+                skipWhiteSpace = false;
+                appendedLineBegin = false;
+            }
+            if(len == 0 && (c == '#' || c == '!')) {
+                off = indexOfEndOfLine(off);
+                if(off < end) off++;
+                skipWhiteSpace = true;
+                continue;
+            }
+
+            if(c != '\n' && c != '\r') {
+                if(len == line.length) {
+                    line = lineBuffer = Arrays.copyOf(line,len*2);
+                }
+                line[len++] = c;
+                precedingBackslash = (c == '\\') ? !precedingBackslash : false;
+            } else {
+                if(len == 0) {
+                    skipWhiteSpace = true;
+                    continue;
+                }
+                if(off >= end) {
+                    lineLength = precedingBackslash ? len - 1 : len;
+                    return off;
+                }
+                if(precedingBackslash) {
+                    // the backslash is not part of the line, and the whitespace starting the next line is skipped
+                    len -= 1;
+                    skipWhiteSpace = true;
+                    appendedLineBegin = true;
+                    precedingBackslash = false;
+                    if(c == '\r' && byteAt(off) == '\n') {
+                        off++;
+                    }
+                } else {
+                    lineLength = len;
+                    return off;
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the escaped characters in the given part of the line
+     */
+    private String convert(char[] in, int off, int len) {
+        int end = off + len;
+        int start = off;
+        while(off < end) {
+            if(in[off] == '\\') break;
+            off++;
+        }
+        if(off == end) return new String(in,start,len);
+
+        StringBuilder out = converted;
+        out.setLength(0);
+        out.append(in,start,off-start);
+
+        while(off < end) {
+            char c = in[off++];
+            if(c == '\\') {
+                if(off == end) break;
+                c = in[off++];
+                if(c == 'u') {
+                    if(off > end - 4) {
+                        throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    }
+                    int value = 0;
+                    for(int i = 0; i < 4; i++) {
+                        c = in[off++];
+                        if(c >= '0' && c <= '9') value = (value << 4) + c - '0';
+                        else if(c >= 'a' && c <= 'f') value = (value << 4) + 10 + c - 'a';
+                        else if(c >= 'A' && c <= 'F') value = (value << 4) + 10 + c - 'A';
+                        else throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    }
+                    out.append((char)value);
+                } else {
+                    if(c == 't') c = '\t';
+                    else if(c == 'r') c = '\r';
+                    else if(c == 'n') c = '\n';
+                    else if(c == 'f') c = '\f';
+                    out.append(c);
+                }
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Records which file supplied the value of each merged property; i.e. default.properties,
+ * environments/dev.x86_64.properties or an operational override.
+ * </p>
+ * <p>
+ * The record is compact: the keys are held in an array ordered by their hash codes, alongside a primitive array of
+ * the index of the file that supplied each key; there is no object per key.  With compressed references this is 8
+ * bytes per key, plus the names of the files.  Looking up the source of a key is a binary search of the hash codes
+ * (which strings cache), so ordering the keys is a sort of primitives rather than a comparison of strings.
+ * </p>
+ * <p>
+ * When a reload changes the source of some of the keys, the new sources are derived from the previous sources via
+ * {@link #update(Map)}: the changed keys are recorded in a map over the previous arrays, which are shared.  Once
+ * the map holds more than 1/{@value OverlaidProperties#COMPACTING_RATIO} of the keys in the arrays, the two are
+ * merged into new arrays; only the keys that are added are ordered.
+ * </p>
+ * <p>
+ * When the defaults are a snapshot, the keys that only the snapshot defines are not recorded; the source of a key
+ * that is not recorded is the defaults, if the snapshot contains it.
+ * </p>
+ * The sources are immutable, and can be shared by any number of threads.
+ */
+public final class PropertySources {
+
+    private final String[] keys;
+    private final int[] sources;
+    private final String[] names;
+    /**
+     * The snapshot of the defaults, the first of the names, whose keys are not recorded; or null
+     */
+    private final Map<String,String> base;
+    /**
+     * The source of each key changed since the arrays were ordered, or -1 if the key was removed; or null
+     */
+    private final Map<String,Integer> overlay;
+    private final int size;
+
+    /**
+     * @param keys the keys, ordered by their hash codes; the array is not copied
+     * @param sources the index, in names, of the source of each of the keys; the array is not copied
+     * @param names the names of the sources
+     */
+    PropertySources(String[] keys, int[] sources, String[] names) {
+        this(keys,sources,names,null,keys.length);
+    }
+
+    /**
+     * @param keys the keys not supplied by the defaults, ordered by their hash codes; the array is not copied
+     * @param sources the index, in names, of the source of each of the keys; the array is not copied
+     * @param names the names of the sources
+     * @param base the snapshot of the defaults, whose keys that are not in keys were supplied by the defaults
+     * @param size the number of properties
+     */
+    PropertySources(String[] keys, int[] sources, String[] names, Map<String,String> base, int size) {
+        this(keys,sources,names,base,null,size);
+    }
+
+    private PropertySources(String[] keys, int[] sources, String[] names, Map<String,String> base,
+                            Map<String,Integer> overlay, int size) {
+        this.keys = keys;
+        this.sources = sources;
+        this.names = names;
+        this.base = base;
+        this.overlay = overlay;
+        this.size = size;
+    }
+
+    /**
+     * @param key the property
+     * @return the name of the file that supplied the property's merged value, or null if there is no such property
+     */
+    public String getSourceOfProperty(String key) {
+        if(key == null) return null;
+        if(overlay != null) {
+            Integer source = overlay.get(key);
+            if(source != null) return source == -1 ? null : names[source];
+        }
+        int index = indexOf(key);
+        if(index >= 0) return names[sources[index]];
+        return base != null && base.containsKey(key) ? names[0] : null;
+    }
+
+    private int indexOf(String key) {
+        int hash = key.hashCode();
+        int low = 0;
+        int high = keys.length - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleHash = keys[middle].hashCode();
+            if(middleHash < hash) low = middle + 1;
+            else if(middleHash > hash) high = middle - 1;
+            else {
+                // search the keys with the same hash code
+                for(int i = middle; i >= 0 && keys[i].hashCode() == hash; i--) {
+                    if(keys[i].equals(key)) return i;
+                }
+                for(int i = middle + 1; i < keys.length && keys[i].hashCode() == hash; i++) {
+                    if(keys[i].equals(key)) return i;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Derives the sources of the properties after the source of some of the keys has changed.  The changed keys are
+     * recorded over these sources' arrays, until there are enough of them to order the arrays again.
+     *
+     * @param changed the new source of each changed key, as an index into the names; or -1 if the key was removed
+     * @return the new sources; these sources are not changed
+     */
+    PropertySources update(Map<String,Integer> changed) {
+        int updatedSize = size;
+        for(Map.Entry<String,Integer> entry : changed.entrySet()) {
+            boolean present = getSourceOfProperty(entry.getKey()) != null;
+            if(present && entry.getValue() == -1) updatedSize--;
+            else if(!present && entry.getValue() != -1) updatedSize++;
+        }
+
+        Map<String,Integer> updated;
+        if(overlay == null) {
+            updated = new HashMap<String,Integer>(changed);
+        } else {
+            updated = new HashMap<String,Integer>(overlay);
+            updated.putAll(changed);
+        }
+        if(updated.size() <= keys.length/OverlaidProperties.COMPACTING_RATIO) {
+            return new PropertySources(keys,sources,names,base,updated,updatedSize);
+        }
+        return order(updated,updatedSize);
+    }
+
+    /**
+     * Merges the changed keys into the arrays.  The keys are not ordered again; the keys that are added are ordered,
+     * and merged into the existing order.  When no key is added or removed the array of keys is shared, and only the
+     * array of sources is copied.
+     */
+    private PropertySources order(Map<String,Integer> changed, int updatedSize) {
+        int[] updatedSources = sources.clone();
+        boolean[] removed = null;
+        int removedCount = 0;
+        String[] added = new String[changed.size()];
+        int[] addedSources = new int[changed.size()];
+        int addedCount = 0;
+        for(Map.Entry<String,Integer> entry : changed.entrySet()) {
+            int index = indexOf(entry.getKey());
+            int source = entry.getValue();
+            // the keys supplied by the snapshot of the defaults are not recorded
+            if(source == 0 && base != null) source = -1;
+            if(index >= 0) {
+                if(source == -1) {
+                    if(removed == null) removed = new boolean[keys.length];
+                    removed[index] = true;
+                    removedCount++;
+                } else {
+                    updatedSources[index] = source;
+                }
+            } else if(source != -1) {
+                added[addedCount] = entry.getKey();
+                addedSources[addedCount++] = source;
+            }
+        }
+        if(addedCount == 0 && removedCount == 0) return new PropertySources(keys,updatedSources,names,base,updatedSize);
+
+        // the hash code in the high bits, and the index in the low bits; so the order is by hash code
+        long[] order = new long[addedCount];
+        for(int i = 0; i < addedCount; i++) {
+            order[i] = ((long)added[i].hashCode() << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int size = keys.length - removedCount + addedCount;
+        String[] updatedKeys = new String[size];
+        int[] mergedSources = new int[size];
+        int next = 0;
+        int nextAdded = 0;
+        for(int i = 0; i <= keys.length; i++) {
+            if(i < keys.length && removed != null && removed[i]) continue;
+            while(nextAdded < addedCount && (i == keys.length || (int)(order[nextAdded] >> 32) < keys[i].hashCode())) {
+                int index = (int)order[nextAdded++];
+                updatedKeys[next] = added[index];
+                mergedSources[next++] = addedSources[index];
+            }
+            if(i < keys.length) {
+                updatedKeys[next] = keys[i];
+                mergedSources[next++] = updatedSources[i];
+            }
+        }
+        return new PropertySources(updatedKeys,mergedSources,names,base,updatedSize);
+    }
+
+    /**
+     * @return the names of the files the properties were merged from, in the order they were merged
+     */
+    public List<String> getNamesOfSources() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @return the number of properties
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * A Properties object whose contents cannot be changed.  Every method that would modify the properties throws an
+ * {@link UnsupportedOperationException}, and the key, value and entry views are unmodifiable.
+ * </p>
+ * <p>
+ * The properties are read from an unmodifiable map, without the locking of {@link Hashtable}, so a single instance
+ * can be shared by any number of threads.  The map is available via {@link #asMap()}, so that callers wanting the
+ * properties as a map share the same copy.
+ * </p>
+ * <p>
+ * The map is the only copy of the properties; the inherited table is left empty.  Every method that reads the
+ * properties, including storing, listing, equality and serialization, is therefore overridden to read the map.
+ * </p>
+ */
+public final class ReadOnlyProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String,String> properties;
+    /**
+     * The map the properties were created from, so that it can be overlaid without being copied
+     */
+    private final transient Map<String,String> wrapped;
+
+    /**
+     * Copies the given properties.  Only entries whose key and value are Strings are copied.
+     *
+     * @param properties the properties to copy
+     */
+    public ReadOnlyProperties(Properties properties) {
+        this(copy(properties));
+    }
+
+    private ReadOnlyProperties(Map<String,String> properties) {
+        this.properties = Collections.unmodifiableMap(properties);
+        this.wrapped = properties;
+    }
+
+    /**
+     * Creates read only properties from the given map, without copying it.
+     *
+     * @param properties the properties, which must not be modified afterwards
+     * @return the read only properties
+     */
+    static ReadOnlyProperties wrap(Map<String,String> properties) {
+        return new ReadOnlyProperties(properties);
+    }
+
+    private static Map<String,String> copy(Properties properties) {
+        Map<String,String> copy = new HashMap<String,String>(properties.size()*4/3+1);
+        for(String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if(value!=null) {
+                copy.put(name,value);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @return the map the properties were created from, which must not be modified
+     */
+    Map<String,String> getWrappedMap() {
+        return wrapped;
+    }
+
+    /**
+     * @return the unmodifiable map of the properties
+     */
+    public Map<String,String> asMap() {
+        return properties;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public String getProperty(String key, String defaultValue) {
+        String value = properties.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        Object value = properties.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return properties.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return properties.containsValue(value);
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return properties.containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        return properties.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    @Override
+    public Set<String> stringPropertyNames() {
+        return properties.keySet();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<Object> keySet() {
+        return (Set)properties.keySet();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<Object> values() {
+        return (Collection)properties.values();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<Map.Entry<Object,Object>> entrySet() {
+        return (Set)properties.entrySet();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Enumeration<?> propertyNames() {
+        return Collections.enumeration(properties.keySet());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Enumeration<Object> keys() {
+        return Collections.enumeration((Set)properties.keySet());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Enumeration<Object> elements() {
+        return Collections.enumeration((Collection)properties.values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Object,? super Object> action) {
+        for(Map.Entry<String,String> entry : properties.entrySet()) {
+            action.accept(entry.getKey(),entry.getValue());
+        }
+    }
+
+    @Override
+    public void store(Writer writer, String comments) throws IOException {
+        toProperties().store(writer,comments);
+    }
+
+    @Override
+    public void store(OutputStream out, String comments) throws IOException {
+        toProperties().store(out,comments);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void save(OutputStream out, String comments) {
+        toProperties().save(out,comments);
+    }
+
+    @Override
+    public void storeToXML(OutputStream os, String comment) throws IOException {
+        toProperties().storeToXML(os,comment);
+    }
+
+    @Override
+    public void storeToXML(OutputStream os, String comment, String encoding) throws IOException {
+        toProperties().storeToXML(os,comment,encoding);
+    }
+
+    @Override
+    public void list(PrintStream out) {
+        toProperties().list(out);
+    }
+
+    @Override
+    public void list(PrintWriter out) {
+        toProperties().list(out);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || properties.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return properties.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return properties.toString();
+    }
+
+    /**
+     * The properties cannot be changed, so this instance is returned rather than a copy.
+     */
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+    /**
+     * Serializes the properties as a plain {@link Properties}, as the inherited table that {@link Properties}
+     * writes is empty.
+     */
+    private Object writeReplace() {
+        return toProperties();
+    }
+
+    /**
+     * @return a modifiable copy of the properties, for the inherited methods that write them out
+     */
+    private Properties toProperties() {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    @Override
+    public Object setProperty(String key, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putAll(Map<?,?> t) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Object,? super Object,?> function) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction<? super Object,? super Object,?> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object,?> mappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object,? super Object,?> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object,? super Object,?> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    @Override
+    public void load(Reader reader) {
+        throw readOnly();
+    }
+
+    @Override
+    public void load(InputStream inStream) {
+        throw readOnly();
+    }
+
+    @Override
+    public void loadFromXML(InputStream in) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("The properties are read only");
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A {@link PropertiesMerger} that merges the properties again when the files on the filesystem, that it reads them
+ * from, change.  The directories of the configuration and operational overrides (that are on the filesystem, rather
+ * than the classpath) are watched with a {@link WatchService}.  When a file in them is created, modified or deleted
+ * the properties are merged again, on the watching thread, by an {@link EnvironmentSpecificPropertiesMerger} with
+ * the same configuration.
+ * </p>
+ * <p>
+ * The properties of each file are kept, so that when a file is modified only that file is read again, and only the
+ * keys it contained, or now contains, are merged again.  The changed keys are overlaid on the previous merged
+ * properties, which are not copied; the overlay is folded into a new copy only once enough keys have changed.  All
+ * the files are read again when a file is created or deleted, or when {@link #reload()} is called.
+ * </p>
+ * <p>
+ * The new merger is published with a single volatile write, once it has merged all of the properties; callers
+ * reading the properties never wait on a reload, and see either the previous properties or the new ones, never a
+ * partial merge.  If the properties cannot be merged (i.e. a property that does not exist in the defaults is added
+ * whilst merging strictly), or a file that exists cannot be read (i.e. it is locked, part way through being
+ * replaced, or a memory mapped file is truncated whilst it is read), the failure is logged and the previous
+ * properties are kept.  The watching thread carries on watching after any failure to reload.
+ * </p>
+ * <p>
+ * Changes are applied after the directories have been quiet for {@link #DEFAULT_QUIET_PERIOD_IN_MILLIS}, so that
+ * a file written in several steps, or several files changed together, cause a single reload.  A directory that does
+ * not exist when the merger is created is not watched.
+ * </p>
+ * <p>
+ * Each call to {@link #getMergedProperties()} returns the properties as they are at the time of the call.  A
+ * resolver created from this merger reads the properties once, when it is created; so it does not see later
+ * changes.  The merger should be closed, to stop watching the directories.
+ * </p>
+ */
+public class ReloadingPropertiesMerger implements PropertiesMerger, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReloadingPropertiesMerger.class);
+
+    public static final long DEFAULT_QUIET_PERIOD_IN_MILLIS = 100;
+
+    private final long quietPeriodInMillis;
+    private final WatchService watchService;
+    private final Thread watcher;
+    private volatile EnvironmentSpecificPropertiesMerger merger;
+    private volatile boolean closed;
+
+    public ReloadingPropertiesMerger(PropertiesMergerBuilder builder) {
+        this(builder,DEFAULT_QUIET_PERIOD_IN_MILLIS);
+    }
+
+    /**
+     * @param builder the configuration of the merger
+     * @param quietPeriodInMillis how long the directories must go without a change, before the properties are merged
+     */
+    public ReloadingPropertiesMerger(PropertiesMergerBuilder builder, long quietPeriodInMillis) {
+        this.quietPeriodInMillis = quietPeriodInMillis;
+        this.merger = new EnvironmentSpecificPropertiesMerger(builder,true);
+
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create a watch service for the properties files",e);
+        }
+        try {
+            watch(merger.getDirectoriesOfPropertiesFiles());
+        } catch (RuntimeException e) {
+            closeWatchService();
+            throw e;
+        }
+
+        watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchForChanges();
+            }
+        },"environment-properties-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(Set<File> directories) {
+        for(File directory : directories) {
+            if(!directory.isDirectory()) {
+                log.debug("Not watching {} for changes to properties, as it is not a directory",directory);
+                continue;
+            }
+            try {
+                directory.toPath().register(watchService,StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,StandardWatchEventKinds.ENTRY_DELETE);
+                log.debug("Watching {} for changes to properties",directory);
+            } catch (IOException e) {
+                log.warn("Unable to watch {} for changes to properties",directory,e);
+            }
+        }
+    }
+
+    private void watchForChanges() {
+        try {
+            while(!closed) {
+                Set<File> changedFiles = new HashSet<File>();
+                boolean overflowed = drain(watchService.take(),changedFiles);
+                // wait for the changes to finish
+                WatchKey key;
+                while((key = watchService.poll(quietPeriodInMillis,TimeUnit.MILLISECONDS))!=null) {
+                    overflowed |= drain(key,changedFiles);
+                }
+                try {
+                    reload(overflowed ? null : changedFiles);
+                } catch (Error e) {
+                    log.error("Unable to reload properties, keeping the previous properties",e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Adds the files of the key's events to the changed files
+     *
+     * @return true if events were lost, so it is not known which files changed
+     */
+    private boolean drain(WatchKey key, Set<File> changedFiles) {
+        boolean overflowed = false;
+        Path directory = (Path)key.watchable();
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed = true;
+            } else {
+                changedFiles.add(directory.resolve((Path)event.context()).toFile().getAbsoluteFile());
+            }
+        }
+        key.reset();
+        return overflowed;
+    }
+
+    /**
+     * Reads all the files, merges the properties again, and publishes them if they could be merged.
+     *
+     * @return true if the properties were merged and published
+     */
+    public boolean reload() {
+        return reload(null);
+    }
+
+    /**
+     * A memory mapped file (see {@link FileSystemResource#getByteBuffer()}) that is truncated whilst it is read raises
+     * an {@link InternalError}, rather than an IOException; it is treated as a file that cannot be read.
+     *
+     * @param changedFiles the files that changed, or null to read all the files
+     */
+    private synchronized boolean reload(Set<File> changedFiles) {
+        if(closed) return false;
+        try {
+            EnvironmentSpecificPropertiesMerger current = merger;
+            EnvironmentSpecificPropertiesMerger reloaded = current.reload(changedFiles);
+            if(reloaded == current) return false;
+            merger = reloaded;
+            log.info("Reloaded properties");
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Unable to reload properties, keeping the previous properties",e);
+            return false;
+        } catch (InternalError e) {
+            log.warn("Unable to reload properties, keeping the previous properties",e);
+            return false;
+        }
+    }
+
+    @Override
+    public Properties getMergedProperties() {
+        return merger.getMergedProperties();
+    }
+
+    @Override
+    public Map<String, String> getMergedPropertiesAsMap() {
+        return merger.getMergedPropertiesAsMap();
+    }
+
+    @Override
+    public String getSourceOfProperty(String key) {
+        return merger.getSourceOfProperty(key);
+    }
+
+    @Override
+    public PropertySources getSourcesOfProperties() {
+        return merger.getSourcesOfProperties();
+    }
+
+    /**
+     * Stops watching for changes.  The properties that were last merged continue to be returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeWatchService();
+        if(watcher!=null) watcher.interrupt();
+    }
+
+    private void closeWatchService() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Unable to close the watch service",e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+/**
+ * <p>
+ * Returns a single instance of each distinct string it is given, so that the keys and values of properties that are
+ * equal share one String object; i.e. a key that is in several layers, or a value such as <code>true</code> or a
+ * hostname that many properties have.
+ * </p>
+ * Implementations must be thread safe, as properties files can be loaded concurrently.
+ */
+public interface StringPool {
+    /**
+     * @param string the string, not null
+     * @return the pool's instance of a string equal to the given string; which is the given string, if the pool did
+     *         not have one.
+     */
+    String intern(String string);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>
+ * A {@link StringPool} that refers to its strings weakly; a string is removed from the pool once nothing else
+ * refers to it.  The pool can therefore be shared by every merger in the JVM, via {@link #getSharedInstance()}, so
+ * that the strings of many merged configurations (i.e. those of the tenants of a multi-tenant JVM) are deduplicated
+ * against each other, without the pool holding on to the strings of configurations that are no longer used.
+ * </p>
+ * <p>
+ * Each string in the pool costs a weak reference and a map entry, so the pool saves memory when strings are repeated
+ * across configurations.
+ * </p>
+ * <p>
+ * The pool is thread safe.  The strings are spread by hash code over {@link #STRIPES} maps, each with its own lock;
+ * so the files being loaded concurrently, by any number of mergers, rarely wait on each other to intern a string.
+ * </p>
+ */
+public class WeakStringPool implements StringPool {
+
+    /**
+     * The number of maps, and locks, the strings are spread over; a power of two
+     */
+    public static final int STRIPES = 64;
+
+    private static final WeakStringPool SHARED_INSTANCE = new WeakStringPool();
+
+    private final Map<String,WeakReference<String>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public WeakStringPool() {
+        stripes = (Map<String,WeakReference<String>>[])new Map<?,?>[STRIPES];
+        for(int i=0;i<STRIPES;i++) {
+            stripes[i] = new WeakHashMap<String,WeakReference<String>>();
+        }
+    }
+
+    /**
+     * @return the pool that is shared by all the mergers in the JVM that use it
+     */
+    public static WeakStringPool getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    @Override
+    public String intern(String string) {
+        Map<String,WeakReference<String>> strings = stripeOf(string);
+        synchronized (strings) {
+            WeakReference<String> reference = strings.get(string);
+            if(reference != null) {
+                String pooled = reference.get();
+                if(pooled != null) return pooled;
+            }
+            strings.put(string,new WeakReference<String>(string));
+            return string;
+        }
+    }
+
+    private Map<String,WeakReference<String>> stripeOf(String string) {
+        int hash = string.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return the number of strings in the pool, some of which may no longer be referenced
+     */
+    public int size() {
+        int size = 0;
+        for(Map<String,WeakReference<String>> strings : stripes) {
+            synchronized (strings) {
+                size += strings.size();
+            }
+        }
+        return size;
+    }
+}
@@ -17,11 +17,29 @@ package org.greencheek.utils.environment.propertyplaceholder.resolver;
 
 import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesResolverBuilder;
 import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentSnapshot;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.exception.CircularPlaceholderReferenceException;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.DependencyGraphValueResolver;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.PlaceholderDependencyGraph;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.value.ValueResolver;
 
 import java.util.*;
 
 /**
+ * When the value resolver is a {@link DependencyGraphValueResolver}, on construction the graph of the references
+ * between the merged properties is created, and checked for circular references; a
+ * {@link CircularPlaceholderReferenceException} listing each of the circular paths of keys is thrown if there are any.
+ * The values are then resolved via the graph.  Any other {@link ValueResolver} is asked to resolve each property on
+ * its own; and a circular reference is only found when a property on it is resolved.
+ *
+ * Placeholders that are not in the properties are resolved from the snapshot of the system properties that is shared
+ * by all resolvers, which is not refreshed when a resolver is created.  System properties set after the snapshot was
+ * taken are not seen until {@link OperatingEnvironmentSnapshot#refresh()} is called.
+ *
+ * When the builder is set to pre-resolve property values, all of the merged properties are resolved once on
+ * construction into an immutable index; which is then used to serve {@link #getProperty(String)} and
+ * {@link #getProperties()}.  Otherwise values are resolved on each request.
+ *
  * User: dominictootell
  * Date: 20/05/2012
  * Time: 13:34
@@ -30,7 +48,11 @@ public class EnvironmentSpecificPropertiesResolver implements PropertiesResolver
 
     private final boolean trimmingPropertyValues;
     private final ValueResolver propertyValueResolver;
+    private final DependencyGraphValueResolver graphValueResolver;
     private final Properties properties;
+    private final Map<String,String> unresolvedProperties;
+    private final Map<String,String> resolvedProperties;
+    private final PlaceholderDependencyGraph dependencyGraph;
 
 
     public EnvironmentSpecificPropertiesResolver(PropertiesResolverBuilder builder,
@@ -39,6 +61,23 @@ public class EnvironmentSpecificPropertiesResolver implements PropertiesResolver
         this.trimmingPropertyValues = builder.isTrimmingPropertyValues();
         this.propertyValueResolver = propertyValueResolver;
         this.properties = mergedPropertiesLoader.getMergedProperties();
+        this.unresolvedProperties = copy(properties);
+        if(propertyValueResolver instanceof DependencyGraphValueResolver) {
+            this.graphValueResolver = (DependencyGraphValueResolver)propertyValueResolver;
+            this.dependencyGraph = graphValueResolver.buildDependencyGraph(unresolvedProperties,trimmingPropertyValues);
+            if(!dependencyGraph.isAcyclic()) {
+                throw new CircularPlaceholderReferenceException(dependencyGraph.getCycles());
+            }
+        } else {
+            this.graphValueResolver = null;
+            this.dependencyGraph = null;
+        }
+
+        if(builder.isPreResolvingPropertyValues()) {
+            this.resolvedProperties = Collections.unmodifiableMap(new HashMap<String,String>(resolvedPropertyValues()));
+        } else {
+            this.resolvedProperties = null;
+        }
     }
 
 
@@ -51,8 +90,15 @@ public class EnvironmentSpecificPropertiesResolver implements PropertiesResolver
 
     @Override
     public String getProperty(String propertyName) {
-        if(properties.get(propertyName)==null) return null;
-        return propertyValueResolver.resolvedPropertyValue(properties,propertyName,isTrimmingPropertyValues());
+        if(resolvedProperties!=null) return resolvedProperties.get(propertyName);
+        if(graphValueResolver!=null) return graphValueResolver.resolvedPropertyValue(dependencyGraph,propertyName);
+        if(unresolvedProperties.get(propertyName)==null) return null;
+        return propertyValueResolver.resolvedPropertyValue(unresolvedProperties,propertyName,trimmingPropertyValues);
+    }
+
+    private Map<String,String> resolvedPropertyValues() {
+        if(graphValueResolver!=null) return graphValueResolver.resolvedPropertyValues(dependencyGraph);
+        return propertyValueResolver.resolvedPropertyValues(unresolvedProperties,trimmingPropertyValues);
     }
 
     @Override
@@ -67,7 +113,14 @@ public class EnvironmentSpecificPropertiesResolver implements PropertiesResolver
 
     @Override
     public Properties getProperties() {
-        return propertyValueResolver.resolvedPropertyValues(properties,isTrimmingPropertyValues());
+        if(resolvedProperties!=null) {
+            Properties p = new Properties();
+            p.putAll(resolvedProperties);
+            return p;
+        }
+        Properties p = new Properties();
+        p.putAll(resolvedPropertyValues());
+        return p;
     }
 
     @Override
@@ -83,5 +136,15 @@ public class EnvironmentSpecificPropertiesResolver implements PropertiesResolver
         return p;
     }
 
-
+    /**
+     * @return the String properties, copied into a map
+     */
+    private static Map<String,String> copy(Properties properties) {
+        Set<String> names = properties.stringPropertyNames();
+        Map<String,String> copy = new HashMap<String,String>(names.size()*4/3+1);
+        for(String name : names) {
+            copy.put(name,properties.getProperty(name));
+        }
+        return copy;
+    }
 }
@@ -20,6 +20,7 @@ import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentS
 import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
 import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesResolverBuilder;
 import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.merger.StringPool;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.PropertiesResolver;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ResourceLoader;
@@ -28,6 +29,7 @@ import org.greencheek.utils.environment.propertyplaceholder.resolver.value.Varia
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
 /**
@@ -196,6 +198,83 @@ public class CompositeResolvedPropertiesBuilder
         return mergerBuilder.isStrictMergingOfProperties();
     }
 
+    @Override
+    public PropertiesMergerBuilder setReturningReadOnlyMergedProperties(boolean readOnly) {
+        mergerBuilder.setReturningReadOnlyMergedProperties(readOnly);
+        return this;
+    }
+
+    @Override
+    public boolean isReturningReadOnlyMergedProperties() {
+        return mergerBuilder.isReturningReadOnlyMergedProperties();
+    }
+
+    @Override
+    public PropertiesMergerBuilder setLoadingPropertiesConcurrently(boolean concurrently) {
+        mergerBuilder.setLoadingPropertiesConcurrently(concurrently);
+        return this;
+    }
+
+    @Override
+    public boolean isLoadingPropertiesConcurrently() {
+        return mergerBuilder.isLoadingPropertiesConcurrently();
+    }
+
+    @Override
+    public PropertiesMergerBuilder setExecutorForLoadingProperties(ExecutorService executor) {
+        mergerBuilder.setExecutorForLoadingProperties(executor);
+        return this;
+    }
+
+    @Override
+    public ExecutorService getExecutorForLoadingProperties() {
+        return mergerBuilder.getExecutorForLoadingProperties();
+    }
+
+    @Override
+    public PropertiesMergerBuilder setParsingLargePropertiesFilesInParallel(boolean parallel) {
+        mergerBuilder.setParsingLargePropertiesFilesInParallel(parallel);
+        return this;
+    }
+
+    @Override
+    public boolean isParsingLargePropertiesFilesInParallel() {
+        return mergerBuilder.isParsingLargePropertiesFilesInParallel();
+    }
+
+    @Override
+    public PropertiesMergerBuilder setDeduplicatingPropertyStrings(boolean deduplicating) {
+        mergerBuilder.setDeduplicatingPropertyStrings(deduplicating);
+        return this;
+    }
+
+    @Override
+    public boolean isDeduplicatingPropertyStrings() {
+        return mergerBuilder.isDeduplicatingPropertyStrings();
+    }
+
+    @Override
+    public PropertiesMergerBuilder setStringPoolForDeduplicatingProperties(StringPool pool) {
+        mergerBuilder.setStringPoolForDeduplicatingProperties(pool);
+        return this;
+    }
+
+    @Override
+    public StringPool getStringPoolForDeduplicatingProperties() {
+        return mergerBuilder.getStringPoolForDeduplicatingProperties();
+    }
+
+    @Override
+    public PropertiesMergerBuilder setListingDirectoriesOfPropertiesFiles(boolean listing) {
+        mergerBuilder.setListingDirectoriesOfPropertiesFiles(listing);
+        return this;
+    }
+
+    @Override
+    public boolean isListingDirectoriesOfPropertiesFiles() {
+        return mergerBuilder.isListingDirectoriesOfPropertiesFiles();
+    }
+
     @Override
     public PropertiesMergerBuilder setVariablesUsedForSwitchingConfiguration(List<List<String>> var) {
         mergerBuilder.setVariablesUsedForSwitchingConfiguration(var);
@@ -298,6 +377,17 @@ public class CompositeResolvedPropertiesBuilder
         return resolverBuilder.isTrimmingPropertyValues();
     }
 
+    @Override
+    public PropertiesResolverBuilder setPreResolvingPropertyValues(boolean preResolve) {
+        resolverBuilder.setPreResolvingPropertyValues(preResolve);
+        return this;
+    }
+
+    @Override
+    public boolean isPreResolvingPropertyValues() {
+        return resolverBuilder.isPreResolvingPropertyValues();
+    }
+
     @Override
     public Properties buildResolvedProperties() {
         return resolverBuilder.buildProperties(build());
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.environment;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <p>
+ * An immutable copy of the environment variables and system properties, that placeholders are resolved against.
+ * </p>
+ * <p>
+ * The snapshot of the java process's environment, {@link #current()}, is shared by all resolvers.  It is not
+ * created until it is first asked for, after which it is read without locking.  The environment variables of
+ * a process do not change, so they are copied only once.  The system properties are copied when the snapshot is
+ * created; a call to {@link #refresh()} discards the current snapshot, so that the next call to {@link #current()}
+ * copies the system properties again.  Each new snapshot of the process's environment has a higher generation.
+ * </p>
+ */
+public final class OperatingEnvironmentSnapshot {
+
+    private static final Object LOCK = new Object();
+    private static volatile OperatingEnvironmentSnapshot current;
+    private static long generations = 0;
+
+    private final Map<String,String> environmentVariables;
+    private final Map<String,String> systemProperties;
+    private final long generation;
+
+    private OperatingEnvironmentSnapshot(Map<String,String> environmentVariables,
+                                         Map<String,String> systemProperties,
+                                         long generation) {
+        this.environmentVariables = environmentVariables;
+        this.systemProperties = systemProperties;
+        this.generation = generation;
+    }
+
+    /**
+     * @return the snapshot of the environment of the java process; creating it if need be.
+     */
+    public static OperatingEnvironmentSnapshot current() {
+        OperatingEnvironmentSnapshot snapshot = current;
+        if(snapshot == null) {
+            synchronized (LOCK) {
+                snapshot = current;
+                if(snapshot == null) {
+                    current = snapshot = new OperatingEnvironmentSnapshot(ProcessEnvironmentVariables.VARIABLES,
+                                                                          copy(System.getProperties()),
+                                                                          ++generations);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discards the current snapshot of the java process's environment, so that changes to the system
+     * properties are seen.  The new snapshot is not created until it is next asked for.
+     */
+    public static void refresh() {
+        synchronized (LOCK) {
+            current = null;
+        }
+    }
+
+    /**
+     * Creates a snapshot from the given environment properties.  The snapshot is not shared, and has a
+     * generation of 0.
+     *
+     * @param properties the source of the environment variables and system properties
+     * @return the snapshot of the given properties
+     */
+    public static OperatingEnvironmentSnapshot capture(OperatingEnvironmentProperties properties) {
+        return new OperatingEnvironmentSnapshot(copy(properties.getEnvironmentProperties()),
+                                                copy(properties.getSystemProperties()),0);
+    }
+
+    private static Map<String,String> copy(Properties properties) {
+        if(properties == null) return Collections.emptyMap();
+        Map<String,String> copy = new HashMap<String,String>();
+        for(String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if(value!=null) copy.put(name,value);
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public String getEnvironmentVariable(String name) {
+        return environmentVariables.get(name);
+    }
+
+    public String getSystemProperty(String name) {
+        return systemProperties.get(name);
+    }
+
+    /**
+     * @return an unmodifiable map of the environment variables
+     */
+    public Map<String,String> getEnvironmentVariables() {
+        return environmentVariables;
+    }
+
+    /**
+     * @return an unmodifiable map of the system properties
+     */
+    public Map<String,String> getSystemProperties() {
+        return systemProperties;
+    }
+
+    /**
+     * @return the generation of the snapshot of the java process's environment, or 0 for a captured snapshot.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Holder for the environment variables of the process, which are copied on first use.
+     */
+    private static final class ProcessEnvironmentVariables {
+        static final Map<String,String> VARIABLES =
+                Collections.unmodifiableMap(new HashMap<String,String>(System.getenv()));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.exception;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when properties reference each other in a circle, i.e. <code>a=${b}</code> and <code>b=${a}</code>.
+ * Each of the circular paths of keys is available from {@link #getCycles()}.
+ */
+public class CircularPlaceholderReferenceException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<List<String>> cycles;
+
+    public CircularPlaceholderReferenceException(List<List<String>> cycles) {
+        super(createMessage(cycles));
+        this.cycles = Collections.unmodifiableList(new ArrayList<List<String>>(cycles));
+    }
+
+    /**
+     * @return the circular paths of keys; each path starts and ends with the same key.
+     */
+    public List<List<String>> getCycles() {
+        return cycles;
+    }
+
+    private static String createMessage(List<List<String>> cycles) {
+        StringBuilder message = new StringBuilder("Circular placeholder references in property definitions: ");
+        for(int i=0;i<cycles.size();i++) {
+            if(i>0) message.append(", ");
+            message.append('[');
+            List<String> cycle = cycles.get(i);
+            for(int j=0;j<cycle.size();j++) {
+                if(j>0) message.append(" -> ");
+                message.append(cycle.get(j));
+            }
+            message.append(']');
+        }
+        return message.toString();
+    }
+}
@@ -18,22 +18,41 @@ package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
 
 /**
  * User: dominictootell
  * Date: 17/06/2012
  * Time: 17:54
  */
-public class ClassPathResource implements Resource {
+public class ClassPathResource implements MetadataResource {
 
     private final URL resource;
+    private final JarFileCache jars;
     private final Logger log = LoggerFactory.getLogger(ClassPathResource.class);
 
     public ClassPathResource(URL resource) {
+        this(resource,null);
+    }
+
+    /**
+     * @param resource the URL of the resource, or null if the resource does not exist
+     * @param jars the jar files opened by the current merge, which the resource's jar is read from; or null to open
+     *             and close the jar each time the resource is read
+     */
+    public ClassPathResource(URL resource, JarFileCache jars) {
         this.resource = resource;
+        this.jars = jars;
     }
 
     @Override
@@ -48,6 +67,207 @@ public class ClassPathResource implements Resource {
         return is;
     }
 
+    /**
+     * <p>
+     * Returns the contents of the resource.  A resource in a jar file (a jar:file: URL) is read from the jar, which
+     * is shared by every resource in it that is read with the same {@link JarFileCache}; the entry's size is known, so
+     * its contents are read straight into an array of that size.  A resource in a directory on the classpath is read as a
+     * {@link FileSystemResource}.
+     * </p>
+     * Any other resource (i.e. a jar within a jar) is read from its stream.
+     *
+     * @return the contents of the resource
+     * @throws IOException if the resource cannot be read
+     */
+    @Override
+    public ByteBuffer getByteBuffer() throws IOException {
+        if(resource == null) throw new IOException("ClassPathResource has been constructed with a null resource");
+
+        FileSystemResource file = getFileSystemResource();
+        if(file != null) return file.getByteBuffer();
+
+        JarFile jar = getJarFile();
+        try {
+            JarEntry entry = getJarEntry(jar);
+            if(entry != null) return read(jar.getInputStream(entry),entry.getSize());
+        } finally {
+            release(jar);
+        }
+
+        InputStream is = resource.openStream();
+        return read(is,-1);
+    }
+
+    @Override
+    public long getLength() {
+        if(resource == null) return -1;
+        try {
+            FileSystemResource file = getFileSystemResource();
+            if(file != null) return file.getLength();
+
+            JarFile jar = getJarFile();
+            try {
+                JarEntry entry = getJarEntry(jar);
+                if(entry != null) return entry.getSize();
+            } finally {
+                release(jar);
+            }
+
+            return resource.openConnection().getContentLengthLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public long getLastModified() {
+        if(resource == null) return 0;
+        try {
+            FileSystemResource file = getFileSystemResource();
+            if(file != null) return file.getLastModified();
+
+            JarFile jar = getJarFile();
+            try {
+                JarEntry entry = getJarEntry(jar);
+                if(entry != null) return Math.max(entry.getTime(),0);
+            } finally {
+                release(jar);
+            }
+
+            return resource.openConnection().getLastModified();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getFingerprint() throws IOException {
+        if(resource == null) throw new IOException("ClassPathResource has been constructed with a null resource");
+
+        FileSystemResource file = getFileSystemResource();
+        if(file != null) return file.getFingerprint();
+
+        JarFile jar = getJarFile();
+        try {
+            JarEntry entry = getJarEntry(jar);
+            if(entry != null && entry.getCrc() != -1) return entry.getCrc();
+        } finally {
+            release(jar);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(getByteBuffer());
+        return crc.getValue();
+    }
+
+    /**
+     * @return the file, for a resource in a directory on the classpath; otherwise null
+     */
+    private FileSystemResource getFileSystemResource() {
+        if(!"file".equals(resource.getProtocol())) return null;
+        try {
+            return new FileSystemResource(new File(resource.toURI()));
+        } catch (URISyntaxException e) {
+            log.debug("Unable to find the file of resource {}, reading its stream",resource);
+            return null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Unable to find the file of resource {}, reading its stream",resource);
+            return null;
+        }
+    }
+
+    /**
+     * @return the jar file, for a resource in a jar on the filesystem (a jar:file: URL); otherwise null.  The jar is
+     *         shared if it is from the merge's cache, otherwise it is opened for the caller; either way it is passed
+     *         to {@link #release(JarFile)} once read.
+     * @throws IOException if the jar cannot be opened
+     */
+    private JarFile getJarFile() throws IOException {
+        if(!"jar".equals(resource.getProtocol())) return null;
+        String spec = resource.toString().substring("jar:".length());
+        int separator = spec.indexOf("!/");
+        if(separator == -1 || !spec.startsWith("file:")) return null;
+        File file;
+        try {
+            file = new File(new URI(spec.substring(0,separator)));
+        } catch (URISyntaxException e) {
+            log.debug("Unable to find the jar of resource {}, reading its stream",resource);
+            return null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Unable to find the jar of resource {}, reading its stream",resource);
+            return null;
+        }
+        JarFile jar = jars == null ? null : jars.get(file);
+        return jar == null ? new JarFile(file) : jar;
+    }
+
+    /**
+     * Closes the jar, unless it is held open by the merge's cache
+     */
+    private void release(JarFile jar) {
+        if(jar == null || (jars != null && jars.holds(jar))) return;
+        try {
+            jar.close();
+        } catch (IOException e) {
+            log.debug("Unable to close jar {}",jar.getName(),e);
+        }
+    }
+
+    /**
+     * @param jar the jar of the resource, or null
+     * @return the resource's entry in the jar, or null if it is not in the jar, or the resource is not in a jar
+     */
+    private JarEntry getJarEntry(JarFile jar) {
+        if(jar == null) return null;
+        String spec = resource.toString();
+        try {
+            String entryName = new URI("entry:" + spec.substring(spec.indexOf("!/")+2)).getSchemeSpecificPart();
+            if(entryName.indexOf("!/") != -1) return null;
+            return jar.getJarEntry(entryName);
+        } catch (URISyntaxException e) {
+            log.debug("Unable to find the jar entry of resource {}, reading its stream",resource);
+            return null;
+        }
+    }
+
+    /**
+     * Reads, and closes, the stream; into an array of the given size, if the size is known.
+     */
+    private static ByteBuffer read(InputStream is, long size) throws IOException {
+        try {
+            if(size >= 0 && size <= Integer.MAX_VALUE) {
+                byte[] bytes = new byte[(int)size];
+                int offset = 0;
+                int read;
+                while(offset < bytes.length && (read = is.read(bytes,offset,bytes.length-offset))!=-1) {
+                    offset += read;
+                }
+                if(offset < bytes.length) return ByteBuffer.wrap(bytes,0,offset);
+
+                int next = is.read();
+                if(next == -1) return ByteBuffer.wrap(bytes);
+
+                // the entry is larger than its recorded size; read the rest
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length*2+1);
+                out.write(bytes);
+                out.write(next);
+                return ByteBuffer.wrap(readRemaining(is,out));
+            }
+            return ByteBuffer.wrap(readRemaining(is,new ByteArrayOutputStream(8192)));
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] readRemaining(InputStream is, ByteArrayOutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read = is.read(buffer))!=-1) {
+            out.write(buffer,0,read);
+        }
+        return out.toByteArray();
+    }
+
     @Override
     public boolean isAvailable() {
         if(resource==null) return false;
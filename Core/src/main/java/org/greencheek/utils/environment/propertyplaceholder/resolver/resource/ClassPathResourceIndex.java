@@ -0,0 +1,328 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * An index of the configuration resources on the classpath, written at build time to
+ * {@value #INDEX_RESOURCE} (i.e. by the environment-properties-merger-maven-plugin).  The index records the
+ * classpath locations that were indexed (i.e. config/), and the path, size and CRC32 checksum of every file beneath
+ * them.  {@link ClassPathResourceLoader} rejects a resource beneath an indexed location that is not in the index,
+ * without asking the classloader for it; so probing for environment and operational override files that do not
+ * exist does not scan the classpath.
+ * </p>
+ * <p>
+ * Each index only describes the jar or directory (the root of the classpath) that it is in.  A resource is only
+ * rejected when every root that holds its location is indexed; so an unindexed root (i.e. target/test-classes, or
+ * a jar built without the plugin) that holds the same location is still asked for the resource.  The roots holding
+ * a location are those the classloader returns for the location's directory, which for a jar requires the jar to
+ * have entries for its directories (as jars built by maven do).  A directory may have had files added since its
+ * index was written (i.e. by an IDE build that does not run the plugin), so the file is looked for in an indexed
+ * directory rather than the resource being rejected; only the indexes of jars are trusted to be complete.
+ * </p>
+ * The index is a UTF-8 text file, of tab separated lines:
+ * <pre>
+ *     location    config/
+ *     resource    config/default.properties    1024    9a0364b9
+ * </pre>
+ */
+public final class ClassPathResourceIndex {
+
+    public static final String INDEX_RESOURCE = "META-INF/environment-properties.idx";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LOCATION = "location";
+    private static final String RESOURCE = "resource";
+
+    /**
+     * The size and checksum of an indexed resource
+     */
+    public static final class Entry {
+        private final long size;
+        private final long crc32;
+
+        Entry(long size, long crc32) {
+            this.size = size;
+            this.crc32 = crc32;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCrc32() {
+            return crc32;
+        }
+    }
+
+    /**
+     * The locations and resources indexed in a single jar or directory
+     */
+    private static final class Root {
+        final Set<String> locations = new LinkedHashSet<String>();
+        final Set<String> resources = new HashSet<String>();
+
+        boolean isIndexed(String resource) {
+            for(String location : locations) {
+                if(resource.startsWith(location)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Cached when the roots holding a location cannot be determined
+     */
+    private static final List<String> UNKNOWN_ROOTS = Collections.emptyList();
+
+    /**
+     * The indexes, by the URL of the root of the classpath that they are in
+     */
+    private final Map<String,Root> roots = new LinkedHashMap<String,Root>();
+    private final Set<String> locations = new LinkedHashSet<String>();
+    private final Map<String,Entry> resources = new HashMap<String,Entry>();
+    private final ConcurrentMap<String,List<String>> rootsHoldingLocations = new ConcurrentHashMap<String,List<String>>();
+
+    private ClassPathResourceIndex() {
+    }
+
+    /**
+     * Reads the indexes that the classloader has.
+     *
+     * @param classLoader the classloader to read the indexes from
+     * @return the indexes, or null if the classloader has no index
+     * @throws IOException if an index cannot be read
+     */
+    public static ClassPathResourceIndex read(ClassLoader classLoader) throws IOException {
+        Enumeration<URL> urls = classLoader.getResources(INDEX_RESOURCE);
+        if(!urls.hasMoreElements()) return null;
+
+        ClassPathResourceIndex index = new ClassPathResourceIndex();
+        while(urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            InputStream is = url.openStream();
+            try {
+                index.read(is,url,index.getRoot(url));
+            } finally {
+                is.close();
+            }
+        }
+        return index;
+    }
+
+    private Root getRoot(URL url) {
+        String path = url.toString();
+        String root = path.endsWith(INDEX_RESOURCE) ? path.substring(0,path.length()-INDEX_RESOURCE.length()) : path;
+        Root index = roots.get(root);
+        if(index == null) {
+            index = new Root();
+            roots.put(root,index);
+        }
+        return index;
+    }
+
+    private void read(InputStream is, URL url, Root root) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is,UTF_8));
+        String line;
+        while((line = reader.readLine())!=null) {
+            if(line.length()==0 || line.startsWith("#")) continue;
+            String[] fields = line.split("\t");
+            if(fields.length == 2 && fields[0].equals(LOCATION)) {
+                locations.add(fields[1]);
+                root.locations.add(fields[1]);
+            } else if(fields.length == 4 && fields[0].equals(RESOURCE)) {
+                try {
+                    resources.put(fields[1],new Entry(Long.parseLong(fields[2]),Long.parseLong(fields[3],16)));
+                    root.resources.add(fields[1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid line in resource index " + url + ": " + line);
+                }
+            } else {
+                throw new IOException("Invalid line in resource index " + url + ": " + line);
+            }
+        }
+    }
+
+    /**
+     * @param resource the path of a resource on the classpath, without a leading '/'
+     * @return true if the resource is beneath one of the indexed locations, in any of the indexes
+     */
+    public boolean isIndexed(String resource) {
+        return getIndexedLocation(resource) != null;
+    }
+
+    /**
+     * @return the shortest indexed location that the resource is beneath, or null
+     */
+    private String getIndexedLocation(String resource) {
+        String indexedLocation = null;
+        for(String location : locations) {
+            if(resource.startsWith(location) &&
+               (indexedLocation == null || location.length() < indexedLocation.length())) {
+                indexedLocation = location;
+            }
+        }
+        return indexedLocation;
+    }
+
+    /**
+     * @param classLoader the classloader the indexes were read from
+     * @param resource the path of a resource on the classpath, without a leading '/'
+     * @return false if every root of the classpath that holds the resource's location is indexed, and the
+     *         resource is in none of them; which means the resource is not on the classpath.  True if no root is
+     *         known to hold the location.
+     */
+    public boolean mayContain(ClassLoader classLoader, String resource) {
+        if(resources.containsKey(resource)) return true;
+        String location = getIndexedLocation(resource);
+        if(location == null) return true;
+
+        // no root reporting the location (i.e. a jar without entries for its directories) does not mean the
+        // resource is missing, so it is looked up
+        List<String> holding = getRootsHolding(classLoader,location);
+        if(holding.isEmpty()) return true;
+        for(String root : holding) {
+            Root index = roots.get(root);
+            if(index == null || !index.isIndexed(resource)) return true;
+            if(!root.startsWith("jar:") && !isMissingFromDirectory(root,resource)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the URLs of the roots of the classpath that have the location, or {@link #UNKNOWN_ROOTS}
+     */
+    private List<String> getRootsHolding(ClassLoader classLoader, String location) {
+        List<String> holding = rootsHoldingLocations.get(location);
+        if(holding != null) return holding;
+
+        holding = new ArrayList<String>();
+        String withoutSlash = location.endsWith("/") ? location.substring(0,location.length()-1) : location;
+        try {
+            Enumeration<URL> urls = classLoader.getResources(location);
+            while(urls.hasMoreElements()) {
+                String url = urls.nextElement().toString();
+                if(url.endsWith(location)) {
+                    holding.add(url.substring(0,url.length()-location.length()));
+                } else if(url.endsWith(withoutSlash)) {
+                    holding.add(url.substring(0,url.length()-withoutSlash.length()));
+                } else {
+                    holding = UNKNOWN_ROOTS;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            holding = UNKNOWN_ROOTS;
+        }
+        rootsHoldingLocations.putIfAbsent(location,holding);
+        return holding;
+    }
+
+    /**
+     * @return true if the root is a directory that does not have the resource
+     */
+    private static boolean isMissingFromDirectory(String root, String resource) {
+        if(!root.startsWith("file:")) return false;
+        try {
+            return !new File(new File(URI.create(root)),resource).exists();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param resource the path of a resource on the classpath, without a leading '/'
+     * @return the size and checksum of the resource, or null if it is not in the index
+     */
+    public Entry getEntry(String resource) {
+        return resources.get(resource);
+    }
+
+    /**
+     * Writes the index of the files beneath the given locations of a classes directory (i.e. target/classes), to
+     * {@value #INDEX_RESOURCE} in that directory.
+     *
+     * @param classesDirectory the directory that is on the classpath
+     * @param locations the locations to index, relative to the classes directory (i.e. config)
+     * @return the index file that was written
+     * @throws IOException if a file cannot be read, or the index written
+     */
+    public static File write(File classesDirectory, Collection<String> locations) throws IOException {
+        File indexFile = new File(classesDirectory,INDEX_RESOURCE);
+        File parent = indexFile.getParentFile();
+        if(!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile),UTF_8));
+        try {
+            writer.write("# environment properties resource index\n");
+            for(String location : locations) {
+                location = location.replace('\\','/');
+                if(location.startsWith("/")) location = location.substring(1);
+                if(location.length()>0 && !location.endsWith("/")) location = location + "/";
+                writer.write(LOCATION + "\t" + location + "\n");
+
+                List<String> paths = new ArrayList<String>();
+                listFiles(new File(classesDirectory,location),location,paths);
+                Collections.sort(paths);
+                for(String path : paths) {
+                    File file = new File(classesDirectory,path);
+                    writer.write(RESOURCE + "\t" + path + "\t" + file.length() + "\t" + Long.toHexString(crc32(file)) + "\n");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return indexFile;
+    }
+
+    private static void listFiles(File directory, String path, List<String> paths) {
+        File[] files = directory.listFiles();
+        if(files == null) return;
+        for(File file : files) {
+            if(file.isDirectory()) {
+                listFiles(file,path + file.getName() + "/",paths);
+            } else {
+                paths.add(path + file.getName());
+            }
+        }
+    }
+
+    private static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = is.read(buffer))!=-1) {
+                crc.update(buffer,0,read);
+            }
+        } finally {
+            is.close();
+        }
+        return crc.getValue();
+    }
+}
@@ -15,15 +15,70 @@
  */
 package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * <p>
+ * Loads resources from the classpath.  The result of looking up each resource (the URL of the resource, or that the
+ * resource does not exist) is cached per classloader, and shared by every loader in the JVM; so a resource that is
+ * probed by many mergers, or builders, scans the classpath once.  The classloaders are weakly referenced, so that
+ * the cache of a classloader that is discarded (i.e. a redeployed web application) is also discarded.
+ * </p>
+ * <p>
+ * As a resource that did not exist is not looked up again, {@link #clearCache()} should be called if resources are
+ * added to the classpath whilst the application is running.  No jar files are held open by the cache.
+ * </p>
+ * <p>
+ * If the classloader has a {@link ClassPathResourceIndex}, written at build time, a resource beneath an indexed
+ * location that is not in the index of any of the roots of the classpath that hold the location is rejected without
+ * asking the classloader for it.  Each rejected resource is logged at debug.
+ * </p>
+ *
  * User: dominictootell
  * Date: 20/05/2012
  * Time: 17:10
  */
 public class ClassPathResourceLoader implements ResourceLoader {
 
+    /**
+     * Cached for a resource that the classloader does not have
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    private static final Map<ClassLoader,CachedResources> RESOURCES = new WeakHashMap<ClassLoader,CachedResources>();
+
+    private static final Logger log = LoggerFactory.getLogger(ClassPathResourceLoader.class);
+
+    /**
+     * The lookups of a classloader, and its index; which is read when it is first needed.
+     * Neither references the classloader, so that the classloader can be discarded.
+     */
+    private static final class CachedResources {
+        final ConcurrentMap<String,Object> lookups = new ConcurrentHashMap<String,Object>();
+        private ClassPathResourceIndex index;
+        private boolean indexRead;
+
+        synchronized ClassPathResourceIndex getIndex(ClassLoader classLoader) {
+            if (!indexRead) {
+                try {
+                    index = ClassPathResourceIndex.read(classLoader);
+                } catch (IOException e) {
+                    log.warn("Unable to read the classpath resource index, resources will be looked up from the classloader",e);
+                }
+                indexRead = true;
+            }
+            return index;
+        }
+    }
+
     public final String baseLocation;
 
     public ClassPathResourceLoader (String configurationResourceLocation) {
@@ -53,13 +108,27 @@ public class ClassPathResourceLoader implements ResourceLoader {
      *
      * <li>uses the current threads classloader to load the resource.  It will search from the root of the classpath</li>
      * <li>If the current thread doesn't know about it, then it defaults to the classloader that loaded this class.
-     * This will still attempt to find the file from an absolute location</li>
+     * This will still attempt to find the file from an absolute location.  This is skipped if the classloader that
+     * loaded this class is the thread's classloader or one of its parents; as the thread's classloader has already
+     * asked it for the resource</li>
      * </ul>
      *
      * @param resource of the file to get from the classpath
      * @return The File object that represents the resource from the classpath
      */
     public Resource getFile(String resource) {
+        return getFile(resource,null);
+    }
+
+    /**
+     * Obtains a resource from the classpath, as {@link #getFile(String)}; a resource in a jar is read from the jar
+     * files opened by the current merge.
+     *
+     * @param resource of the file to get from the classpath
+     * @param jars the jar files opened by the current merge, or null to open the resource's jar each time it is read
+     * @return The File object that represents the resource from the classpath
+     */
+    public Resource getFile(String resource, JarFileCache jars) {
         URL base;
 
         // strip out the starting '/'
@@ -67,13 +136,15 @@ public class ClassPathResourceLoader implements ResourceLoader {
 
         resource = baseLocation + resource;
 
-        base = Thread.currentThread().getContextClassLoader().getResource(resource);
-        if (base == null) base = ClassPathResourceLoader.class.getClassLoader().getResource(resource);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ClassLoader classLoader = ClassPathResourceLoader.class.getClassLoader();
+        base = getResource(contextClassLoader,resource);
+        if (base == null && !isSameOrParent(classLoader,contextClassLoader)) base = getResource(classLoader,resource);
 
         //if (base == null) return null;
 
 
-        return new ClassPathResource(base);
+        return new ClassPathResource(base,jars);
     }
 
     @Override
@@ -81,5 +152,68 @@ public class ClassPathResourceLoader implements ResourceLoader {
         return baseLocation;
     }
 
+    /**
+     * @return true if the classloader is the child classloader, or one of the child's parents
+     */
+    private static boolean isSameOrParent(ClassLoader classLoader, ClassLoader child) {
+        for (ClassLoader parent = child; parent != null; parent = parent.getParent()) {
+            if (parent == classLoader) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Discards the cached lookups of every classloader, so that resources are looked up again.
+     */
+    public static void clearCache() {
+        synchronized (RESOURCES) {
+            RESOURCES.clear();
+        }
+    }
+
+    /**
+     * @return the number of classloaders that have cached lookups
+     */
+    static int getNumberOfCachedClassLoaders() {
+        synchronized (RESOURCES) {
+            return RESOURCES.size();
+        }
+    }
+
+    /**
+     * Looks up the resource from the classloader, or from the classloader's cached lookups.  A resource that the
+     * classloader's index shows is not on the classpath is not looked up.
+     *
+     * @param classLoader the classloader to look up the resource from, which may be null
+     * @param resource the name of the resource
+     * @return the URL of the resource, or null if the classloader does not have the resource
+     */
+    private static URL getResource(ClassLoader classLoader, String resource) {
+        if (classLoader == null) return null;
+
+        CachedResources resources;
+        synchronized (RESOURCES) {
+            resources = RESOURCES.get(classLoader);
+            if (resources == null) {
+                resources = new CachedResources();
+                RESOURCES.put(classLoader,resources);
+            }
+        }
+
+        Object url = resources.lookups.get(resource);
+        if (url == null) {
+            ClassPathResourceIndex index = resources.getIndex(classLoader);
+            if (index != null && !index.mayContain(classLoader,resource)) {
+                log.debug("Resource {} is not in the classpath resource index, and is not looked up",resource);
+                url = NOT_FOUND;
+            } else {
+                url = classLoader.getResource(resource);
+                if (url == null) url = NOT_FOUND;
+            }
+            resources.lookups.putIfAbsent(resource,url);
+        }
+        return url == NOT_FOUND ? null : (URL)url;
+    }
+
 
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * The contents of the directories that properties files are looked for in.  Each directory is listed once, when a
+ * file in it is first asked for, and only the names of its entries are recorded; so whether each of the possible
+ * files exists is answered from the listing, rather than by asking the filesystem about each file (which on a
+ * network filesystem is a round trip per file).  The attributes are read only for the files that are listed.
+ * </p>
+ * <p>
+ * The listing is not updated, it is meant to last for a single merge.  Symbolic links are followed; a link that is
+ * broken is treated as not existing.  A directory that does not exist has no files; a directory that exists but
+ * cannot be listed is an error, rather than its files being treated as not existing.  This class is thread safe.
+ * </p>
+ */
+public final class DirectoryListing {
+
+    private final Map<File,Set<String>> directories = new HashMap<File,Set<String>>();
+
+    /**
+     * @param file the file to look for
+     * @return the attributes of the file, or null if the file was not in its directory's listing
+     * @throws IOException if the directory of the file exists, but cannot be listed; or the attributes of the listed
+     *                     file cannot be read
+     */
+    public BasicFileAttributes getAttributes(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if(directory == null || !list(directory).contains(file.getName())) return null;
+        try {
+            return Files.readAttributes(file.toPath(),BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // a broken symbolic link, or the file has been removed since its directory was listed
+            return null;
+        }
+    }
+
+    private synchronized Set<String> list(File directory) throws IOException {
+        Set<String> names = directories.get(directory);
+        if(names == null) {
+            names = new HashSet<String>();
+            try {
+                DirectoryStream<Path> entries = Files.newDirectoryStream(directory.toPath());
+                try {
+                    for(Path entry : entries) {
+                        names.add(entry.getFileName().toString());
+                    }
+                } finally {
+                    entries.close();
+                }
+            } catch (NoSuchFileException e) {
+                // the directory does not exist, so none of its files do
+            } catch (NotDirectoryException e) {
+                // nor does a directory that is a file
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            }
+            directories.put(directory,names);
+        }
+        return names;
+    }
+
+    /**
+     * @return the number of directories that have been listed
+     */
+    public synchronized int getNumberOfDirectoriesListed() {
+        return directories.size();
+    }
+}
@@ -22,19 +22,48 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
 
 /**
  * User: dominictootell
  * Date: 17/06/2012
  * Time: 18:48
  */
-public class FileSystemResource implements Resource{
+public class FileSystemResource implements MetadataResource {
+
+    /**
+     * Files of at least this size are memory mapped by {@link #getByteBuffer()}, rather than read.
+     */
+    public static final long MEMORY_MAPPING_THRESHOLD = 1024*1024;
 
     private final Logger log = LoggerFactory.getLogger(FileSystemResource.class);
     private final File file;
+    private final boolean listed;
+    private final BasicFileAttributes attributes;
 
     public FileSystemResource(File f) {
         this.file = f;
+        this.listed = false;
+        this.attributes = null;
+    }
+
+    /**
+     * A file whose attributes have been read from a listing of its directory, so that whether it is available is
+     * known without asking the filesystem.
+     *
+     * @param f the file
+     * @param attributes the attributes of the file from its directory's {@link DirectoryListing}, or null if the
+     *                   file was not in the listing
+     */
+    public FileSystemResource(File f, BasicFileAttributes attributes) {
+        this.file = f;
+        this.listed = true;
+        this.attributes = attributes;
     }
 
     @Override
@@ -53,9 +82,70 @@ public class FileSystemResource implements Resource{
         return fis;
     }
 
+    /**
+     * Returns the contents of the file.  A file of at least {@link #MEMORY_MAPPING_THRESHOLD} bytes is memory mapped
+     * read only; a smaller file is read into a heap buffer, as for a small file that is cheaper than mapping it.
+     *
+     * @return the contents of the file
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public ByteBuffer getByteBuffer() throws IOException {
+        if(file==null) throw new IOException("FileSystemResource has been constructed with a null file");
+
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if(size >= MEMORY_MAPPING_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY,0,size);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int)size);
+            while(buffer.hasRemaining() && channel.read(buffer)!=-1);
+            ((Buffer)buffer).flip();
+            return buffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return the length of the file, from its directory's listing if it was listed; or -1 if it does not exist
+     */
+    @Override
+    public long getLength() {
+        if(file==null) return -1;
+        if(listed) return attributes==null ? -1 : attributes.size();
+        long length = file.length();
+        return length==0 && !file.exists() ? -1 : length;
+    }
+
+    /**
+     * @return when the file was last modified, from its directory's listing if it was listed; or 0 if it does
+     *         not exist
+     */
+    @Override
+    public long getLastModified() {
+        if(file==null) return 0;
+        if(listed) return attributes==null ? 0 : attributes.lastModifiedTime().toMillis();
+        return file.lastModified();
+    }
+
+    /**
+     * @return the CRC32 checksum of the contents of the file, which are read to calculate it
+     */
+    @Override
+    public long getFingerprint() throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(getByteBuffer());
+        return crc.getValue();
+    }
+
     @Override
     public boolean isAvailable() {
         if(file==null) return false;
+        if(listed) return attributes!=null && attributes.isRegularFile();
         return file.canRead();
     }
 
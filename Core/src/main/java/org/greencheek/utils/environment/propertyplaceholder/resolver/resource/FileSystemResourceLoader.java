@@ -16,6 +16,8 @@
 package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * User: dominictootell
@@ -59,6 +61,32 @@ public class FileSystemResourceLoader implements ResourceLoader {
         return new FileSystemResource(new File(baseLocation,resource));
     }
 
+    /**
+     * As {@link #getFile(String)}, but whether the file exists is answered from the listing of its directory; the
+     * directory is listed if it is not already in the listing.
+     *
+     * @param resource of the file to get from the file system
+     * @param listing the listing of the directories of the files looked for
+     * @return the resource for the file
+     * @throws IOException if the directory of the file exists, but cannot be listed
+     */
+    public Resource getFile(String resource, DirectoryListing listing) throws IOException {
+        if (resource == null || resource.trim().length() == 0) return null;
+        if (resource.startsWith("/")) resource = resource.substring(1);
+
+        File file = new File(baseLocation,resource);
+        return getFile(file,listing.getAttributes(file));
+    }
+
+    /**
+     * @param file the file
+     * @param attributes the attributes of the file from its directory's listing, or null if it was not listed
+     * @return the resource for the listed file
+     */
+    protected Resource getFile(File file, BasicFileAttributes attributes) {
+        return new FileSystemResource(file,attributes);
+    }
+
     @Override
     public String getBaseLocation() {
         return baseLocation;
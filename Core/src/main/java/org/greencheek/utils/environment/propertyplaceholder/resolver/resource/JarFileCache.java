@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarFile;
+
+/**
+ * <p>
+ * The jar files that classpath resources are read from during a single merge; each jar is opened once, and shared by
+ * every {@link ClassPathResource} obtained with the cache (see {@link ClassPathResourceLoader#getFile(String, JarFileCache)}).
+ * A JarFile can be read by many threads at once.
+ * </p>
+ * <p>
+ * The jars are closed when the cache is closed, at the end of the merge; so no jar is held open between merges (which
+ * would keep the file descriptor, lock the file on Windows, and read a stale directory of a jar that is replaced).
+ * A resource that is read after the cache is closed, or that was obtained without a cache, opens and closes its jar
+ * each time it is read.
+ * </p>
+ */
+public final class JarFileCache implements Closeable {
+
+    private final ConcurrentMap<File,JarFile> jars = new ConcurrentHashMap<File,JarFile>();
+    private volatile boolean closed;
+
+    /**
+     * @param file the jar file
+     * @return the opened jar file, or null if the cache has been closed
+     * @throws IOException if the jar file cannot be opened
+     */
+    JarFile get(File file) throws IOException {
+        if (closed) return null;
+        JarFile jar = jars.get(file);
+        if (jar == null) {
+            JarFile opened = new JarFile(file);
+            jar = jars.putIfAbsent(file,opened);
+            if (jar == null) {
+                jar = opened;
+                if (closed) {
+                    close();
+                    return null;
+                }
+            } else {
+                opened.close();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * @return true if the jar file was opened by, and is held open by, this cache
+     */
+    boolean holds(JarFile jar) {
+        return jars.containsValue(jar);
+    }
+
+    /**
+     * Closes and discards the opened jar files
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (File file : jars.keySet()) {
+            JarFile jar = jars.remove(file);
+            if (jar != null) {
+                try {
+                    jar.close();
+                } catch (IOException e) {
+                    // the jar is discarded either way
+                }
+            }
+        }
+    }
+
+    int size() {
+        return jars.size();
+    }
+}
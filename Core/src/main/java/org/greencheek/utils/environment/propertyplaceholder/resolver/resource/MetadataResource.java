@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A {@link Resource} that can describe its contents without them being read from its stream: their length, when they
+ * were last modified, and a fingerprint of them.  The contents can be obtained as a buffer, of their length.
+ * </p>
+ * The fingerprint is the CRC32 checksum of the contents; the checksum that jar files, and the
+ * {@link ClassPathResourceIndex}, record for each file.  Two resources with the same length and fingerprint almost
+ * certainly have the same contents.
+ */
+public interface MetadataResource extends Resource {
+
+    /**
+     * @return the length of the contents in bytes, or -1 if the resource is not available or its length is not known
+     */
+    long getLength();
+
+    /**
+     * @return when the contents were last modified, in milliseconds since the epoch; or 0 if the resource is not
+     *         available or the time is not known
+     */
+    long getLastModified();
+
+    /**
+     * Returns the CRC32 checksum of the contents.  This is read from the jar file for a resource in a jar, otherwise
+     * it is calculated by reading the contents.
+     *
+     * @return the CRC32 checksum of the contents
+     * @throws IOException if the resource cannot be read
+     */
+    long getFingerprint() throws IOException;
+
+    /**
+     * @return the contents of the resource, from the position to the limit of the buffer
+     * @throws IOException if the resource cannot be read
+     */
+    ByteBuffer getByteBuffer() throws IOException;
+}
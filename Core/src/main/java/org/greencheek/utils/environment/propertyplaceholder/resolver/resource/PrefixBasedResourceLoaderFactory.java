@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *     <li>classpath:</li>
  *     <li>filesystem:</li>
+ *     <li>snapshot: properties snapshots on the filesystem, see {@link SnapshotResourceLoader}</li>
  * </ul>
  * </p>
  * <p>
@@ -41,7 +42,8 @@ public class PrefixBasedResourceLoaderFactory implements ResourceLoaderFactory {
 
     enum Prefix {
         CLASSPATH("classpath:"),
-        FILESYSTEM("file:");
+        FILESYSTEM("file:"),
+        SNAPSHOT("snapshot:");
 
         private final String prefix;
         private final String prefixNoColon;
@@ -111,6 +113,8 @@ public class PrefixBasedResourceLoaderFactory implements ResourceLoaderFactory {
                         return new ClassPathResourceLoader(resource);
                     case FILESYSTEM:
                         return new FileSystemResourceLoader(resource);
+                    case SNAPSHOT:
+                        return new SnapshotResourceLoader(resource);
                     default :
                         return new ClassPathResourceLoader(resource);
                 }
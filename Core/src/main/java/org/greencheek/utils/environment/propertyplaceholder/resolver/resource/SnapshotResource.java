@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <p>
+ * A properties snapshot on the filesystem, written by
+ * {@link org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshotWriter}.  The snapshot is
+ * memory mapped the first time it is asked for via {@link #getSnapshot()}, and lookups are served from the mapped
+ * file; there is no text to parse.
+ * </p>
+ * <p>
+ * {@link #getStream()} is provided for callers that only understand properties files; it renders the snapshot as
+ * the text of a properties file, which loses the benefit of the snapshot.
+ * </p>
+ */
+public class SnapshotResource implements Resource {
+
+    private final Logger log = LoggerFactory.getLogger(SnapshotResource.class);
+    private final File file;
+    private volatile PropertiesSnapshot snapshot;
+
+    public SnapshotResource(File f) {
+        this.file = f;
+    }
+
+    /**
+     * Returns the snapshot, memory mapping the file on the first call.
+     *
+     * @return the properties in the snapshot
+     * @throws IOException if the file cannot be read, or is not a snapshot
+     */
+    public PropertiesSnapshot getSnapshot() throws IOException {
+        if(file==null) throw new IOException("SnapshotResource has been constructed with a null file");
+
+        PropertiesSnapshot s = snapshot;
+        if(s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if(s == null) {
+                    snapshot = s = PropertiesSnapshot.open(file);
+                }
+            }
+        }
+        return s;
+    }
+
+    @Override
+    public InputStream getStream() {
+        try {
+            Properties properties = new Properties();
+            for(Map.Entry<String,String> entry : getSnapshot().entrySet()) {
+                properties.setProperty(entry.getKey(),entry.getValue());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(out,null);
+            return new ByteArrayInputStream(out.toByteArray());
+        } catch (IOException e) {
+            log.warn("Unable to obtain stream for snapshot: {}",file);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        if(file==null) return false;
+        return file.canRead();
+    }
+
+    public String toString() {
+        if(file!=null) return file.toString();
+        else return null;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Loads properties snapshots from the filesystem, rather than properties files.  As with
+ * {@link FileSystemResourceLoader} the resources are relative to the base location; each is returned as a
+ * {@link SnapshotResource}, which is memory mapped when it is read.
+ */
+public class SnapshotResourceLoader extends FileSystemResourceLoader {
+
+    public SnapshotResourceLoader(String configurationResourceLocation) {
+        super(configurationResourceLocation);
+    }
+
+    @Override
+    public Resource getFile(String resource) {
+        if (resource == null || resource.trim().length() == 0) return null;
+        if (resource.startsWith("/")) resource = resource.substring(1);
+
+        return new SnapshotResource(new File(getBaseLocation(),resource));
+    }
+
+    @Override
+    protected Resource getFile(File file, BasicFileAttributes attributes) {
+        if (attributes == null || !attributes.isRegularFile()) return new FileSystemResource(file,attributes);
+        return new SnapshotResource(file);
+    }
+}
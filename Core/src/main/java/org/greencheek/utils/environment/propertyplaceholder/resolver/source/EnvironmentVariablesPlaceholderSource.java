@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.source;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.JavaPlatformOperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentProperties;
+
+/**
+ * Resolves placeholders from the environment variables of the java process, or of the given {@link OperatingEnvironmentProperties}.
+ */
+public class EnvironmentVariablesPlaceholderSource extends OperatingEnvironmentPlaceholderSource {
+
+    public EnvironmentVariablesPlaceholderSource() {
+        this(new JavaPlatformOperatingEnvironmentProperties());
+    }
+
+    public EnvironmentVariablesPlaceholderSource(OperatingEnvironmentProperties operatingEnvironmentProperties) {
+        super(operatingEnvironmentProperties);
+    }
+
+    @Override
+    public String getValue(String name) {
+        return getOperatingEnvironmentSnapshot().getEnvironmentVariable(name);
+    }
+}
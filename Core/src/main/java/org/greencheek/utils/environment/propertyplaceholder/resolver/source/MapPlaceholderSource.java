@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.source;
+
+import java.util.Map;
+
+/**
+ * Resolves placeholders from a map; i.e. secrets read from a file.  By default the source is
+ * {@link Capability#STATIC}, in which case the map must not be changed after the source is created.
+ */
+public class MapPlaceholderSource implements PlaceholderSource {
+
+    private final Map<String,String> values;
+    private final Capability capability;
+
+    public MapPlaceholderSource(Map<String,String> values) {
+        this(values,Capability.STATIC);
+    }
+
+    public MapPlaceholderSource(Map<String,String> values, Capability capability) {
+        this.values = values;
+        this.capability = capability;
+    }
+
+    @Override
+    public String getValue(String name) {
+        return values.get(name);
+    }
+
+    @Override
+    public Capability getCapability() {
+        return capability;
+    }
+
+    @Override
+    public long getGeneration() {
+        return 0;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.source;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.JavaPlatformOperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentSnapshot;
+
+/**
+ * Base class for the sources that read the {@link OperatingEnvironmentSnapshot}.  The java process's environment
+ * is read from the shared {@link OperatingEnvironmentSnapshot#current()}, and the source's generation is that of
+ * the current snapshot.  Any other {@link OperatingEnvironmentProperties} is captured on first use.
+ */
+abstract class OperatingEnvironmentPlaceholderSource implements PlaceholderSource {
+
+    private final OperatingEnvironmentProperties operatingEnvironmentProperties;
+    private final boolean usingProcessEnvironment;
+    private volatile OperatingEnvironmentSnapshot capturedOperatingEnvironment;
+
+    OperatingEnvironmentPlaceholderSource(OperatingEnvironmentProperties operatingEnvironmentProperties) {
+        this.operatingEnvironmentProperties = operatingEnvironmentProperties;
+        this.usingProcessEnvironment =
+                operatingEnvironmentProperties.getClass() == JavaPlatformOperatingEnvironmentProperties.class;
+    }
+
+    OperatingEnvironmentSnapshot getOperatingEnvironmentSnapshot() {
+        if(usingProcessEnvironment) {
+            return OperatingEnvironmentSnapshot.current();
+        }
+        OperatingEnvironmentSnapshot snapshot = capturedOperatingEnvironment;
+        if(snapshot == null) {
+            capturedOperatingEnvironment = snapshot = OperatingEnvironmentSnapshot.capture(operatingEnvironmentProperties);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Capability getCapability() {
+        return Capability.STATIC;
+    }
+
+    @Override
+    public long getGeneration() {
+        return usingProcessEnvironment ? OperatingEnvironmentSnapshot.current().getGeneration() : 0;
+    }
+}
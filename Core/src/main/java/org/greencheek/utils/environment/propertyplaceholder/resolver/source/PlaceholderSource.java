@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.source;
+
+/**
+ * <p>
+ * A source of values for placeholders that are not found in the properties being resolved; i.e. the system
+ * properties, or environment variables.  The resolver consults its sources in order, using the first value found.
+ * </p>
+ * <p>
+ * A {@link Capability#STATIC} source returns the same value for a name for as long as its generation does not change.
+ * The resolver caches both the values found in, and the names missing from, static sources; and only asks the
+ * source again when its generation changes.  A {@link Capability#DYNAMIC} source is asked on every lookup.
+ * </p>
+ */
+public interface PlaceholderSource {
+
+    public enum Capability {
+        STATIC,
+        DYNAMIC
+    }
+
+    /**
+     * @param name the name of the placeholder
+     * @return the value of the placeholder, or null if the source does not contain it.
+     */
+    public String getValue(String name);
+
+    public Capability getCapability();
+
+    /**
+     * @return the generation of the source's values.  When this changes the cached lookups of a static
+     *         source are discarded.  Dynamic sources, and sources whose values never change, return 0.
+     */
+    public long getGeneration();
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link ValueResolver} that can resolve the values of a map of properties via the graph of the placeholder
+ * references between its keys.  The graph is built once, and used to resolve each key in dependency order, and
+ * to find any circular references before the values are resolved.
+ * </p>
+ * <p>
+ * {@link org.greencheek.utils.environment.propertyplaceholder.resolver.EnvironmentSpecificPropertiesResolver} checks
+ * for circular references on construction, when given a resolver that implements this interface; other resolvers
+ * are asked to resolve each key on its own, as they always have been.
+ * </p>
+ */
+public interface DependencyGraphValueResolver extends ValueResolver {
+
+    /**
+     * Creates the graph of the references between the keys of the given map.  The graph can then be used to
+     * resolve the values of the map, via {@link #resolvedPropertyValues(PlaceholderDependencyGraph)} and
+     * {@link #resolvedPropertyValue(PlaceholderDependencyGraph, String)}
+     *
+     * @param properties the map of properties that reference each other
+     * @param trimValues if the keys of the placeholders, and the values, are trimmed
+     * @return the dependency graph for the given map
+     */
+    PlaceholderDependencyGraph buildDependencyGraph(Map<String,String> properties,boolean trimValues);
+
+    /**
+     * Replaces all placeholders in the values of the properties the graph was created for.
+     * @param graph the dependency graph of the properties
+     * @return a map of the keys to the resolved values
+     */
+    Map<String,String> resolvedPropertyValues(PlaceholderDependencyGraph graph);
+
+    /**
+     * Replaces all placeholders in the value of the given key, from the properties the graph was created for.
+     * When the graph has no circular references, the resolution does not need to track the placeholders being
+     * resolved.
+     * @param graph the dependency graph of the properties
+     * @param key the key to resolve
+     * @return the resolved value, or null if the key does not exist.
+     */
+    String resolvedPropertyValue(PlaceholderDependencyGraph graph, String key);
+}
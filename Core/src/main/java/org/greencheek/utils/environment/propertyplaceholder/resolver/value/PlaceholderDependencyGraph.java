@@ -0,0 +1,383 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * The graph of the placeholder references between the keys of a set of properties.  There is an edge from
+ * a key to each of the other keys, in the same set of properties, that the placeholders in its value
+ * resolve against; i.e. for <code>url=jdbc://${host}:${port}</code> there are edges from <code>url</code> to
+ * <code>host</code> and <code>port</code>.
+ * </p>
+ * <p>
+ * The keys are ordered topologically (Kahn's algorithm), so that a key is ordered after all of the keys it
+ * depends upon.  Resolving the keys in this order means each placeholder is resolved from an already
+ * resolved value, rather than the value being re-expanded for each reference to it.
+ * Keys that are on, or depend upon, a circular reference cannot be ordered; these are placed at the end
+ * of the resolution order.
+ * </p>
+ * <p>
+ * When not all keys can be ordered, the strongly connected components of the graph (Tarjan's algorithm) are
+ * found; and a circular path through each of the components is available from {@link #getCycles()}.
+ * </p>
+ * Only the references that can be determined from the values themselves are edges in the graph.
+ * References that are only known at resolution time (a placeholder key that contains a placeholder, or a
+ * value taken from the environment or system properties that contains placeholders) are not.
+ */
+public final class PlaceholderDependencyGraph {
+
+    private final Map<String,String> properties;
+    private final boolean trimmingValues;
+    private final String[] keys;
+    private final int[][] dependencies;
+    private final String[] resolutionOrder;
+    private final int[] order;
+    private final List<List<String>> cycles;
+    private volatile String[][] resolutionLevels;
+
+    /**
+     * @param properties the properties the graph is for
+     * @param trimmingValues if the placeholder keys were trimmed, when determining the references
+     * @param keys the keys in the graph
+     * @param dependencies for each key (by index in keys), the indexes of the distinct keys it references
+     */
+    PlaceholderDependencyGraph(Map<String,String> properties, boolean trimmingValues,
+                               String[] keys, int[][] dependencies) {
+        this.properties = properties;
+        this.trimmingValues = trimmingValues;
+        this.keys = keys;
+        this.dependencies = dependencies;
+
+        int[] order = orderTopologically(dependencies);
+        String[] orderedKeys = new String[order.length];
+        boolean acyclic = true;
+        for(int i=0;i<order.length;i++) {
+            if(order[i] == -1) {
+                acyclic = false;
+                break;
+            }
+            orderedKeys[i] = keys[order[i]];
+        }
+
+        if(acyclic) {
+            this.cycles = Collections.emptyList();
+        } else {
+            // order the keys that are on, or depend upon, a circular reference after all the others
+            boolean[] ordered = new boolean[keys.length];
+            int numberOrdered = 0;
+            while(numberOrdered<order.length && order[numberOrdered]!=-1) {
+                ordered[order[numberOrdered++]] = true;
+            }
+            for(int i=0;i<keys.length;i++) {
+                if(!ordered[i]) orderedKeys[numberOrdered++] = keys[i];
+            }
+            this.cycles = Collections.unmodifiableList(findCycles(keys,dependencies));
+        }
+        this.resolutionOrder = orderedKeys;
+        this.order = order;
+    }
+
+    /**
+     * Kahn's algorithm.  Returns the indexes of the keys, ordered after their dependencies; with -1 for each of the
+     * keys that cannot be ordered.
+     */
+    private static int[] orderTopologically(int[][] dependencies) {
+        int size = dependencies.length;
+        int[] remainingDependencies = new int[size];
+        int[] numberOfDependents = new int[size];
+        for(int i=0;i<size;i++) {
+            remainingDependencies[i] = dependencies[i].length;
+            for(int dependency : dependencies[i]) {
+                numberOfDependents[dependency]++;
+            }
+        }
+
+        int[][] dependents = new int[size][];
+        for(int i=0;i<size;i++) {
+            dependents[i] = new int[numberOfDependents[i]];
+            numberOfDependents[i] = 0;
+        }
+        for(int i=0;i<size;i++) {
+            for(int dependency : dependencies[i]) {
+                dependents[dependency][numberOfDependents[dependency]++] = i;
+            }
+        }
+
+        // the order doubles as the queue of keys whose dependencies have all been ordered.
+        int[] order = new int[size];
+        int head = 0, tail = 0;
+        for(int i=0;i<size;i++) {
+            if(remainingDependencies[i]==0) order[tail++] = i;
+        }
+        while(head<tail) {
+            int key = order[head++];
+            for(int dependent : dependents[key]) {
+                if(--remainingDependencies[dependent]==0) order[tail++] = dependent;
+            }
+        }
+
+        while(tail<size) {
+            order[tail++] = -1;
+        }
+        return order;
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, without recursion so that long chains of references
+     * do not exhaust the stack.  For each component that is a cycle (more than one key, or a key that
+     * references itself) the shortest circular path from the component's root is returned.
+     */
+    private static List<List<String>> findCycles(String[] keys, int[][] dependencies) {
+        int size = keys.length;
+        List<List<String>> cycles = new ArrayList<List<String>>();
+
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] component = new int[size];
+        for(int i=0;i<size;i++) {
+            index[i] = -1;
+            component[i] = -1;
+        }
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] callStack = new int[size];
+        int[] nextDependency = new int[size];
+        int callStackSize = 0;
+        int nextIndex = 0;
+        int numberOfComponents = 0;
+
+        for(int root=0;root<size;root++) {
+            if(index[root]!=-1) continue;
+
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callStack[callStackSize] = root;
+            nextDependency[callStackSize++] = 0;
+
+            while(callStackSize>0) {
+                int key = callStack[callStackSize-1];
+                int[] keyDependencies = dependencies[key];
+                if(nextDependency[callStackSize-1]<keyDependencies.length) {
+                    int dependency = keyDependencies[nextDependency[callStackSize-1]++];
+                    if(index[dependency]==-1) {
+                        index[dependency] = lowLink[dependency] = nextIndex++;
+                        stack[stackSize++] = dependency;
+                        onStack[dependency] = true;
+                        callStack[callStackSize] = dependency;
+                        nextDependency[callStackSize++] = 0;
+                    } else if(onStack[dependency]) {
+                        lowLink[key] = Math.min(lowLink[key],index[dependency]);
+                    }
+                    continue;
+                }
+
+                callStackSize--;
+                if(callStackSize>0) {
+                    int caller = callStack[callStackSize-1];
+                    lowLink[caller] = Math.min(lowLink[caller],lowLink[key]);
+                }
+
+                if(lowLink[key]==index[key]) {
+                    int componentSize = 0;
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = numberOfComponents;
+                        componentSize++;
+                    } while(member!=key);
+
+                    if(componentSize>1 || references(dependencies[key],key)) {
+                        cycles.add(findCyclePath(keys,dependencies,component,key));
+                    }
+                    numberOfComponents++;
+                }
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Breadth first search, within the component of the given key, for the shortest path back to the key.
+     */
+    private static List<String> findCyclePath(String[] keys, int[][] dependencies, int[] component, int start) {
+        Map<Integer,Integer> previous = new HashMap<Integer,Integer>();
+        int[] queue = new int[keys.length];
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        int last = -1;
+        while(head<tail && last==-1) {
+            int key = queue[head++];
+            for(int dependency : dependencies[key]) {
+                if(component[dependency]!=component[start]) continue;
+                if(dependency==start) {
+                    last = key;
+                    break;
+                }
+                if(!previous.containsKey(dependency)) {
+                    previous.put(dependency,key);
+                    queue[tail++] = dependency;
+                }
+            }
+        }
+
+        List<String> path = new ArrayList<String>();
+        path.add(keys[start]);
+        for(int key = last;key!=start;key = previous.get(key)) {
+            path.add(keys[key]);
+        }
+        path.add(keys[start]);
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static boolean references(int[] dependencies, int key) {
+        for(int dependency : dependencies) {
+            if(dependency==key) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the properties that the graph is for
+     */
+    public Map<String,String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return if the placeholder keys were trimmed, when determining the references between the properties
+     */
+    public boolean isTrimmingValues() {
+        return trimmingValues;
+    }
+
+    /**
+     * @return true if there are no circular references between the keys
+     */
+    public boolean isAcyclic() {
+        return cycles.isEmpty();
+    }
+
+    /**
+     * @return a circular path of keys for each set of keys that reference each other.  Each path starts and
+     *         ends with the same key, i.e. <code>[a, b, a]</code>
+     */
+    public List<List<String>> getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return the number of keys in the graph
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return the key at the given index in the graph
+     */
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @return the index of the keys that the key, at the given index, references.
+     */
+    public int[] getDependencies(int index) {
+        return dependencies[index].clone();
+    }
+
+    /**
+     * @return a map of each key, to the keys that it references
+     */
+    public Map<String,String[]> getDependenciesAsMap() {
+        Map<String,String[]> map = new HashMap<String,String[]>(keys.length);
+        for(int i=0;i<keys.length;i++) {
+            String[] references = new String[dependencies[i].length];
+            for(int j=0;j<references.length;j++) {
+                references[j] = keys[dependencies[i][j]];
+            }
+            map.put(keys[i],references);
+        }
+        return map;
+    }
+
+    /**
+     * @return the keys, ordered such that a key is after the keys that it references.
+     */
+    public String[] getResolutionOrder() {
+        return resolutionOrder.clone();
+    }
+
+    String[] resolutionOrder() {
+        return resolutionOrder;
+    }
+
+    /**
+     * Groups the keys of an acyclic graph into levels.  Level 0 contains the keys that reference no other keys,
+     * and each key in level n references at least one key in level n-1 (and none in level n or above).
+     * The keys within a level do not reference each other, so can be resolved concurrently once the previous
+     * levels have been resolved.
+     *
+     * @return the keys of the graph by level, or null if the graph is not acyclic
+     */
+    String[][] resolutionLevels() {
+        if(!isAcyclic()) return null;
+        String[][] levels = resolutionLevels;
+        if(levels == null) {
+            resolutionLevels = levels = groupByLevel();
+        }
+        return levels;
+    }
+
+    private String[][] groupByLevel() {
+        int size = keys.length;
+        int[] levelOf = new int[size];
+        int numberOfLevels = 0;
+        for(int key : order) {
+            int level = 0;
+            for(int dependency : dependencies[key]) {
+                level = Math.max(level,levelOf[dependency]+1);
+            }
+            levelOf[key] = level;
+            numberOfLevels = Math.max(numberOfLevels,level+1);
+        }
+
+        int[] levelSizes = new int[numberOfLevels];
+        for(int i=0;i<size;i++) {
+            levelSizes[levelOf[i]]++;
+        }
+        String[][] levels = new String[numberOfLevels][];
+        for(int i=0;i<numberOfLevels;i++) {
+            levels[i] = new String[levelSizes[i]];
+            levelSizes[i] = 0;
+        }
+        for(int key : order) {
+            int level = levelOf[key];
+            levels[level][levelSizes[level]++] = keys[key];
+        }
+        return levels;
+    }
+}
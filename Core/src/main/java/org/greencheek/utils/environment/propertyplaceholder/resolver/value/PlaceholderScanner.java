@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+/**
+ * <p>
+ * Finds the end of a placeholder, taking into account nested placeholders (i.e. <code>${a.${b}}</code>).
+ * </p>
+ * <p>
+ * Rather than testing for the suffix and the nested prefix at every character of the value, the scanner jumps
+ * between the next occurrences of the suffix and nested prefix using {@link String#indexOf}.  Single character
+ * suffixes and prefixes (such as <code>}</code> and <code>{</code>) are searched for as characters.  The result is
+ * the same as that of testing each character in turn: at any position the suffix is matched in preference to the
+ * nested prefix, and the search continues after the end of whichever matched.
+ * </p>
+ * Instances are immutable and are shared between threads.
+ */
+public final class PlaceholderScanner {
+
+    private final String placeholderPrefix;
+    private final String placeholderSuffix;
+    private final String simplePrefix;
+    private final int prefixLength;
+    private final int suffixLength;
+    private final int simplePrefixLength;
+    /**
+     * The suffix and simple prefix, when they are a single character; otherwise -1.
+     */
+    private final int suffixChar;
+    private final int simplePrefixChar;
+
+    /**
+     * @param placeholderPrefix the prefix that starts a placeholder, i.e. <code>${</code>
+     * @param placeholderSuffix the suffix that ends a placeholder, i.e. <code>}</code>
+     * @param simplePrefix the prefix of a placeholder nested within another, i.e. <code>{</code>
+     */
+    public PlaceholderScanner(String placeholderPrefix, String placeholderSuffix, String simplePrefix) {
+        this.placeholderPrefix = placeholderPrefix;
+        this.placeholderSuffix = placeholderSuffix;
+        this.simplePrefix = simplePrefix;
+        this.prefixLength = placeholderPrefix.length();
+        this.suffixLength = placeholderSuffix.length();
+        this.simplePrefixLength = simplePrefix.length();
+        this.suffixChar = suffixLength == 1 ? placeholderSuffix.charAt(0) : -1;
+        this.simplePrefixChar = simplePrefixLength == 1 ? simplePrefix.charAt(0) : -1;
+    }
+
+    /**
+     * @return the index of the next placeholder prefix at or after the given index, or -1
+     */
+    public int indexOfPlaceholderPrefix(String value, int fromIndex) {
+        return value.indexOf(placeholderPrefix, fromIndex);
+    }
+
+    /**
+     * @param value the value containing the placeholder
+     * @param startIndex the index of the placeholder's prefix
+     * @return the index of the suffix that ends the placeholder, or -1 if the placeholder is not ended.
+     */
+    public int findPlaceholderEndIndex(String value, int startIndex) {
+        int index = startIndex + prefixLength;
+        int withinNestedPlaceholder = 0;
+        int nextSuffix = -1;
+        int nextSimplePrefix = -1;
+        while (index < value.length()) {
+            if(nextSuffix < index) {
+                nextSuffix = indexOfSuffix(value, index);
+                if(nextSuffix == -1) return -1;
+            }
+            if(nextSimplePrefix != Integer.MAX_VALUE && nextSimplePrefix < index) {
+                nextSimplePrefix = indexOfSimplePrefix(value, index);
+                if(nextSimplePrefix == -1) nextSimplePrefix = Integer.MAX_VALUE;
+            }
+
+            if(nextSuffix <= nextSimplePrefix) {
+                if (withinNestedPlaceholder > 0) {
+                    withinNestedPlaceholder--;
+                    index = nextSuffix + suffixLength;
+                }
+                else {
+                    return nextSuffix;
+                }
+            }
+            else {
+                withinNestedPlaceholder++;
+                index = nextSimplePrefix + simplePrefixLength;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfSuffix(String value, int fromIndex) {
+        return suffixChar == -1 ? value.indexOf(placeholderSuffix, fromIndex) : value.indexOf(suffixChar, fromIndex);
+    }
+
+    private int indexOfSimplePrefix(String value, int fromIndex) {
+        return simplePrefixChar == -1 ? value.indexOf(simplePrefix, fromIndex) : value.indexOf(simplePrefixChar, fromIndex);
+    }
+}
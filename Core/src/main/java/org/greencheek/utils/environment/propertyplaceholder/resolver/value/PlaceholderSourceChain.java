@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * The ordered sources that a resolver looks up placeholders in, when they are not in the properties being resolved.
+ * </p>
+ * <p>
+ * Consecutive {@link PlaceholderSource.Capability#STATIC} sources are grouped, and the result of looking up a name in
+ * the group (the first value found, or that there is no value) is cached.  A repeated lookup of the same name is then
+ * a single map lookup, rather than a lookup in each of the sources.  The cache of a group is discarded when the
+ * generation of any of its sources changes.  Dynamic sources are asked on each lookup.  The generations of the
+ * sources are not read until the first lookup; so creating a chain does not create the snapshot of the environment
+ * that the environment backed sources read from.
+ * </p>
+ */
+final class PlaceholderSourceChain {
+
+    private static final int MAXIMUM_NUMBER_OF_CACHED_NAMES = 100000;
+
+    private final Link[] links;
+
+    PlaceholderSourceChain(List<PlaceholderSource> sources) {
+        List<Link> links = new ArrayList<Link>();
+        List<PlaceholderSource> staticSources = new ArrayList<PlaceholderSource>();
+        for(PlaceholderSource source : sources) {
+            if(source.getCapability() == PlaceholderSource.Capability.STATIC) {
+                staticSources.add(source);
+                continue;
+            }
+            if(!staticSources.isEmpty()) {
+                links.add(new CachedStaticSources(staticSources));
+                staticSources.clear();
+            }
+            links.add(new DynamicSource(source));
+        }
+        if(!staticSources.isEmpty()) {
+            links.add(new CachedStaticSources(staticSources));
+        }
+        this.links = links.toArray(new Link[links.size()]);
+    }
+
+    boolean isEmpty() {
+        return links.length == 0;
+    }
+
+    /**
+     * @return the value from the first source that contains the name, or null.
+     */
+    String getValue(String name) {
+        for(Link link : links) {
+            String value = link.getValue(name);
+            if(value != null) return value;
+        }
+        return null;
+    }
+
+    private interface Link {
+        String getValue(String name);
+    }
+
+    private static final class DynamicSource implements Link {
+        private final PlaceholderSource source;
+
+        DynamicSource(PlaceholderSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public String getValue(String name) {
+            return source.getValue(name);
+        }
+    }
+
+    private static final class CachedStaticSources implements Link {
+        /**
+         * Cached for names that are in none of the sources
+         */
+        private static final String MISSING = new String("");
+
+        private final PlaceholderSource[] sources;
+        /**
+         * Created on the first lookup
+         */
+        private volatile Cache cache;
+
+        CachedStaticSources(List<PlaceholderSource> sources) {
+            this.sources = sources.toArray(new PlaceholderSource[sources.size()]);
+        }
+
+        private long[] generations() {
+            long[] generations = new long[sources.length];
+            for(int i=0;i<sources.length;i++) {
+                generations[i] = sources[i].getGeneration();
+            }
+            return generations;
+        }
+
+        private boolean isCurrent(Cache cache) {
+            for(int i=0;i<sources.length;i++) {
+                if(sources[i].getGeneration() != cache.generations[i]) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String getValue(String name) {
+            Cache cache = this.cache;
+            if(cache == null || !isCurrent(cache)) {
+                this.cache = cache = new Cache(generations());
+            }
+
+            String value = cache.values.get(name);
+            if(value != null) {
+                return value == MISSING ? null : value;
+            }
+
+            for(PlaceholderSource source : sources) {
+                value = source.getValue(name);
+                if(value != null) break;
+            }
+            if(cache.values.size() < MAXIMUM_NUMBER_OF_CACHED_NAMES) {
+                cache.values.putIfAbsent(name, value == null ? MISSING : value);
+            }
+            return value;
+        }
+    }
+
+    private static final class Cache {
+        final long[] generations;
+        final ConcurrentMap<String,String> values = new ConcurrentHashMap<String,String>();
+
+        Cache(long[] generations) {
+            this.generations = generations;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+/**
+ * <p>
+ * The compiled form of a property value.  The value is split, once, into a sequence of segments that are
+ * either literal text or placeholders.  Resolving the value is then a walk over the segments, appending the
+ * literal text and the resolved placeholder values; rather than rescanning the value for placeholders.
+ * </p>
+ * <p>
+ * A placeholder segment holds the text between the prefix and suffix (the key), and when that key itself
+ * contains placeholders (i.e. <code>${a.${b}}</code>) the compiled template of the key.
+ * For keys without nested placeholders the key, and any default value, are precomputed.
+ * </p>
+ * Instances are immutable and are shared between threads.
+ */
+final class PlaceholderTemplate {
+
+    private final String value;
+    private final Segment[] segments;
+    private final int estimatedLength;
+
+    PlaceholderTemplate(String value, Segment[] segments, int estimatedLength) {
+        this.value = value;
+        this.segments = segments;
+        this.estimatedLength = estimatedLength;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the size to create the buffer with, when resolving the template
+     */
+    int getEstimatedLength() {
+        return estimatedLength;
+    }
+
+    static final class Segment {
+        /**
+         * The literal text, or for a placeholder the placeholder as it appears in the value (i.e. <code>${a}</code>).
+         * This is the text output for a placeholder that cannot be resolved.
+         */
+        final String text;
+        /**
+         * The text between the placeholder prefix and suffix.  null for literal segments
+         */
+        final String placeholder;
+        /**
+         * The compiled placeholder key, when the key contains nested placeholders.  Otherwise null
+         */
+        final PlaceholderTemplate nestedKey;
+
+        final String key;
+        final String trimmedKey;
+        final String defaultKey;
+        final String defaultValue;
+        final String trimmedDefaultKey;
+        final String trimmedDefaultValue;
+
+        private Segment(String text, String placeholder, PlaceholderTemplate nestedKey,
+                        String key, String trimmedKey,
+                        String defaultKey, String defaultValue,
+                        String trimmedDefaultKey, String trimmedDefaultValue) {
+            this.text = text;
+            this.placeholder = placeholder;
+            this.nestedKey = nestedKey;
+            this.key = key;
+            this.trimmedKey = trimmedKey;
+            this.defaultKey = defaultKey;
+            this.defaultValue = defaultValue;
+            this.trimmedDefaultKey = trimmedDefaultKey;
+            this.trimmedDefaultValue = trimmedDefaultValue;
+        }
+
+        boolean isLiteral() {
+            return placeholder == null;
+        }
+
+        static Segment literal(String text) {
+            return new Segment(text, null, null, null, null, null, null, null, null);
+        }
+
+        static Segment nestedPlaceholder(String text, String placeholder, PlaceholderTemplate nestedKey) {
+            return new Segment(text, placeholder, nestedKey, null, null, null, null, null, null);
+        }
+
+        static Segment placeholder(String text, String placeholder, String valueSeparator) {
+            String trimmed = placeholder.trim();
+            String defaultKey = null, defaultValue = null, trimmedDefaultKey = null, trimmedDefaultValue = null;
+            if(valueSeparator != null) {
+                int separatorIndex = placeholder.indexOf(valueSeparator);
+                if (separatorIndex != -1) {
+                    defaultKey = placeholder.substring(0, separatorIndex);
+                    defaultValue = placeholder.substring(separatorIndex + valueSeparator.length());
+                }
+                separatorIndex = trimmed.indexOf(valueSeparator);
+                if (separatorIndex != -1) {
+                    trimmedDefaultKey = trimmed.substring(0, separatorIndex);
+                    trimmedDefaultValue = trimmed.substring(separatorIndex + valueSeparator.length());
+                }
+            }
+            return new Segment(text, placeholder, null, placeholder, trimmed,
+                               defaultKey, defaultValue, trimmedDefaultKey, trimmedDefaultValue);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link ValueResolver} that can write resolved values directly to an {@link Appendable} (i.e. a
+ * {@link java.io.Writer} or {@link StringBuilder}), rather than returning them as a String.  The values of
+ * placeholders are written as they are resolved; no intermediate String is created for each level of nested
+ * placeholders, or for the whole of the resolved value.  This is suited to rendering large templates,
+ * such as configuration files, from the properties.
+ * </p>
+ * <p>
+ * If a placeholder cannot be resolved, and unresolvable placeholders are not being ignored, an
+ * IllegalArgumentException is thrown; by which time the part of the value before the placeholder has been written.
+ * </p>
+ */
+public interface StreamingValueResolver extends ValueResolver {
+
+    /**
+     * Writes the value of the given key, with all placeholders replaced, to the given Appendable.
+     *
+     * @param map the <code>Map</code> containing the key, and that is the source of the placeholders replacements
+     * @param key the key of the value to write
+     * @param trimValues if the values are to be trimmed of whitespace
+     * @param out where the resolved value is written
+     * @return false if the key does not exist, in which case nothing is written
+     * @throws IOException if the Appendable throws an IOException
+     */
+    boolean resolvePropertyValue(Map<String,String> map, String key, boolean trimValues, Appendable out) throws IOException;
+    boolean resolvePropertyValue(Map<String,String> map, String key, Appendable out) throws IOException;
+
+    /**
+     * Writes the given template, with all placeholders replaced from the given map, to the given Appendable.
+     * Unlike property values, the template is not cached by the resolver.
+     *
+     * @param map the <code>Map</code> to use as the source of the placeholders replacements
+     * @param template the text containing placeholders
+     * @param trimValues if the template, and the values of placeholders, are to be trimmed of whitespace
+     * @param out where the resolved template is written
+     * @throws IOException if the Appendable throws an IOException
+     */
+    void resolveTemplate(Map<String,String> map, String template, boolean trimValues, Appendable out) throws IOException;
+    void resolveTemplate(Map<String,String> map, String template, Appendable out) throws IOException;
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import java.io.IOException;
+
+/**
+ * Writes to the given Appendable with the whitespace (as defined by {@link String#trim()}) removed from the start
+ * and end of what is written.  Whitespace at the start is dropped.  Other whitespace is held back until a non
+ * whitespace character is written after it; so any whitespace held back when writing finishes, was trailing.
+ */
+final class TrimmingAppendable implements Appendable {
+
+    private final Appendable out;
+    private boolean started;
+    private StringBuilder pendingWhitespace;
+
+    TrimmingAppendable(Appendable out) {
+        this.out = out;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c <= ' ';
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        if(csq == null) csq = "null";
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        if(csq == null) csq = "null";
+        int first = start;
+        if(!started) {
+            while(first < end && isWhitespace(csq.charAt(first))) first++;
+            if(first == end) return this;
+            started = true;
+        }
+
+        int last = end;
+        while(last > first && isWhitespace(csq.charAt(last-1))) last--;
+
+        if(last > first) {
+            writePendingWhitespace();
+            out.append(csq, first, last);
+        }
+        if(last < end) {
+            if(pendingWhitespace == null) pendingWhitespace = new StringBuilder();
+            pendingWhitespace.append(csq, last, end);
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        if(isWhitespace(c)) {
+            if(started) {
+                if(pendingWhitespace == null) pendingWhitespace = new StringBuilder();
+                pendingWhitespace.append(c);
+            }
+        } else {
+            started = true;
+            writePendingWhitespace();
+            out.append(c);
+        }
+        return this;
+    }
+
+    private void writePendingWhitespace() throws IOException {
+        if(pendingWhitespace != null && pendingWhitespace.length() > 0) {
+            out.append(pendingWhitespace);
+            pendingWhitespace.setLength(0);
+        }
+    }
+}
@@ -17,6 +17,10 @@ package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
 
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.JavaPlatformOperatingEnvironmentProperties;
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * User: dominictootell
@@ -32,6 +36,9 @@ public interface ValueResolverConfig {
     final static String DEFAULT_PLACEHOLDER_SUFFIX = "}";
     final static String DEFAULT_PLACEHOLDER_DEFAULT_VALUE_SEPARATOR = ":";
     final static boolean DEFAULT_TRIMMING_PROPERTY_VALUES = true;
+    final static int DEFAULT_MAXIMUM_NUMBER_OF_CACHED_TEMPLATES = 100000;
+    final static boolean DEFAULT_PARALLEL_RESOLUTION_ENABLED = false;
+    final static int DEFAULT_PARALLEL_RESOLUTION_THRESHOLD = 10000;
 
     boolean isSystemPropertiesResolutionEnabled();
 
@@ -64,4 +71,61 @@ public interface ValueResolverConfig {
     boolean isTrimmingPropertyValues();
 
     ValueResolverConfig setTrimmingPropertyValues(boolean trimValues);
+
+    int getMaximumNumberOfCachedTemplates();
+
+    /**
+     * The resolver compiles each property value that contains a placeholder into a template, that is cached
+     * for reuse.  This sets the upper limit on the number of templates that are cached by a resolver.
+     *
+     * @param maximumNumberOfCachedTemplates the number of templates to cache, 0 disables caching
+     * @return the config object
+     */
+    ValueResolverConfig setMaximumNumberOfCachedTemplates(int maximumNumberOfCachedTemplates);
+
+    boolean isParallelResolutionEnabled();
+
+    /**
+     * When enabled, resolving all the properties of a map is split across the threads of a {@link ForkJoinPool}.
+     * The keys are resolved a dependency level at a time; with the keys in each level being resolved concurrently.
+     * The resolved values are the same as when resolved on a single thread.
+     *
+     * @param parallelResolutionEnabled true to resolve large maps in parallel.
+     * @return the config object
+     */
+    ValueResolverConfig setParallelResolutionEnabled(boolean parallelResolutionEnabled);
+
+    int getParallelResolutionThreshold();
+
+    /**
+     * @param parallelResolutionThreshold the minimum number of properties for which parallel resolution is used.
+     *                                    Smaller maps are resolved on the calling thread.
+     * @return the config object
+     */
+    ValueResolverConfig setParallelResolutionThreshold(int parallelResolutionThreshold);
+
+    ForkJoinPool getParallelResolutionPool();
+
+    /**
+     * @param pool the pool used for parallel resolution.  When null (the default)
+     *             the {@link ForkJoinPool#commonPool()} is used.
+     * @return the config object
+     */
+    ValueResolverConfig setParallelResolutionPool(ForkJoinPool pool);
+
+    List<PlaceholderSource> getPlaceholderSources();
+
+    /**
+     * Sets the ordered sources in which placeholders, that are not in the properties being resolved, are looked up.
+     * The value from the first source that has the placeholder is used.  When set, the sources replace the
+     * lookup of system properties and environment variables (the system properties and environment properties
+     * resolution settings are not used); include a
+     * {@link org.greencheek.utils.environment.propertyplaceholder.resolver.source.SystemPropertiesPlaceholderSource}
+     * or {@link org.greencheek.utils.environment.propertyplaceholder.resolver.source.EnvironmentVariablesPlaceholderSource}
+     * in the sources to keep them.
+     *
+     * @param sources the sources, or null (the default) for system properties followed by environment variables.
+     * @return the config object
+     */
+    ValueResolverConfig setPlaceholderSources(List<PlaceholderSource> sources);
 }
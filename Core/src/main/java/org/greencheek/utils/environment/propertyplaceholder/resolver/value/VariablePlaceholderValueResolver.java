@@ -16,10 +16,18 @@
 package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
 
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.EnvironmentVariablesPlaceholderSource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.SystemPropertiesPlaceholderSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>
@@ -35,12 +43,23 @@ import java.util.*;
  * <p> The values used for substitution can be supplied using a {@link java.util.Properties} instance or
  * a Map<String,String> instance.
  * </p>
+ * <p> Each value containing a placeholder is compiled once into a {@link PlaceholderTemplate}, which is cached
+ * by the resolver; so that subsequent resolutions of the same value do not rescan the value for placeholders.
+ * </p>
+ * <p> When resolving all the entries of a Map, the keys are resolved in the order of their
+ * {@link PlaceholderDependencyGraph}; so that each key is resolved only once, no matter how many other
+ * keys reference it.
+ * </p>
+ * <p> Placeholders that are not in the properties being resolved are looked up in the ordered
+ * {@link org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource}s of the
+ * {@link ValueResolverConfig}; by default the system properties, followed by the environment variables.
+ * </p>
  *
  * User: dominictootell
  * Date: 03/06/2012
  * Time: 17:46
  */
-public class VariablePlaceholderValueResolver implements ValueResolver {
+public class VariablePlaceholderValueResolver implements StreamingValueResolver, DependencyGraphValueResolver {
 
     private static final Logger logger = LoggerFactory.getLogger(VariablePlaceholderValueResolver.class);
 
@@ -59,6 +78,8 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
 
     private final String simplePrefix;
 
+    private final PlaceholderScanner scanner;
+
     private final String valueSeparator;
 
     private final boolean ignoreUnresolvablePlaceholders;
@@ -66,10 +87,22 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
     private final boolean resolvingSystemProperties;
     private final boolean resolvingEnvironmentVariables;
     private final OperatingEnvironmentProperties operatingEnvironmentProperties;
-    private final Properties systemProperties;
-    private final Properties environmentProperties;
+    private final PlaceholderSourceChain placeholderSources;
     private final boolean trimmingPropertyValues;
 
+    private static final int ESTIMATED_PLACEHOLDER_VALUE_LENGTH = 16;
+    private static final int[] NO_DEPENDENCIES = new int[0];
+    private static final int MAXIMUM_UNTRACKED_DEPTH = 256;
+    private static final MaximumUntrackedDepthExceededException MAXIMUM_UNTRACKED_DEPTH_EXCEEDED =
+            new MaximumUntrackedDepthExceededException();
+    private final int maximumNumberOfCachedTemplates;
+    private final ConcurrentMap<String,PlaceholderTemplate> templates = new ConcurrentHashMap<String,PlaceholderTemplate>();
+
+    private static final int PARALLEL_RESOLUTION_BATCH_SIZE = 512;
+    private final boolean parallelResolutionEnabled;
+    private final int parallelResolutionThreshold;
+    private final ForkJoinPool parallelResolutionPool;
+
 
     public VariablePlaceholderValueResolver(boolean resolvingEnvironmentVariables,boolean resolvingSystemProperties) {
         this(new VariablePlaceholderValueResolverConfig()
@@ -93,8 +126,18 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
         this.resolvingEnvironmentVariables = config.isEnvironmentPropertiesResolutionEnabled();
         this.operatingEnvironmentProperties = config.getOperatingEnvironmentProperties();
 
-        environmentProperties = resolvingEnvironmentVariables ? operatingEnvironmentProperties.getEnvironmentProperties() : new Properties();
-        systemProperties = resolvingSystemProperties ? operatingEnvironmentProperties.getSystemProperties() : new Properties();
+        List<PlaceholderSource> sources = config.getPlaceholderSources();
+        if(sources == null) {
+            // system properties take precedence over environment variables
+            sources = new ArrayList<PlaceholderSource>(2);
+            if(resolvingSystemProperties) {
+                sources.add(new SystemPropertiesPlaceholderSource(operatingEnvironmentProperties));
+            }
+            if(resolvingEnvironmentVariables) {
+                sources.add(new EnvironmentVariablesPlaceholderSource(operatingEnvironmentProperties));
+            }
+        }
+        this.placeholderSources = new PlaceholderSourceChain(sources);
 
 
         this.placeholderPrefix = placeholderPrefix;
@@ -106,10 +149,15 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
         else {
             this.simplePrefix = this.placeholderPrefix;
         }
+        this.scanner = new PlaceholderScanner(this.placeholderPrefix,this.placeholderSuffix,this.simplePrefix);
         this.valueSeparator = config.getPlaceholderDefaultValueSeparator();
         this.ignoreUnresolvablePlaceholders = config.isIgnoreUnresolvablePlaceholders();
 
         this.trimmingPropertyValues = config.isTrimmingPropertyValues();
+        this.maximumNumberOfCachedTemplates = config.getMaximumNumberOfCachedTemplates();
+        this.parallelResolutionEnabled = config.isParallelResolutionEnabled();
+        this.parallelResolutionThreshold = config.getParallelResolutionThreshold();
+        this.parallelResolutionPool = config.getParallelResolutionPool();
     }
 
 
@@ -157,12 +205,197 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
 
     public Map<String, String> resolvedPropertyValues(Map<String, String> properties, boolean trimValues)
     {
-        Map<String,String> map = new HashMap<String,String>(properties.size());
-        for(Map.Entry<String,String> entry : properties.entrySet())  {
-            map.put(entry.getKey(),parseStringValue(entry.getValue(),properties,
-                                                    new HashSet<String>(),trimValues));
+        return resolvedPropertyValues(buildDependencyGraph(properties,trimValues));
+    }
+
+    /**
+     * Resolves each key in the graph's properties once, in the order given by the dependency graph.  A key is
+     * therefore resolved after the keys that it references, and placeholders are replaced with the already
+     * resolved value.  Placeholders that are not in the graph (i.e. nested placeholder keys) are resolved on
+     * demand, and remembered; so that they too are only resolved once.
+     */
+    @Override
+    public Map<String, String> resolvedPropertyValues(PlaceholderDependencyGraph graph) {
+        if(graph.isAcyclic()) {
+            try {
+                if(this.parallelResolutionEnabled && graph.size() >= this.parallelResolutionThreshold) {
+                    try {
+                        return resolvedPropertyValuesInParallel(graph);
+                    } catch (UnresolvablePlaceholderException e) {
+                        // the batches fail in any order; resolve again on this thread, so that the placeholder
+                        // reported is the same as that of serial resolution
+                    }
+                }
+                return resolvedPropertyValues(graph,false);
+            } catch (MaximumUntrackedDepthExceededException e) {
+                // resolve again, tracking the placeholders to detect any circular reference
+            }
+        }
+        return resolvedPropertyValues(graph,true);
+    }
+
+    private Map<String, String> resolvedPropertyValues(PlaceholderDependencyGraph graph, boolean tracking) {
+        Map<String,String> properties = graph.getProperties();
+        Resolution resolution = new Resolution(properties,graph.isTrimmingValues(),tracking,
+                                               new HashMap<String,String>(properties.size()));
+        Map<String,String> resolvedValues = resolution.resolvedValues;
+        for(String key : graph.resolutionOrder())  {
+            if(!resolvedValues.containsKey(key)) {
+                resolvedValues.put(key,parseStringValue(properties.get(key),resolution));
+            }
+        }
+        return resolvedValues;
+    }
+
+    /**
+     * Resolves the keys of an acyclic graph a dependency level at a time.  All the keys in a level only reference
+     * keys in the previous levels; so the keys of a level are split into batches that are resolved concurrently,
+     * from the values resolved for the previous levels.
+     */
+    private Map<String, String> resolvedPropertyValuesInParallel(PlaceholderDependencyGraph graph) {
+        Map<String,String> properties = graph.getProperties();
+        Map<String,String> resolvedValues = new ConcurrentHashMap<String,String>(properties.size());
+        ForkJoinPool pool = this.parallelResolutionPool == null ? ForkJoinPool.commonPool() : this.parallelResolutionPool;
+
+        for(String[] level : graph.resolutionLevels()) {
+            LevelResolutionTask task = new LevelResolutionTask(properties,graph.isTrimmingValues(),resolvedValues,
+                                                               level,0,level.length);
+            if(level.length <= PARALLEL_RESOLUTION_BATCH_SIZE) {
+                task.compute();
+            } else {
+                pool.invoke(task);
+            }
+        }
+        return resolvedValues;
+    }
+
+    private final class LevelResolutionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String,String> properties;
+        private final boolean trimValues;
+        private final Map<String,String> resolvedValues;
+        private final String[] keys;
+        private final int from;
+        private final int to;
+
+        LevelResolutionTask(Map<String,String> properties, boolean trimValues, Map<String,String> resolvedValues,
+                            String[] keys, int from, int to) {
+            this.properties = properties;
+            this.trimValues = trimValues;
+            this.resolvedValues = resolvedValues;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > PARALLEL_RESOLUTION_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LevelResolutionTask(properties,trimValues,resolvedValues,keys,from,middle),
+                          new LevelResolutionTask(properties,trimValues,resolvedValues,keys,middle,to));
+                return;
+            }
+
+            Resolution resolution = new Resolution(properties,trimValues,false,resolvedValues);
+            for(int i=from;i<to;i++) {
+                String key = keys[i];
+                if(!resolvedValues.containsKey(key)) {
+                    resolvedValues.put(key,parseStringValue(properties.get(key),resolution));
+                }
+            }
+        }
+    }
+
+    @Override
+    public String resolvedPropertyValue(PlaceholderDependencyGraph graph, String key) {
+        Map<String,String> properties = graph.getProperties();
+        String value = properties.get(key);
+        if(value==null) return null;
+
+        if(graph.isAcyclic()) {
+            try {
+                return parseStringValue(value,new Resolution(properties,graph.isTrimmingValues(),false,null));
+            } catch (MaximumUntrackedDepthExceededException e) {
+                // resolve again, tracking the placeholders to detect any circular reference
+            }
+        }
+        return parseStringValue(value,new Resolution(properties,graph.isTrimmingValues(),true,null));
+    }
+
+    /**
+     * Creates the graph of the references between the keys in the given map, that is used to determine the
+     * order in which the keys are resolved.
+     *
+     * @param properties the map of properties that reference each other
+     * @param trimValues if the keys of the placeholders are trimmed on resolution
+     * @return the dependency graph for the given map
+     */
+    @Override
+    public PlaceholderDependencyGraph buildDependencyGraph(Map<String, String> properties, boolean trimValues) {
+        String[] keys = properties.keySet().toArray(new String[properties.size()]);
+        Map<String,Integer> indexes = new HashMap<String,Integer>(keys.length);
+        for(int i=0;i<keys.length;i++) {
+            indexes.put(keys[i],i);
+        }
+
+        int[][] dependencies = new int[keys.length][];
+        Set<String> references = new LinkedHashSet<String>();
+        for(int i=0;i<keys.length;i++) {
+            String value = properties.get(keys[i]);
+            if(value == null || value.indexOf(this.placeholderPrefix) == -1) {
+                dependencies[i] = NO_DEPENDENCIES;
+                continue;
+            }
+
+            references.clear();
+            collectReferences(getTemplate(value),properties,trimValues,references);
+            int[] keyDependencies = new int[references.size()];
+            int j = 0;
+            for(String reference : references) {
+                keyDependencies[j++] = indexes.get(reference);
+            }
+            dependencies[i] = keyDependencies;
+        }
+        return new PlaceholderDependencyGraph(properties,trimValues,keys,dependencies);
+    }
+
+    /**
+     * Adds to the given set the keys, from the given map, that the placeholders in the template will be
+     * resolved against.  This follows the same lookup order as {@link #parseTemplate}.
+     */
+    private void collectReferences(PlaceholderTemplate template, Map<String,String> properties,
+                                   boolean trimValues, Set<String> references) {
+        for(PlaceholderTemplate.Segment segment : template.getSegments()) {
+            if(segment.isLiteral()) continue;
+
+            if(segment.nestedKey != null) {
+                // The key is only known at resolution time, but the placeholders within the key are always resolved
+                collectReferences(segment.nestedKey,properties,trimValues,references);
+                continue;
+            }
+
+            String key = trimValues ? segment.trimmedKey : segment.key;
+            if(properties.get(key) != null) {
+                references.add(key);
+                continue;
+            }
+
+            if(getPlaceholderSourceValue(key) != null) continue;
+
+            String defaultKey = trimValues ? segment.trimmedDefaultKey : segment.defaultKey;
+            if(defaultKey == null) continue;
+
+            if(properties.get(defaultKey) != null) {
+                references.add(defaultKey);
+            } else {
+                String defaultValue = trimValues ? segment.trimmedDefaultValue : segment.defaultValue;
+                if(defaultValue.indexOf(this.placeholderPrefix) != -1) {
+                    collectReferences(getTemplate(defaultValue),properties,trimValues,references);
+                }
+            }
         }
-        return map;
     }
 
     /**
@@ -180,8 +413,7 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
     public String resolvedPropertyValue(Properties properties, String key, boolean trimValues) {
         if(properties.get(key)==null) return null;
         return parseStringValue(properties.getProperty(key),
-                                new HashMap(properties),
-                                new HashSet<String>(),trimValues);
+                                new Resolution(new HashMap(properties),trimValues,true,null));
     }
 
     /**
@@ -200,106 +432,311 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
 
     public String resolvedPropertyValue(Map<String, String> map, String key,boolean trimValues){
         if(map.get(key)==null) return null;
-        return parseStringValue(map.get(key),map,new HashSet<String>(),trimValues);
+        return parseStringValue(map.get(key),new Resolution(map,trimValues,true,null));
     }
 
-    private String parseStringValue(
-            String strVal, Map<String,String> placeholderResolver, Set<String> visitedPlaceholders,
-            boolean trimValues) {
+    @Override
+    public boolean resolvePropertyValue(Map<String, String> map, String key, Appendable out) throws IOException {
+        return resolvePropertyValue(map,key,this.trimmingPropertyValues,out);
+    }
 
-        StringBuilder buf = new StringBuilder(strVal);
+    @Override
+    public boolean resolvePropertyValue(Map<String, String> map, String key, boolean trimValues,
+                                        Appendable out) throws IOException {
+        String value = map.get(key);
+        if(value==null) return false;
+        appendStringValue(value,new Resolution(map,trimValues,true,null),out);
+        return true;
+    }
 
-        int startIndex = strVal.indexOf(this.placeholderPrefix);
-        while (startIndex != -1) {
-            int endIndex = findPlaceholderEndIndex(buf, startIndex);
-            if (endIndex != -1) {
-                String placeholder = buf.substring(startIndex + this.placeholderPrefix.length(), endIndex);
-                if (!visitedPlaceholders.add(placeholder)) {
-                    throw new IllegalArgumentException(
-                            "Circular placeholder reference '" + placeholder + "' in property definitions");
-                }
-                // Recursive invocation, parsing placeholders contained in the placeholder key.
-                placeholder = parseStringValue(placeholder, placeholderResolver, visitedPlaceholders,trimValues);
-
-                // Now obtain the value for the fully resolved key...
-                String propVal = placeholderResolver.get(placeholder);
-                if(propVal == null && (this.resolvingEnvironmentVariables || this.resolvingSystemProperties)) {
-                    if(this.resolvingEnvironmentVariables) {
-                        propVal = environmentProperties==null ? null : environmentProperties.getProperty(placeholder);
-                    }
-                    if(this.resolvingSystemProperties) {
-                        String temp =  systemProperties==null ? null : systemProperties.getProperty(placeholder);
-                        if(temp!=null) {
-                            propVal = temp;
-                        }
-                    }
-                }
+    @Override
+    public void resolveTemplate(Map<String, String> map, String template, Appendable out) throws IOException {
+        resolveTemplate(map,template,this.trimmingPropertyValues,out);
+    }
 
-                if (propVal == null && this.valueSeparator != null) {
-                    int separatorIndex = placeholder.indexOf(this.valueSeparator);
-                    if (separatorIndex != -1) {
-                        String actualPlaceholder = placeholder.substring(0, separatorIndex);
-                        String defaultValue = placeholder.substring(separatorIndex + this.valueSeparator.length());
-                        propVal = placeholderResolver.get(actualPlaceholder);
-                        if (propVal == null) {
-                            propVal = defaultValue;
-                        }
-                    }
-                }
-                if (propVal != null) {
-                    // Recursive invocation, parsing placeholders contained in the
-                    // previously resolved placeholder value.
-                    propVal = parseStringValue(propVal, placeholderResolver, visitedPlaceholders,trimValues);
-                    buf.replace(startIndex, endIndex + this.placeholderSuffix.length(), propVal);
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Resolved placeholder '" + placeholder + "'");
-                    }
-                    startIndex = buf.indexOf(this.placeholderPrefix, startIndex + propVal.length());
-                }
-                else if (this.ignoreUnresolvablePlaceholders) {
-                    // Proceed with unprocessed value.
-                    startIndex = buf.indexOf(this.placeholderPrefix, endIndex + this.placeholderSuffix.length());
-                }
-                else {
-                    throw new IllegalArgumentException("Could not resolve placeholder '" + placeholder + "'");
-                }
+    @Override
+    public void resolveTemplate(Map<String, String> map, String template, boolean trimValues,
+                                Appendable out) throws IOException {
+        Resolution resolution = new Resolution(map,trimValues,true,null);
+        Appendable target = trimValues ? new TrimmingAppendable(out) : out;
+        if(template.indexOf(this.placeholderPrefix) == -1) {
+            target.append(template);
+        } else {
+            // templates are compiled on each use, rather than filling the cache of property value templates
+            appendTemplate(compileTemplate(template),resolution,target);
+        }
+    }
+
+    private String parseStringValue(String strVal, Resolution resolution) {
+
+        if(strVal.indexOf(this.placeholderPrefix) == -1) {
+            return resolution.trimValues ? strVal.trim() : strVal;
+        }
+
+        return parseTemplate(getTemplate(strVal),resolution);
+    }
+
+    private String parseTemplate(PlaceholderTemplate template, Resolution resolution) {
+        StringBuilder buf = new StringBuilder(template.getEstimatedLength());
+
+        for(PlaceholderTemplate.Segment segment : template.getSegments()) {
+            if(segment.isLiteral()) {
+                buf.append(segment.text);
+                continue;
+            }
 
-                visitedPlaceholders.remove(placeholder);
+            enterPlaceholder(segment, resolution);
+            String propVal = lookupPlaceholderValue(segment, resolution);
+            String placeholder = resolution.placeholderKey;
+            if (propVal != null) {
+                // Recursive invocation, parsing placeholders contained in the
+                // previously resolved placeholder value.
+                buf.append(resolveLookedUpValue(propVal, resolution.propertyKey, resolution));
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Resolved placeholder '" + placeholder + "'");
+                }
+            }
+            else if (this.ignoreUnresolvablePlaceholders) {
+                // Proceed with unprocessed value.
+                buf.append(segment.text);
             }
             else {
-                startIndex = -1;
+                throw new UnresolvablePlaceholderException(placeholder);
             }
+            exitPlaceholder(segment, resolution);
         }
 
-        if(trimValues) {
+        if(resolution.trimValues) {
             return buf.toString().trim();
         } else {
             return buf.toString();
         }
     }
 
-    private int findPlaceholderEndIndex(CharSequence buf, int startIndex) {
-        int index = startIndex + this.placeholderPrefix.length();
-        int withinNestedPlaceholder = 0;
-        while (index < buf.length()) {
-            if (substringMatch(buf, index, this.placeholderSuffix)) {
-                if (withinNestedPlaceholder > 0) {
-                    withinNestedPlaceholder--;
-                    index = index + this.placeholderSuffix.length();
-                }
-                else {
-                    return index;
+    /**
+     * Streaming equivalent of {@link #parseStringValue(String, Resolution)}.  When trimming, the value is written via a
+     * {@link TrimmingAppendable}; which drops the leading whitespace, and holds back whitespace until it is known not
+     * to be trailing.
+     */
+    private void appendStringValue(String strVal, Resolution resolution, Appendable out) throws IOException {
+        Appendable target = resolution.trimValues ? new TrimmingAppendable(out) : out;
+        if(strVal.indexOf(this.placeholderPrefix) == -1) {
+            target.append(strVal);
+        } else {
+            appendTemplate(getTemplate(strVal), resolution, target);
+        }
+    }
+
+    /**
+     * Streaming equivalent of {@link #parseTemplate(PlaceholderTemplate, Resolution)}.  Placeholder values are written
+     * as they are resolved, rather than being built into a String at each level of nesting.  The trimming, if any,
+     * is performed by the given Appendable.
+     */
+    private void appendTemplate(PlaceholderTemplate template, Resolution resolution, Appendable out) throws IOException {
+        for(PlaceholderTemplate.Segment segment : template.getSegments()) {
+            if(segment.isLiteral()) {
+                out.append(segment.text);
+                continue;
+            }
+
+            enterPlaceholder(segment, resolution);
+            String propVal = lookupPlaceholderValue(segment, resolution);
+            String propKey = resolution.propertyKey;
+            if (propVal != null) {
+                if(propKey != null && resolution.resolvedValues != null) {
+                    out.append(resolveLookedUpValue(propVal, propKey, resolution));
+                } else {
+                    appendStringValue(propVal, resolution, out);
                 }
             }
-            else if (substringMatch(buf, index, this.simplePrefix)) {
-                withinNestedPlaceholder++;
-                index = index + this.simplePrefix.length();
+            else if (this.ignoreUnresolvablePlaceholders) {
+                out.append(segment.text);
             }
             else {
-                index++;
+                throw new UnresolvablePlaceholderException(resolution.placeholderKey);
+            }
+            exitPlaceholder(segment, resolution);
+        }
+    }
+
+    /**
+     * Records that the placeholder is being resolved, throwing an exception on a circular reference.  When the
+     * placeholders are not tracked, only the depth is counted.
+     */
+    private void enterPlaceholder(PlaceholderTemplate.Segment segment, Resolution resolution) {
+        Set<String> visitedPlaceholders = resolution.visitedPlaceholders;
+        if(visitedPlaceholders == null) {
+            if(++resolution.depth > MAXIMUM_UNTRACKED_DEPTH) {
+                throw MAXIMUM_UNTRACKED_DEPTH_EXCEEDED;
+            }
+        }
+        else if (!visitedPlaceholders.add(segment.placeholder)) {
+            throw new IllegalArgumentException(
+                    "Circular placeholder reference '" + segment.placeholder + "' in property definitions");
+        }
+    }
+
+    private void exitPlaceholder(PlaceholderTemplate.Segment segment, Resolution resolution) {
+        if(resolution.visitedPlaceholders == null) {
+            resolution.depth--;
+        } else {
+            resolution.visitedPlaceholders.remove(segment.placeholder);
+        }
+    }
+
+    /**
+     * Obtains the unresolved value of the placeholder: from the properties, the placeholder sources, the
+     * default key, or the default value; in that order.  The fully resolved key of the placeholder is recorded in
+     * {@link Resolution#placeholderKey}, and the key of the properties that the value was obtained from
+     * (if any) in {@link Resolution#propertyKey}.
+     *
+     * @return the value, or null if the placeholder has no value
+     */
+    private String lookupPlaceholderValue(PlaceholderTemplate.Segment segment, Resolution resolution) {
+        Map<String,String> placeholderResolver = resolution.properties;
+        boolean trimValues = resolution.trimValues;
+
+        String placeholder;
+        String defaultKey = null;
+        String defaultValue = null;
+        if(segment.nestedKey == null) {
+            placeholder = trimValues ? segment.trimmedKey : segment.key;
+            defaultKey = trimValues ? segment.trimmedDefaultKey : segment.defaultKey;
+            defaultValue = trimValues ? segment.trimmedDefaultValue : segment.defaultValue;
+        } else {
+            // Recursive invocation, parsing placeholders contained in the placeholder key.
+            placeholder = parseTemplate(segment.nestedKey, resolution);
+            if(this.valueSeparator != null) {
+                int separatorIndex = placeholder.indexOf(this.valueSeparator);
+                if (separatorIndex != -1) {
+                    defaultKey = placeholder.substring(0, separatorIndex);
+                    defaultValue = placeholder.substring(separatorIndex + this.valueSeparator.length());
+                }
+            }
+        }
+
+        // Now obtain the value for the fully resolved key...
+        // recording the key in the map that the value was obtained from, if any.
+        String propKey = placeholder;
+        String propVal = placeholderResolver.get(placeholder);
+        if(propVal == null) {
+            propKey = null;
+            propVal = getPlaceholderSourceValue(placeholder);
+        }
+
+        if (propVal == null && defaultKey != null) {
+            propKey = defaultKey;
+            propVal = placeholderResolver.get(defaultKey);
+            if (propVal == null) {
+                propKey = null;
+                propVal = defaultValue;
+            }
+        }
+
+        resolution.placeholderKey = placeholder;
+        resolution.propertyKey = propKey;
+        return propVal;
+    }
+
+    /**
+     * Resolves the placeholders in a looked up value.  Values from the properties are remembered, when the
+     * resolution is remembering resolved values; so each is only resolved once.
+     */
+    private String resolveLookedUpValue(String propVal, String propKey, Resolution resolution) {
+        if(propKey != null && resolution.resolvedValues != null) {
+            String resolvedVal = resolution.resolvedValues.get(propKey);
+            if(resolvedVal == null) {
+                resolvedVal = parseStringValue(propVal, resolution);
+                resolution.resolvedValues.put(propKey,resolvedVal);
             }
+            return resolvedVal;
         }
-        return -1;
+        return parseStringValue(propVal, resolution);
+    }
+
+    /**
+     * Returns the value of the given key from the first of the placeholder sources that has it; by default
+     * system properties, then environment variables.  null if no source has the key.
+     */
+    private String getPlaceholderSourceValue(String key) {
+        return placeholderSources.getValue(key);
+    }
+
+    /**
+     * Returns the compiled template for the given value, from the cache of templates held by this resolver.
+     * Templates are only cached for values that contain a placeholder, up to the configured maximum number
+     * of templates.  After which templates are compiled on each use.
+     */
+    private PlaceholderTemplate getTemplate(String strVal) {
+        PlaceholderTemplate template = templates.get(strVal);
+        if(template == null) {
+            template = compileTemplate(strVal);
+            if(templates.size() < maximumNumberOfCachedTemplates) {
+                templates.putIfAbsent(strVal,template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Splits the value into the literal and placeholder segments.  The value is scanned in the same manner as
+     * the original spring resolution: a placeholder without a matching suffix ends the scan, and the rest of the
+     * value is literal text.
+     */
+    private PlaceholderTemplate compileTemplate(String strVal) {
+        List<PlaceholderTemplate.Segment> segments = new ArrayList<PlaceholderTemplate.Segment>(4);
+        int literalLength = 0;
+        int placeholders = 0;
+
+        int literalStart = 0;
+        int startIndex = scanner.indexOfPlaceholderPrefix(strVal, 0);
+        while (startIndex != -1) {
+            int endIndex = scanner.findPlaceholderEndIndex(strVal, startIndex);
+            if (endIndex == -1) {
+                break;
+            }
+
+            if(startIndex > literalStart) {
+                segments.add(PlaceholderTemplate.Segment.literal(strVal.substring(literalStart, startIndex)));
+                literalLength += startIndex - literalStart;
+            }
+
+            int placeholderEnd = endIndex + this.placeholderSuffix.length();
+            String text = strVal.substring(startIndex, placeholderEnd);
+            String placeholder = strVal.substring(startIndex + this.placeholderPrefix.length(), endIndex);
+
+            PlaceholderTemplate nestedKey = null;
+            if(placeholder.indexOf(this.placeholderPrefix) != -1) {
+                nestedKey = compileTemplate(placeholder);
+                if(!hasPlaceholders(nestedKey)) nestedKey = null;
+            }
+
+            if(nestedKey == null) {
+                segments.add(PlaceholderTemplate.Segment.placeholder(text, placeholder, this.valueSeparator));
+            } else {
+                segments.add(PlaceholderTemplate.Segment.nestedPlaceholder(text, placeholder, nestedKey));
+            }
+            placeholders++;
+
+            literalStart = placeholderEnd;
+            startIndex = scanner.indexOfPlaceholderPrefix(strVal, placeholderEnd);
+        }
+
+        if(literalStart < strVal.length()) {
+            segments.add(PlaceholderTemplate.Segment.literal(strVal.substring(literalStart)));
+            literalLength += strVal.length() - literalStart;
+        }
+
+        return new PlaceholderTemplate(strVal,
+                segments.toArray(new PlaceholderTemplate.Segment[segments.size()]),
+                literalLength + (placeholders * ESTIMATED_PLACEHOLDER_VALUE_LENGTH));
+    }
+
+    private static boolean hasPlaceholders(PlaceholderTemplate template) {
+        for(PlaceholderTemplate.Segment segment : template.getSegments()) {
+            if(!segment.isLiteral()) return true;
+        }
+        return false;
     }
 
     /**
@@ -334,6 +771,58 @@ public class VariablePlaceholderValueResolver implements ValueResolver {
         return true;
     }
 
+    /**
+     * The state of a single resolution.  The map that placeholders are resolved against, the placeholders currently
+     * being resolved (to detect circular references), and optionally the already resolved values of keys in the map.
+     * When the properties are known to have no circular references, the placeholders are not tracked; only the
+     * depth of the placeholders being resolved is counted.
+     */
+    private static final class Resolution {
+        final Map<String,String> properties;
+        final Set<String> visitedPlaceholders;
+        final boolean trimValues;
+        final Map<String,String> resolvedValues;
+        int depth;
+        /**
+         * The key, and the key of the properties, of the most recently looked up placeholder.
+         */
+        String placeholderKey;
+        String propertyKey;
+
+        Resolution(Map<String,String> properties, boolean trimValues, boolean tracking,
+                   Map<String,String> resolvedValues) {
+            this.properties = properties;
+            this.trimValues = trimValues;
+            this.visitedPlaceholders = tracking ? new HashSet<String>() : null;
+            this.resolvedValues = resolvedValues;
+        }
+    }
+
+    /**
+     * Thrown when a placeholder cannot be resolved, and unresolvable placeholders are not ignored
+     */
+    private static final class UnresolvablePlaceholderException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        UnresolvablePlaceholderException(String placeholder) {
+            super("Could not resolve placeholder '" + placeholder + "'");
+        }
+    }
+
+    /**
+     * Thrown when an untracked resolution goes deeper than {@link #MAXIMUM_UNTRACKED_DEPTH}.  This can be due to a
+     * circular reference that is not part of the dependency graph (i.e. through a nested placeholder key, or the
+     * operating environment), so the resolution is repeated with the placeholders tracked.
+     */
+    private static final class MaximumUntrackedDepthExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
     private OperatingEnvironmentProperties getOperatingEnvironmentProperties() {
         return this.operatingEnvironmentProperties;
     }
@@ -16,6 +16,10 @@
 package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
 
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Value object that simplifies the creation of the VariablePlaceholderValueResolver object.
@@ -35,6 +39,11 @@ public class VariablePlaceholderValueResolverConfig implements ValueResolverConf
     private String placeholderSuffix = ValueResolverConfig.DEFAULT_PLACEHOLDER_SUFFIX;
     private String placeholderDefaultValueSeparator = ValueResolverConfig.DEFAULT_PLACEHOLDER_DEFAULT_VALUE_SEPARATOR;
     private boolean trimmingPropertyValues = ValueResolverConfig.DEFAULT_TRIMMING_PROPERTY_VALUES;
+    private int maximumNumberOfCachedTemplates = ValueResolverConfig.DEFAULT_MAXIMUM_NUMBER_OF_CACHED_TEMPLATES;
+    private boolean parallelResolutionEnabled = ValueResolverConfig.DEFAULT_PARALLEL_RESOLUTION_ENABLED;
+    private int parallelResolutionThreshold = ValueResolverConfig.DEFAULT_PARALLEL_RESOLUTION_THRESHOLD;
+    private ForkJoinPool parallelResolutionPool = null;
+    private List<PlaceholderSource> placeholderSources = null;
 
 
     @Override
@@ -124,4 +133,59 @@ public class VariablePlaceholderValueResolverConfig implements ValueResolverConf
         this.trimmingPropertyValues = trimValues;
         return this;
     }
+
+    @Override
+    public int getMaximumNumberOfCachedTemplates() {
+        return maximumNumberOfCachedTemplates;
+    }
+
+    @Override
+    public ValueResolverConfig setMaximumNumberOfCachedTemplates(int maximumNumberOfCachedTemplates) {
+        this.maximumNumberOfCachedTemplates = maximumNumberOfCachedTemplates;
+        return this;
+    }
+
+    @Override
+    public boolean isParallelResolutionEnabled() {
+        return parallelResolutionEnabled;
+    }
+
+    @Override
+    public ValueResolverConfig setParallelResolutionEnabled(boolean parallelResolutionEnabled) {
+        this.parallelResolutionEnabled = parallelResolutionEnabled;
+        return this;
+    }
+
+    @Override
+    public int getParallelResolutionThreshold() {
+        return parallelResolutionThreshold;
+    }
+
+    @Override
+    public ValueResolverConfig setParallelResolutionThreshold(int parallelResolutionThreshold) {
+        this.parallelResolutionThreshold = parallelResolutionThreshold;
+        return this;
+    }
+
+    @Override
+    public ForkJoinPool getParallelResolutionPool() {
+        return parallelResolutionPool;
+    }
+
+    @Override
+    public ValueResolverConfig setParallelResolutionPool(ForkJoinPool pool) {
+        this.parallelResolutionPool = pool;
+        return this;
+    }
+
+    @Override
+    public List<PlaceholderSource> getPlaceholderSources() {
+        return placeholderSources;
+    }
+
+    @Override
+    public ValueResolverConfig setPlaceholderSources(List<PlaceholderSource> sources) {
+        this.placeholderSources = sources;
+        return this;
+    }
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * <p>
+ * A read only map of properties, that is read from a binary snapshot written by {@link PropertiesSnapshotWriter}.
+ * The snapshot is usually a memory mapped file; the keys and values are read from the buffer when they are asked
+ * for, rather than the whole file being parsed up front.  Looking up a key is a binary search of the sorted key
+ * index, so only the pages of the file holding the index entries compared, and the key and value found, are read.
+ * </p>
+ * <p>
+ * Iterating over the entries decodes each key as it is reached, and each value only when it is asked for.  The map
+ * cannot be modified, and can be shared by any number of threads.
+ * </p>
+ */
+public final class PropertiesSnapshot extends AbstractMap<String,String> {
+
+    /**
+     * "EPS1"
+     */
+    static final int MAGIC = 0x45505331;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int size;
+    private final int stringTable;
+    private Set<Map.Entry<String,String>> entrySet;
+
+    private PropertiesSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.base = buffer.position();
+        if(buffer.remaining() < HEADER_SIZE || buffer.getInt(base) != MAGIC) {
+            throw new IllegalArgumentException("The buffer is not a properties snapshot");
+        }
+        if(buffer.getInt(base+4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported properties snapshot version: " + buffer.getInt(base+4));
+        }
+        this.size = buffer.getInt(base+8);
+        this.stringTable = base + buffer.getInt(base+12);
+        if(size < 0 || stringTable != base + HEADER_SIZE + (long)size*INDEX_ENTRY_SIZE || stringTable > buffer.limit()) {
+            throw new IllegalArgumentException("The properties snapshot is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Reads the snapshot from the buffer, from its position to its limit.  The buffer must not be modified whilst
+     * the snapshot is in use.
+     *
+     * @param buffer the snapshot
+     * @return the properties in the snapshot
+     * @throws IllegalArgumentException if the buffer does not contain a snapshot
+     */
+    public static PropertiesSnapshot wrap(ByteBuffer buffer) {
+        return new PropertiesSnapshot(buffer.duplicate());
+    }
+
+    /**
+     * Memory maps the given snapshot file.  The file must not be modified whilst the snapshot is in use; write
+     * a new snapshot to another file and rename it over the old one.
+     *
+     * @param file the snapshot file
+     * @return the properties in the snapshot
+     * @throws IOException if the file cannot be read, or is not a snapshot
+     */
+    public static PropertiesSnapshot open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new PropertiesSnapshot(channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unable to read properties snapshot " + file + ": " + e.getMessage());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Compares two UTF-8 encoded strings, byte by byte, as unsigned values; which orders them by code point.
+     */
+    static int compare(byte[] a, byte[] b) {
+        int length = Math.min(a.length,b.length);
+        for(int i=0;i<length;i++) {
+            int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if(difference != 0) return difference;
+        }
+        return a.length - b.length;
+    }
+
+    private int compareKey(int entry, byte[] key) {
+        int index = base + HEADER_SIZE + entry*INDEX_ENTRY_SIZE;
+        int offset = stringTable + buffer.getInt(index);
+        int length = buffer.getInt(index+4);
+        int common = Math.min(length,key.length);
+        for(int i=0;i<common;i++) {
+            int difference = (buffer.get(offset+i) & 0xFF) - (key[i] & 0xFF);
+            if(difference != 0) return difference;
+        }
+        return length - key.length;
+    }
+
+    private int indexOf(Object key) {
+        if(!(key instanceof String)) return -1;
+        byte[] bytes = ((String)key).getBytes(PropertiesSnapshotWriter.UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareKey(middle,bytes);
+            if(comparison < 0) low = middle + 1;
+            else if(comparison > 0) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    private String string(int indexPosition) {
+        int offset = stringTable + buffer.getInt(indexPosition);
+        int length = buffer.getInt(indexPosition+4);
+        if(length == 0) return "";
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer)view).position(offset);
+        view.get(bytes);
+        return new String(bytes,PropertiesSnapshotWriter.UTF_8);
+    }
+
+    private String key(int entry) {
+        return string(base + HEADER_SIZE + entry*INDEX_ENTRY_SIZE);
+    }
+
+    private String value(int entry) {
+        return string(base + HEADER_SIZE + entry*INDEX_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * @return the value of the property, read from the snapshot, or null if it is not in the snapshot
+     */
+    public String getProperty(String key) {
+        int entry = indexOf(key);
+        return entry == -1 ? null : value(entry);
+    }
+
+    @Override
+    public String get(Object key) {
+        int entry = indexOf(key);
+        return entry == -1 ? null : value(entry);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String,String>> entrySet() {
+        Set<Map.Entry<String,String>> entries = entrySet;
+        if(entries == null) {
+            entrySet = entries = new AbstractSet<Map.Entry<String,String>>() {
+                @Override
+                public Iterator<Map.Entry<String,String>> iterator() {
+                    return new Iterator<Map.Entry<String,String>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Map.Entry<String,String> next() {
+                            if(next >= size) throw new NoSuchElementException();
+                            return new SnapshotEntry(next++);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("The properties snapshot is read only");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entries;
+    }
+
+    /**
+     * An entry whose value is read from the snapshot when it is first asked for
+     */
+    private final class SnapshotEntry implements Map.Entry<String,String> {
+        private final int entry;
+        private final String key;
+        private String value;
+
+        SnapshotEntry(int entry) {
+            this.entry = entry;
+            this.key = key(entry);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            String v = value;
+            if(v == null) value = v = value(entry);
+            return v;
+        }
+
+        @Override
+        public String setValue(String value) {
+            throw new UnsupportedOperationException("The properties snapshot is read only");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Map.Entry)) return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return key.equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.snapshot;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * <p>
+ * Writes a map of properties (i.e. the merged properties of a
+ * {@link org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger}) in the binary snapshot
+ * format that is read by {@link PropertiesSnapshot}.
+ * </p>
+ * <pre>
+ *     header:       magic (int), version (int), number of entries (int), offset of the string table (int)
+ *     key index:    for each entry, sorted by the UTF-8 bytes of the key:
+ *                   key offset (int), key length (int), value offset (int), value length (int)
+ *     string table: the UTF-8 bytes of the keys and values; offsets are relative to the start of the table
+ * </pre>
+ * All ints are big endian.  Strings that occur more than once (i.e. the same value for many keys) are written to
+ * the string table once.
+ */
+public final class PropertiesSnapshotWriter {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private PropertiesSnapshotWriter() {
+    }
+
+    /**
+     * Writes the snapshot of the properties to the given file, replacing it if it exists.
+     *
+     * @param properties the properties to write
+     * @param file the file to write the snapshot to
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Map<String,String> properties, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(properties,out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the snapshot of the properties to the stream.  The stream is not closed.
+     *
+     * @param properties the properties to write
+     * @param stream the stream to write the snapshot to
+     * @throws IOException if the stream cannot be written to
+     */
+    public static void write(Map<String,String> properties, OutputStream stream) throws IOException {
+        int size = properties.size();
+        byte[][] keys = new byte[size][];
+        String[] values = new String[size];
+        Integer[] order = new Integer[size];
+
+        int i = 0;
+        for(Map.Entry<String,String> entry : properties.entrySet()) {
+            keys[i] = entry.getKey().getBytes(UTF_8);
+            values[i] = entry.getValue();
+            order[i] = i;
+            i++;
+        }
+
+        final byte[][] sortKeys = keys;
+        Arrays.sort(order,new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return PropertiesSnapshot.compare(sortKeys[a],sortKeys[b]);
+            }
+        });
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        Map<String,Integer> valueOffsets = new HashMap<String,Integer>();
+        int[] index = new int[size*4];
+        for(int entry = 0; entry < size; entry++) {
+            int item = order[entry];
+            if(entry > 0 && PropertiesSnapshot.compare(keys[order[entry-1]],keys[item]) == 0) {
+                throw new IllegalArgumentException("Duplicate key in properties: " + new String(keys[item],UTF_8));
+            }
+            index[entry*4] = strings.size();
+            index[entry*4+1] = keys[item].length;
+            strings.write(keys[item]);
+
+            String value = values[item];
+            byte[] valueBytes = value.getBytes(UTF_8);
+            Integer offset = valueOffsets.get(value);
+            if(offset == null) {
+                offset = strings.size();
+                valueOffsets.put(value,offset);
+                strings.write(valueBytes);
+            }
+            index[entry*4+2] = offset;
+            index[entry*4+3] = valueBytes.length;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(PropertiesSnapshot.MAGIC);
+        out.writeInt(PropertiesSnapshot.VERSION);
+        out.writeInt(size);
+        out.writeInt(PropertiesSnapshot.HEADER_SIZE + size*PropertiesSnapshot.INDEX_ENTRY_SIZE);
+        for(int value : index) {
+            out.writeInt(value);
+        }
+        strings.writeTo(out);
+        out.flush();
+    }
+}
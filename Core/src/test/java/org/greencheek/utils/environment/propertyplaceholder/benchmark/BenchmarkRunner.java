@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Minimal timing harness for the benchmarks in this package.  The benchmarks are plain main classes, so
+ * that they are not picked up by surefire; run them from the IDE or via:
+ * <pre>
+ *     mvn -pl Core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...
+ * </pre>
+ * Each operation is warmed up before being measured.  Where the jvm supports it the number of bytes
+ * allocated per operation, on the measuring thread, is reported along with the time.
+ * <p>
+ * The measurements are taken in the running jvm, with a fixed number of warmup iterations, so they are indicative
+ * only.  Benchmarks whose numbers need fork isolation and error bounds are written with JMH instead, i.e.
+ * {@link PlaceholderScannerBenchmark} and {@link PropertiesParserBenchmark}.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    public interface Operation {
+        /**
+         * Performs one invocation of the operation being measured.
+         * @return a value derived from the operation, so that the jit cannot remove the work
+         */
+        Object run();
+    }
+
+    private static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+
+    public BenchmarkRunner(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    public void run(String name, Operation operation) {
+        for(int i=0;i<warmupIterations;i++) {
+            sink = operation.run();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for(int i=0;i<measuredIterations;i++) {
+            sink = operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+
+        StringBuilder b = new StringBuilder(128);
+        b.append(String.format("%-60s %14.1f ns/op", name, (double) elapsed / measuredIterations));
+        if(allocatedBefore>=0 && allocatedAfter>=0) {
+            b.append(String.format(" %14.1f bytes/op", (double) (allocatedAfter - allocatedBefore) / measuredIterations));
+        }
+        System.out.println(b);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+            if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceIndex;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Measures looking up 20 properties files that are not on a classpath of 400 jars, and the benchmark's classpath (as most of the possible
+ * operational override files are not): with the cache cleared before the lookups, with the cache cleared and the
+ * configuration indexed by {@link ClassPathResourceIndex}, and with the lookups cached.  The configuration is in
+ * app/config, rather than config, as the unindexed test classes also have a config directory; which would stop the
+ * index from rejecting the resources.
+ */
+public class ClassPathResourceBenchmark {
+
+    private static final int JARS = 400;
+    private static final int CANDIDATES = 20;
+
+    private static URLClassLoader createClassPath(boolean indexed) throws IOException {
+        URL[] urls = new URL[JARS+1];
+        for(int i=0;i<JARS;i++) {
+            File jar = File.createTempFile("ClassPathResourceBenchmark",".jar");
+            jar.deleteOnExit();
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+            try {
+                for(int j=0;j<20;j++) {
+                    out.putNextEntry(new ZipEntry("com/example/jar" + i + "/Class" + j + ".class"));
+                    out.write(new byte[64]);
+                    out.closeEntry();
+                }
+            } finally {
+                out.close();
+            }
+            urls[i] = jar.toURI().toURL();
+        }
+
+        File classes = File.createTempFile("ClassPathResourceBenchmark","");
+        classes.delete();
+        new File(classes,"app/config").mkdirs();
+        FileOutputStream out = new FileOutputStream(new File(classes,"app/config/default.properties"));
+        try {
+            out.write("message=hello\n".getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        if(indexed) ClassPathResourceIndex.write(classes,Collections.singletonList("app/config"));
+        urls[JARS] = classes.toURI().toURL();
+        // the classloader of a web application, whose parent has loaded the merger
+        return new URLClassLoader(urls,ClassPathResourceBenchmark.class.getClassLoader());
+    }
+
+    private static BenchmarkRunner.Operation lookups(final ClassLoader classLoader, final boolean clearingCache) {
+        final ClassPathResourceLoader loader = new ClassPathResourceLoader("/app/config");
+        return new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                Thread.currentThread().setContextClassLoader(classLoader);
+                if(clearingCache) ClassPathResourceLoader.clearCache();
+                Object resource = null;
+                for(int i=0;i<CANDIDATES;i++) {
+                    resource = loader.getFile("environments/candidate" + i + ".properties");
+                }
+                return resource;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        ((Logger)LoggerFactory.getLogger("org.greencheek.utils.environment")).setLevel(Level.WARN);
+        URLClassLoader classPath = createClassPath(false);
+        URLClassLoader indexedClassPath = createClassPath(true);
+        BenchmarkRunner runner = new BenchmarkRunner(5,50);
+
+        runner.run(CANDIDATES + " missing resources, uncached",lookups(classPath,true));
+        runner.run(CANDIDATES + " missing resources, uncached, indexed",lookups(indexedClassPath,true));
+        runner.run(CANDIDATES + " missing resources, cached",lookups(classPath,false));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * Measures merging configuration that is switched on 30 variables; so 30 environment files, and 30 operational
+ * override files, are looked for, of which 2 of each exist.  The files are looked for one at a time, and answered
+ * from a listing of their directories, in which case the 4 directories are listed and only the files that exist
+ * have their attributes read.  The filesystem of the temporary directory is used; on a network filesystem each file
+ * that is looked for is a round trip.
+ */
+public class DirectoryListingBenchmark {
+
+    private static final int VARIABLES = 30;
+
+    private static void write(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static PropertiesMergerBuilder builder(File config, File overrides, boolean listing) {
+        String[] variables = new String[VARIABLES];
+        for(int i=0;i<VARIABLES;i++) variables[i] = "VAR" + i;
+        return new EnvironmentSpecificPropertiesMergerBuilder(new FileSystemResourceLoader(config.getAbsolutePath()))
+                .setResourceLoaderForOperationalOverrides(new FileSystemResourceLoader(overrides.getAbsolutePath()))
+                .setVariablesUsedForSwitchingConfiguration(variables)
+                .setOutputtingPropertiesInDebugMode(false)
+                .setListingDirectoriesOfPropertiesFiles(listing)
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "value" + property.substring(3);
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    public static void main(String[] args) throws Exception {
+        // the debug logging of each file looked for would otherwise be measured
+        ((Logger)LoggerFactory.getLogger("org.greencheek.utils.environment")).setLevel(Level.WARN);
+
+        File directory = File.createTempFile("DirectoryListingBenchmark","");
+        directory.delete();
+        directory.deleteOnExit();
+        File config = new File(directory,"config");
+        File overrides = new File(directory,"overrides");
+        StringBuilder properties = new StringBuilder();
+        for(int i=0;i<100;i++) properties.append("property").append(i).append("=value\n");
+        write(new File(config,"default.properties"),properties.toString());
+        write(new File(config,"environments/value0.properties"),"property0=override\n");
+        write(new File(config,"environments/value1.properties"),"property1=override\n");
+        write(new File(overrides,"environments/value2.properties"),"property2=override\n");
+        write(new File(overrides,"environments/value3.properties"),"property3=override\n");
+
+        final PropertiesMergerBuilder probing = builder(config,overrides,false);
+        final PropertiesMergerBuilder listing = builder(config,overrides,true);
+        BenchmarkRunner runner = new BenchmarkRunner(200,2000);
+
+        runner.run("files looked for one at a time",new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                return probing.build();
+            }
+        });
+
+        runner.run("files answered from directory listings",new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                return listing.build();
+            }
+        });
+    }
+}
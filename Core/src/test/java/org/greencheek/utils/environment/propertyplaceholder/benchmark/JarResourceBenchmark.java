@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.JarFileCache;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Measures reading a properties file from a fat jar of 5,000 entries: reading the stream of its jar: URL (as
+ * resources were read before), reading it from a jar file opened for the read into an array of the entry's size (as
+ * a resource is read outside of a merge), and reading it from a jar file shared by a merge.
+ * The file has 2,000 properties; pass the number of properties as an argument to use a different number.
+ */
+public class JarResourceBenchmark {
+
+    private static File createJar(int properties) throws IOException {
+        File jar = File.createTempFile("JarResourceBenchmark",".jar");
+        jar.deleteOnExit();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for(int i=0;i<5000;i++) {
+                out.putNextEntry(new ZipEntry("com/example/Class" + i + ".class"));
+                out.write(new byte[256]);
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("config/default.properties"));
+            for(int i=0;i<properties;i++) {
+                out.write(("service." + i + ".url=http://host" + i + ".example.com:8080/path\n").getBytes("ISO-8859-1"));
+            }
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int properties = args.length == 0 ? 2000 : Integer.parseInt(args[0]);
+        File jar = createJar(properties);
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()},null));
+        final ClassPathResource resource = (ClassPathResource)new ClassPathResourceLoader("/config").getFile("default.properties");
+        final JarFileCache jars = new JarFileCache();
+        final ClassPathResource shared = (ClassPathResource)new ClassPathResourceLoader("/config").getFile("default.properties",jars);
+        BenchmarkRunner runner = new BenchmarkRunner(20,500);
+
+        runner.run("stream of jar: url",new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                try {
+                    InputStream is = resource.getStream();
+                    try {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while((read = is.read(buffer))!=-1) out.write(buffer,0,read);
+                        return out.toByteArray();
+                    } finally {
+                        is.close();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        runner.run("jar file opened per read, sized array",new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                try {
+                    return resource.getByteBuffer();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        runner.run("jar file shared by a merge, sized array",new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                try {
+                    return shared.getByteBuffer();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        jars.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolver;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolverConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Resolves a map of 200k properties on a single thread, and then in parallel with pools of 1, 2, 4 and
+ * the number of available processors.
+ */
+public class ParallelResolutionBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final Map<String,String> map = createProperties(size);
+        BenchmarkRunner runner = new BenchmarkRunner(3, 10);
+
+        final VariablePlaceholderValueResolver serial = new VariablePlaceholderValueResolver(
+                new VariablePlaceholderValueResolverConfig()
+                        .setEnvironmentPropertiesResolutionEnabled(false)
+                        .setSystemPropertiesResolutionEnabled(false));
+        runner.run("serial, keys=" + size, new BenchmarkRunner.Operation() {
+            public Object run() {
+                return serial.resolvedPropertyValues(map);
+            }
+        });
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for(int threads : new int[]{1, 2, 4, processors}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            final VariablePlaceholderValueResolver parallel = new VariablePlaceholderValueResolver(
+                    new VariablePlaceholderValueResolverConfig()
+                            .setEnvironmentPropertiesResolutionEnabled(false)
+                            .setSystemPropertiesResolutionEnabled(false)
+                            .setParallelResolutionEnabled(true)
+                            .setParallelResolutionPool(pool));
+            runner.run("parallel, threads=" + threads + ", keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    return parallel.resolvedPropertyValues(map);
+                }
+            });
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tenant style configuration: each tenant has a handful of keys that reference shared keys
+     * and the tenant's own keys.
+     */
+    private static Map<String,String> createProperties(int size) {
+        Map<String,String> map = new HashMap<String,String>(size);
+        map.put("env","production");
+        map.put("domain","${env}.example.com");
+        for(int tenant=0;map.size()<size;tenant++) {
+            String prefix = "tenant." + tenant + ".";
+            map.put(prefix + "name","tenant-" + tenant);
+            map.put(prefix + "host","${" + prefix + "name}.${domain}");
+            map.put(prefix + "db.url","jdbc:mysql://db.${" + prefix + "host}:${" + prefix + "db.port:3306}/${" + prefix + "name}");
+            map.put(prefix + "cache.url","memcached://cache.${" + prefix + "host}:11211");
+            map.put(prefix + "callback","https://${" + prefix + "host}/callback?db=${" + prefix + "db.url}");
+        }
+        return map;
+    }
+}
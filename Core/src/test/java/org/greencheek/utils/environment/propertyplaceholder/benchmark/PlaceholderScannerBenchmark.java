@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.PlaceholderScanner;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolver;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares finding the placeholders in values by checking for the suffix and nested prefix at every character,
+ * against the {@link PlaceholderScanner}, for values with and without placeholders.  Values without placeholders
+ * are found with the same search for the placeholder prefix by both; the difference is in the time taken to find
+ * the end of each placeholder, which grows with the length of the placeholder (i.e. one with a long default value).
+ * </p>
+ * <p>
+ * This is a JMH benchmark, so unlike the {@link BenchmarkRunner} mains it is run in forked JVMs, which need the
+ * test classpath on the command line:
+ * <pre>
+ *     mvn -pl Core test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *         -Dexec.args="-cp %classpath org.greencheek.utils.environment.propertyplaceholder.benchmark.PlaceholderScannerBenchmark"
+ * </pre>
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PlaceholderScannerBenchmark {
+
+    private static final VariablePlaceholderValueResolver RESOLVER = new VariablePlaceholderValueResolver();
+
+    /**
+     * The values that are scanned: without placeholders, with placeholders, or with placeholders that have long
+     * default values
+     */
+    @Param({"plain", "placeholders", "defaults"})
+    public String values;
+
+    private String[] buffers;
+    private PlaceholderScanner placeholderScanner;
+
+    @Setup
+    public void setUp() {
+        buffers = new String[1000];
+        for(int i=0;i<buffers.length;i++) {
+            if(values.equals("plain")) {
+                buffers[i] = "jdbc:mysql://database-" + i + ".internal.example.com:3306/application?useUnicode=true";
+            } else if(values.equals("placeholders")) {
+                buffers[i] = "jdbc:mysql://${database.host.${environment}}:${database.port}/application-" + i
+                             + "?user=${database.user}&password=${database.password}&useUnicode=true";
+            } else {
+                buffers[i] = "${database.url." + i + ":jdbc:mysql://database-" + i
+                             + ".internal.example.com:3306/application?useUnicode=true&characterEncoding=UTF-8}";
+            }
+        }
+        placeholderScanner = new PlaceholderScanner("${","}","{");
+    }
+
+    private static int characterByCharacter(String buf) {
+        int found = 0;
+        int startIndex = buf.indexOf("${");
+        while (startIndex != -1) {
+            int index = startIndex + 2;
+            int withinNestedPlaceholder = 0;
+            int endIndex = -1;
+            while (index < buf.length()) {
+                if (RESOLVER.substringMatch(buf, index, "}")) {
+                    if (withinNestedPlaceholder > 0) {
+                        withinNestedPlaceholder--;
+                        index++;
+                    }
+                    else {
+                        endIndex = index;
+                        break;
+                    }
+                }
+                else if (RESOLVER.substringMatch(buf, index, "{")) {
+                    withinNestedPlaceholder++;
+                    index++;
+                }
+                else {
+                    index++;
+                }
+            }
+            if(endIndex == -1) break;
+            found++;
+            startIndex = buf.indexOf("${", endIndex + 1);
+        }
+        return found;
+    }
+
+    private static int scanner(PlaceholderScanner scanner, String buf) {
+        int found = 0;
+        int startIndex = scanner.indexOfPlaceholderPrefix(buf, 0);
+        while (startIndex != -1) {
+            int endIndex = scanner.findPlaceholderEndIndex(buf, startIndex);
+            if(endIndex == -1) break;
+            found++;
+            startIndex = scanner.indexOfPlaceholderPrefix(buf, endIndex + 1);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int characterByCharacter() {
+        int found = 0;
+        for(String value : buffers) found += characterByCharacter(value);
+        return found;
+    }
+
+    @Benchmark
+    public int scanner() {
+        int found = 0;
+        for(String value : buffers) found += scanner(placeholderScanner,value);
+        return found;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PlaceholderScannerBenchmark.class.getName()).build()).run();
+    }
+}
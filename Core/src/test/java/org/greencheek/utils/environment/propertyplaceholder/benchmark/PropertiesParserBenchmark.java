@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesParser;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares loading a properties file with {@link Properties#load(InputStream)}, against reading it into a buffer
+ * (memory mapped, for the files here) with {@link FileSystemResource#getByteBuffer()} and parsing it with the
+ * {@link PropertiesParser}; in one go, and in parallel chunks on the common fork join pool.  Files of 1MB and 50MB
+ * are generated in the temp directory.
+ * </p>
+ * <p>
+ * This is a JMH benchmark, so unlike the {@link BenchmarkRunner} mains it is run in forked JVMs, which need the
+ * test classpath on the command line:
+ * <pre>
+ *     mvn -pl Core test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *         -Dexec.args="-cp %classpath org.greencheek.utils.environment.propertyplaceholder.benchmark.PropertiesParserBenchmark"
+ * </pre>
+ * Other file sizes can be given to JMH with <code>-p megabytes=...</code>, by running <code>org.openjdk.jmh.Main</code>
+ * rather than this class.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PropertiesParserBenchmark {
+
+    @Param({"1", "50"})
+    public int megabytes;
+
+    private File file;
+    private FileSystemResource resource;
+
+    @Setup
+    public void generate() throws IOException {
+        file = File.createTempFile("PropertiesParserBenchmark",".properties");
+        file.deleteOnExit();
+        long size = megabytes * 1024L * 1024L;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),"ISO-8859-1"));
+        try {
+            long written = 0;
+            for(int i=0;written<size;i++) {
+                String lines;
+                if(i % 50 == 0) {
+                    lines = "# settings for service " + i + "\n";
+                } else if(i % 20 == 0) {
+                    lines = "service." + i + ".description = a description of the service, \\\n" +
+                            "    continued over two lines with an escaped \\u00e9\n";
+                } else {
+                    lines = "service." + i + ".url=http://${service.host}:" + (8000 + i % 1000) + "/api/v1/resource/" + i + "\n";
+                }
+                writer.write(lines);
+                written+=lines.length();
+            }
+        } finally {
+            writer.close();
+        }
+        resource = new FileSystemResource(file);
+    }
+
+    @TearDown
+    public void delete() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Properties propertiesLoad() throws IOException {
+        Properties p = new Properties();
+        InputStream is = new FileInputStream(file);
+        try {
+            p.load(is);
+        } finally {
+            is.close();
+        }
+        return p;
+    }
+
+    @Benchmark
+    public Map<String,String> propertiesParser() throws IOException {
+        return PropertiesParser.parse(resource.getByteBuffer(),new HashMap<String,String>());
+    }
+
+    @Benchmark
+    public Map<String,String> propertiesParserInParallel() throws IOException {
+        return PropertiesParser.parse(resource.getByteBuffer(),new HashMap<String,String>(),ForkJoinPool.commonPool());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PropertiesParserBenchmark.class.getName()).build()).run();
+    }
+}
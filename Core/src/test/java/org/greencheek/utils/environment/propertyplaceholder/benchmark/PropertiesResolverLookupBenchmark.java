@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesResolverBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.PropertiesResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Compares the cost of {@link PropertiesResolver#getProperty(String)} for a resolver that resolves on each
+ * request, against one that pre-resolves the properties when built.
+ */
+public class PropertiesResolverLookupBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = {100, 1000, 10000};
+        BenchmarkRunner runner = new BenchmarkRunner(5000, 20000);
+
+        for(int size : sizes) {
+            final Properties p = new Properties();
+            for(int i=0;i<size;i++) {
+                p.setProperty("key." + i, "value." + i);
+            }
+            p.setProperty("database.server.cname","bernard-app.dbw.production");
+            p.setProperty("database.url","jdbc:mysql://${database.server.cname}/admin");
+
+            PropertiesMerger merger = new PropertiesMerger() {
+                @Override
+                public Properties getMergedProperties() {
+                    return p;
+                }
+
+                @Override
+                public Map<String, String> getMergedPropertiesAsMap() {
+                    return new HashMap(p);
+                }
+            };
+
+            final PropertiesResolver onRequest = new EnvironmentSpecificPropertiesResolverBuilder().build(merger);
+            final PropertiesResolver preResolved = new EnvironmentSpecificPropertiesResolverBuilder()
+                    .setPreResolvingPropertyValues(true).build(merger);
+
+            runner.run("resolved on request, no placeholder, keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    return onRequest.getProperty("key.1");
+                }
+            });
+            runner.run("resolved on request, placeholder, keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    return onRequest.getProperty("database.url");
+                }
+            });
+            runner.run("pre-resolved, no placeholder, keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    return preResolved.getProperty("key.1");
+                }
+            });
+            runner.run("pre-resolved, placeholder, keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    return preResolved.getProperty("database.url");
+                }
+            });
+        }
+    }
+}
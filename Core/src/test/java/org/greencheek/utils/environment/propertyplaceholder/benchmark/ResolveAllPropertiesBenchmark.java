@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares resolving all the entries of a map in dependency order, against resolving each entry on its own.
+ * The map contains keys that are referenced by many other keys, and chains of keys that reference each other.
+ */
+public class ResolveAllPropertiesBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = {1000, 10000, 40000};
+        BenchmarkRunner runner = new BenchmarkRunner(5, 20);
+        final VariablePlaceholderValueResolver resolver = new VariablePlaceholderValueResolver(false,false);
+
+        for(int size : sizes) {
+            final Map<String,String> map = createProperties(size);
+
+            runner.run("dependency order, keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    return resolver.resolvedPropertyValues(map);
+                }
+            });
+            runner.run("each key on its own, keys=" + size, new BenchmarkRunner.Operation() {
+                public Object run() {
+                    Map<String,String> resolved = new HashMap<String,String>(map.size());
+                    for(String key : map.keySet()) {
+                        resolved.put(key,resolver.resolvedPropertyValue(map,key));
+                    }
+                    return resolved;
+                }
+            });
+        }
+    }
+
+    /**
+     * A quarter of the keys reference a shared key (that itself references others), a quarter are in chains of
+     * 50 keys, and the rest are plain values.
+     */
+    private static Map<String,String> createProperties(int size) {
+        Map<String,String> map = new HashMap<String,String>(size);
+        map.put("env","production");
+        map.put("host","db.${env}.example.com");
+        map.put("url","jdbc:mysql://${host}:${port:3306}/${env}");
+
+        int quarter = size / 4;
+        for(int i=0;i<quarter;i++) {
+            map.put("shared." + i,"${url}?connection=" + i);
+        }
+        for(int i=0;i<quarter;i++) {
+            if(i%50==0) {
+                map.put("chain." + i,"${env}");
+            } else {
+                map.put("chain." + i,"${chain." + (i-1) + "}." + i);
+            }
+        }
+        for(int i=map.size();i<size;i++) {
+            map.put("plain." + i,"value." + i);
+        }
+        return map;
+    }
+}
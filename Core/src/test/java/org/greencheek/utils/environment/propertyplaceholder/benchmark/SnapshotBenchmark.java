@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesParser;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.PrefixBasedResourceLoaderFactory;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshotWriter;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Compares parsing a properties file with the {@link PropertiesParser} and reading ten of its properties, against
+ * memory mapping a snapshot of the same properties and reading the same ten properties from it.  Then the same
+ * comparison is made through a merger built by {@link EnvironmentSpecificPropertiesMergerBuilder}, from a "file:"
+ * location and from a "snapshot:" location, with a small environment file merged over the defaults.  Files with
+ * 10,000 and 500,000 properties are generated in the temp directory; pass the numbers of properties as arguments to
+ * use different sizes.
+ */
+public class SnapshotBenchmark {
+
+    private static PropertiesMergerBuilder builder(String location, String extension) {
+        return new EnvironmentSpecificPropertiesMergerBuilder(new PrefixBasedResourceLoaderFactory().createResourceLoader(location))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV"})
+                .setExtensionForPropertiesFile(extension)
+                .setOutputtingPropertiesInDebugMode(false)
+                .setReturningReadOnlyMergedProperties(true)
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "production";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    private static void write(Map<String,String> properties, File directory, String name) throws IOException {
+        File text = new File(directory,name + ".properties");
+        text.getParentFile().mkdirs();
+        text.deleteOnExit();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(text),"ISO-8859-1"));
+        try {
+            for(Map.Entry<String,String> entry : properties.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        File snapshot = new File(directory,name + ".snapshot");
+        snapshot.deleteOnExit();
+        PropertiesSnapshotWriter.write(properties,snapshot);
+    }
+
+    private static void benchmark(int numberOfProperties) throws IOException {
+        Map<String,String> properties = new HashMap<String,String>();
+        for(int i=0;i<numberOfProperties;i++) {
+            properties.put("service." + i + ".url","http://${service.host}:" + (8000 + i % 1000) + "/api/v1/resource/" + i);
+        }
+
+        final File text = File.createTempFile("SnapshotBenchmark",".properties");
+        text.deleteOnExit();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(text),"ISO-8859-1"));
+        try {
+            for(Map.Entry<String,String> entry : properties.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        final File snapshot = File.createTempFile("SnapshotBenchmark",".snapshot");
+        snapshot.deleteOnExit();
+        PropertiesSnapshotWriter.write(properties,snapshot);
+
+        final String[] keys = new String[10];
+        for(int i=0;i<keys.length;i++) {
+            keys[i] = "service." + (i * (numberOfProperties/keys.length)) + ".url";
+        }
+
+        final FileSystemResource resource = new FileSystemResource(text);
+        BenchmarkRunner runner = new BenchmarkRunner(20, 20);
+        runner.run(numberOfProperties + " properties: parse the text file", new BenchmarkRunner.Operation() {
+            public Object run() {
+                try {
+                    Map<String,String> p = PropertiesParser.parse(resource.getByteBuffer(),new HashMap<String,String>());
+                    int length = 0;
+                    for(String key : keys) length += p.get(key).length();
+                    return length;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        runner.run(numberOfProperties + " properties: map the snapshot", new BenchmarkRunner.Operation() {
+            public Object run() {
+                try {
+                    PropertiesSnapshot p = PropertiesSnapshot.open(snapshot);
+                    int length = 0;
+                    for(String key : keys) length += p.get(key).length();
+                    return length;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        File directory = File.createTempFile("SnapshotBenchmark","");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        Map<String,String> production = new HashMap<String,String>();
+        production.put(keys[0],"http://production.example.com/api/v1/resource/0");
+        new File(directory,"environments").deleteOnExit();
+        write(properties,directory,"default");
+        write(production,directory,"environments/production");
+
+        final PropertiesMergerBuilder files = builder("file:" + directory,"properties");
+        final PropertiesMergerBuilder snapshots = builder("snapshot:" + directory,"snapshot");
+        runner.run(numberOfProperties + " properties: merge the text files", new BenchmarkRunner.Operation() {
+            public Object run() {
+                Properties p = files.build().getMergedProperties();
+                int length = 0;
+                for(String key : keys) length += p.getProperty(key).length();
+                return length;
+            }
+        });
+        runner.run(numberOfProperties + " properties: merge the snapshots", new BenchmarkRunner.Operation() {
+            public Object run() {
+                Properties p = snapshots.build().getMergedProperties();
+                int length = 0;
+                for(String key : keys) length += p.getProperty(key).length();
+                return length;
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        ((Logger)LoggerFactory.getLogger("org.greencheek.utils.environment")).setLevel(Level.WARN);
+        if(args.length==0) args = new String[] {"10000","500000"};
+        for(String numberOfProperties : args) {
+            benchmark(Integer.parseInt(numberOfProperties));
+        }
+    }
+}
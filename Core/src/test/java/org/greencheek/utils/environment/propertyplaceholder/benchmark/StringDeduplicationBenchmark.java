@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.merger.WeakStringPool;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by the merged properties of a number of configurations (i.e. the tenants of a
+ * multi-tenant JVM), that are merged from files of 1,000 properties whose values are repeated (hostnames, booleans and
+ * port numbers): without deduplication, deduplicating each merge, and deduplicating against the JVM wide pool.
+ * 300 configurations are merged; pass the number of configurations as an argument to use a different number.
+ */
+public class StringDeduplicationBenchmark {
+
+    private static final String[] VALUES = {"true","false","8080","8443","db.internal.example.com",
+                                            "cache.internal.example.com","http://api.example.com/v1/"};
+
+    private static File generate() throws IOException {
+        File directory = File.createTempFile("StringDeduplicationBenchmark","");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        File file = new File(directory,"default.properties");
+        file.deleteOnExit();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),"ISO-8859-1"));
+        try {
+            for(int i=0;i<1000;i++) {
+                writer.write("service." + i + ".setting=" + VALUES[i % VALUES.length] + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        return directory;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i=0;i<5;i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void measure(String name, File directory, int configurations, boolean deduplicating,
+                                boolean sharingPool) throws InterruptedException {
+        long before = usedHeap();
+        List<PropertiesMerger> mergers = new ArrayList<PropertiesMerger>(configurations);
+        for(int i=0;i<configurations;i++) {
+            PropertiesMergerBuilder builder = new EnvironmentSpecificPropertiesMergerBuilder(
+                    new FileSystemResourceLoader(directory.getAbsolutePath()))
+                    .setOutputtingPropertiesInDebugMode(false)
+                    .setReturningReadOnlyMergedProperties(true)
+                    .setDeduplicatingPropertyStrings(deduplicating);
+            if(sharingPool) builder.setStringPoolForDeduplicatingProperties(WeakStringPool.getSharedInstance());
+            mergers.add(builder.build());
+        }
+        long retained = usedHeap() - before;
+        System.out.println(String.format("%-50s %12d bytes %10d bytes/configuration",name + " (" + mergers.size() + " configurations)",
+                                         retained,retained/configurations));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int configurations = args.length == 0 ? 300 : Integer.parseInt(args[0]);
+        File directory = generate();
+        measure("not deduplicated",directory,configurations,false,false);
+        measure("deduplicated per merge",directory,configurations,true,false);
+        measure("deduplicated against the JVM wide pool",directory,configurations,true,true);
+    }
+}
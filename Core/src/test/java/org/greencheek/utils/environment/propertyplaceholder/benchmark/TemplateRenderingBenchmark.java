@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.benchmark;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolver;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares rendering a large configuration file template by resolving it to a String and writing it, against
+ * streaming the resolution directly to the Writer.
+ */
+public class TemplateRenderingBenchmark {
+
+    /**
+     * Writer that discards its output
+     */
+    private static class NullWriter extends Writer {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) {
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) {
+        final Map<String,String> map = new HashMap<String,String>();
+        map.put("domain","example.com");
+        map.put("upstream.host","app.${domain}");
+        map.put("upstream.port","8080");
+        map.put("log.dir","/var/log/nginx/${domain}");
+
+        StringBuilder template = new StringBuilder();
+        for(int i=0;i<5000;i++) {
+            map.put("location." + i,"/service/" + i);
+            map.put("proxy." + i,"http://${upstream.host}:${upstream.port}/${location." + i + "}");
+            template.append("location ${location.").append(i).append("} {\n")
+                    .append("    proxy_pass ${proxy.").append(i).append("};\n")
+                    .append("    access_log ${log.dir}/").append(i).append(".log;\n")
+                    .append("}\n");
+        }
+        map.put("template",template.toString());
+
+        final VariablePlaceholderValueResolver resolver = new VariablePlaceholderValueResolver(false,false);
+        final Writer writer = new NullWriter();
+        BenchmarkRunner runner = new BenchmarkRunner(20, 100);
+
+        runner.run("resolve to String, then write", new BenchmarkRunner.Operation() {
+            public Object run() {
+                try {
+                    writer.write(resolver.resolvedPropertyValue(map,"template",false));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return writer;
+            }
+        });
+        runner.run("stream to Writer", new BenchmarkRunner.Operation() {
+            public Object run() {
+                try {
+                    resolver.resolvePropertyValue(map,"template",false,writer);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return writer;
+            }
+        });
+    }
+}
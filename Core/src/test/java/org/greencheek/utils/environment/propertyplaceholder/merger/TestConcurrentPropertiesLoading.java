@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.Resource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ResourceLoader;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class TestConcurrentPropertiesLoading {
+
+    /**
+     * Waits until the expected number of files are being looked for at the same time
+     */
+    private static class WaitingResourceLoader implements ResourceLoader {
+        private final ResourceLoader loader;
+        private final CountDownLatch latch;
+        private final AtomicBoolean timedOut;
+
+        WaitingResourceLoader(ResourceLoader loader, CountDownLatch latch, AtomicBoolean timedOut) {
+            this.loader = loader;
+            this.latch = latch;
+            this.timedOut = timedOut;
+        }
+
+        @Override
+        public Resource getFile(String resource) {
+            latch.countDown();
+            try {
+                if(!latch.await(2, TimeUnit.SECONDS)) timedOut.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loader.getFile(resource);
+        }
+
+        @Override
+        public String getBaseLocation() {
+            return loader.getBaseLocation();
+        }
+    }
+
+    private static PropertiesMergerBuilder builder(ResourceLoader configuration, ResourceLoader overrides) {
+        return new EnvironmentSpecificPropertiesMergerBuilder(configuration)
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"TARGET_PLATFORM"})
+                .setNameOfDefaultPropertiesFile("environment")
+                .setResourceLoaderForOperationalOverrides(overrides)
+                .setRelativeLocationOfFilesOverridingDefaultProperties("environments")
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "production";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    private static PropertiesMergerBuilder builder() {
+        return builder(new ClassPathResourceLoader("/overrides_testing/config"),
+                       new ClassPathResourceLoader("/overrides_testing/config/platform_opsoverrides/config"));
+    }
+
+    @Test
+    public void testConcurrentLoadingMergesInTheSameOrder() {
+        Properties serial = builder().build().getMergedProperties();
+        Properties concurrent = builder().setLoadingPropertiesConcurrently(true).build().getMergedProperties();
+
+        assertEquals(serial,concurrent);
+        assertEquals("override_production",concurrent.getProperty("override_platform"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Properties withExecutor = builder().setLoadingPropertiesConcurrently(true)
+                    .setExecutorForLoadingProperties(executor).build().getMergedProperties();
+            assertEquals(serial,withExecutor);
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAllFilesAreLookedForAtTheSameTime() {
+        // the default and environment file, from both the configuration and operational overrides locations
+        CountDownLatch latch = new CountDownLatch(4);
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+
+        PropertiesMerger merger = builder(
+                new WaitingResourceLoader(new ClassPathResourceLoader("/overrides_testing/config"),latch,timedOut),
+                new WaitingResourceLoader(new ClassPathResourceLoader("/overrides_testing/config/platform_opsoverrides/config"),latch,timedOut))
+                .setLoadingPropertiesConcurrently(true).build();
+
+        assertFalse(timedOut.get());
+        assertTrue(latch.getCount()==0);
+        assertEquals(builder().build().getMergedProperties(),merger.getMergedProperties());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+
+public class TestEnvironmentVariantsMerger {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("TestEnvironmentVariantsMerger","");
+        directory.delete();
+        new File(directory,"environments").mkdirs();
+        write("default.properties","host=localhost\nport=8080\ntype=none\n");
+        write("environments/dev.properties","host=dev.example.com\n");
+        write("environments/prod.properties","host=prod.example.com\n");
+        write("environments/dev.web.properties","type=web\n");
+        write("environments/prod.web.properties","type=web\nport=80\n");
+        write("environments/prod.batch.properties","type=batch\n");
+    }
+
+    @After
+    public void tearDown() {
+        File environments = new File(directory,"environments");
+        for(File file : environments.listFiles()) file.delete();
+        environments.delete();
+        new File(directory,"default.properties").delete();
+        directory.delete();
+    }
+
+    private void write(String name, String contents) throws IOException {
+        OutputStream out = new FileOutputStream(new File(directory,name));
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Counts the files that are looked for
+     */
+    private static class CountingResourceLoader extends FileSystemResourceLoader {
+        private final List<String> files = Collections.synchronizedList(new ArrayList<String>());
+
+        CountingResourceLoader(String location) {
+            super(location);
+        }
+
+        @Override
+        public Resource getFile(String resource) {
+            files.add(resource);
+            return super.getFile(resource);
+        }
+    }
+
+    private PropertiesMergerBuilder builder(CountingResourceLoader loader) {
+        return new EnvironmentSpecificPropertiesMergerBuilder(loader)
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV","ENV,SERVER_TYPE"});
+    }
+
+    private static Map<String,String> variables(String env, String serverType) {
+        Map<String,String> variables = new HashMap<String,String>();
+        if(env!=null) variables.put("ENV",env);
+        if(serverType!=null) variables.put("SERVER_TYPE",serverType);
+        return variables;
+    }
+
+    @Test
+    public void testVariantsAreTheSameAsMergingEachEnvironment() {
+        List<Map<String,String>> variants = new ArrayList<Map<String,String>>();
+        for(String env : new String[] {"dev","prod",null}) {
+            for(String serverType : new String[] {"web","batch",null}) {
+                variants.add(variables(env,serverType));
+            }
+        }
+
+        CountingResourceLoader loader = new CountingResourceLoader(directory.getAbsolutePath());
+        EnvironmentVariantsMerger variantsMerger = new EnvironmentVariantsMerger(builder(loader));
+        Map<Map<String,String>,PropertiesMerger> mergers = variantsMerger.merge(variants);
+        assertEquals(new ArrayList<Map<String,String>>(variants),new ArrayList<Map<String,String>>(mergers.keySet()));
+
+        for(final Map<String,String> variables : variants) {
+            PropertiesMerger merger = new EnvironmentSpecificPropertiesMerger(
+                    builder(new CountingResourceLoader(directory.getAbsolutePath()))
+                    .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                        @Override
+                        public String getProperty(String property, String defaultValue) {
+                            return variables.containsKey(property) ? variables.get(property) : defaultValue;
+                        }
+
+                        @Override
+                        public String getEnv(String property, String defaultValue) {
+                            return defaultValue;
+                        }
+                    }));
+            assertEquals(merger.getMergedProperties(),mergers.get(variables).getMergedProperties());
+        }
+
+        assertEquals("80",mergers.get(variables("prod","web")).getMergedProperties().getProperty("port"));
+        assertEquals("batch",mergers.get(variables("prod","batch")).getMergedProperties().getProperty("type"));
+        assertEquals("dev.example.com",mergers.get(variables("dev",null)).getMergedProperties().getProperty("host"));
+        assertEquals("localhost",mergers.get(variables(null,"web")).getMergedProperties().getProperty("host"));
+
+        // default, dev, prod, and the 4 combinations of dev and prod with web and batch (dev.batch does not exist)
+        assertEquals(7,variantsMerger.getNumberOfFilesRead());
+        assertEquals(7,loader.files.size());
+        assertEquals(7,new HashSet<String>(loader.files).size());
+    }
+
+    @Test
+    public void testFilesAreNotReadAgainForLaterVariants() {
+        CountingResourceLoader loader = new CountingResourceLoader(directory.getAbsolutePath());
+        EnvironmentVariantsMerger variantsMerger = new EnvironmentVariantsMerger(builder(loader).setLoadingPropertiesConcurrently(true));
+
+        variantsMerger.merge(variables("prod","web"));
+        assertEquals(3,loader.files.size());
+        variantsMerger.merge(variables("prod","batch"));
+        // the files are looked for concurrently, so in any order
+        assertEquals(new HashSet<String>(Arrays.asList("default.properties","environments/prod.properties",
+                                                       "environments/prod.web.properties",
+                                                       "environments/prod.batch.properties")),
+                     new HashSet<String>(loader.files));
+        assertEquals(4,loader.files.size());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.exception.NoMatchingPropertyException;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshotWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
+
+public class TestLayeredProperties {
+
+    private static Map<String,String> map(String... keysAndValues) {
+        Map<String,String> p = new HashMap<String,String>();
+        for(int i=0;i<keysAndValues.length;i+=2) {
+            p.put(keysAndValues[i],keysAndValues[i+1]);
+        }
+        return p;
+    }
+
+    private static PropertiesSnapshot snapshot(String... keysAndValues) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PropertiesSnapshotWriter.write(map(keysAndValues),out);
+        return PropertiesSnapshot.wrap(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static Properties properties(String... keysAndValues) {
+        Properties p = new Properties();
+        p.putAll(map(keysAndValues));
+        return p;
+    }
+
+    @Test
+    public void testHighestLayerWins() {
+        LayeredProperties layers = new LayeredProperties(false);
+        layers.addLayer("default",map("a","default","b","default","c","default"));
+        layers.addLayer("dev",map("b","dev","c","dev"));
+        layers.addLayer("ops",map("c","ops"));
+
+        assertEquals("default",layers.getProperty("a"));
+        assertEquals("dev",layers.getProperty("b"));
+        assertEquals("ops",layers.getProperty("c"));
+        assertNull(layers.getProperty("d"));
+
+        assertEquals("default",layers.getNameOfWinningLayer("a"));
+        assertEquals("dev",layers.getNameOfWinningLayer("b"));
+        assertEquals("ops",layers.getNameOfWinningLayer("c"));
+        assertNull(layers.getNameOfWinningLayer("d"));
+
+        Properties flattened = layers.flatten();
+        assertEquals(properties("a","default","b","dev","c","ops"),flattened);
+        assertEquals(EnvironmentSpecificPropertiesMerger.mergeProperties(
+                EnvironmentSpecificPropertiesMerger.mergeProperties(properties("a","default","b","default","c","default"),
+                                                                    properties("b","dev","c","dev"),false),
+                properties("c","ops"),false),flattened);
+    }
+
+    @Test
+    public void testPropertyWithoutDefaultIsAddedWhenNotStrict() {
+        LayeredProperties layers = new LayeredProperties(false);
+        layers.addLayer("default",map("a","default"));
+        layers.addLayer("dev",map("new","dev"));
+        layers.addLayer("ops",map("new","ops"));
+
+        assertEquals("ops",layers.getProperty("new"));
+        assertEquals(2,layers.size());
+        assertEquals(3,layers.getNumberOfLayers());
+    }
+
+    @Test(expected = NoMatchingPropertyException.class)
+    public void testPropertyWithoutDefaultThrowsWhenStrict() {
+        LayeredProperties layers = new LayeredProperties(true);
+        layers.addLayer("default",map("a","default"));
+        layers.addLayer("dev",map("a","dev"));
+        layers.addLayer("ops",map("new","ops"));
+    }
+
+    @Test
+    public void testReplacingALayerIsTheSameAsMergingAgain() {
+        LayeredProperties layers = new LayeredProperties(false);
+        layers.addLayer("default",map("a","default","b","default","c","default"));
+        layers.addLayer("dev",map("b","dev","c","dev"));
+        layers.addLayer("ops",map("c","ops"));
+
+        LayeredProperties copied = layers.copyLayers();
+        assertEquals(new HashSet<String>(Arrays.asList("a","b","c")),
+                     layers.replaceLayer(1,map("a","dev2","c","dev2")));
+
+        LayeredProperties merged = new LayeredProperties(false);
+        merged.addLayer("default",map("a","default","b","default","c","default"));
+        merged.addLayer("dev",map("a","dev2","c","dev2"));
+        merged.addLayer("ops",map("c","ops"));
+        assertEquals(merged.flatten(),layers.flatten());
+        assertEquals("dev",layers.getNameOfWinningLayer("a"));
+        assertEquals("default",layers.getNameOfWinningLayer("b"));
+
+        // the copied layers are unchanged
+        assertEquals("default",copied.getProperty("a"));
+        assertEquals("dev",copied.getProperty("b"));
+        assertEquals("ops",copied.getProperty("c"));
+
+        layers.replaceLayer(0,map("a","default2","b","default2","c","default2","d","default2"));
+        assertEquals(properties("a","dev2","b","default2","c","ops","d","default2"),layers.flatten());
+        assertEquals(4,layers.size());
+    }
+
+    @Test
+    public void testLayersCopiedWithoutTheIndexLookUpTheWinningLayer() {
+        LayeredProperties layers = new LayeredProperties(true);
+        layers.addLayer("default",map("a","default","b","default","c","default"));
+        layers.addLayer("dev",map("b","dev","c","dev"));
+        layers.addLayer("ops",map("c","ops"));
+
+        LayeredProperties replaced = layers.copyLayers();
+        assertEquals(new HashSet<String>(Arrays.asList("a","b","c")),
+                     replaced.replaceLayer(1,map("a","dev2","c","dev2")));
+        assertEquals("dev2",replaced.getProperty("a"));
+        assertEquals(1,replaced.getWinningLayer("a"));
+        assertEquals("default",replaced.getProperty("b"));
+        assertEquals("ops",replaced.getNameOfWinningLayer("c"));
+        assertEquals(-1,replaced.getWinningLayer("d"));
+        assertNull(replaced.getProperty("d"));
+        assertEquals("default",layers.getProperty("a"));
+
+        try {
+            replaced.flatten();
+            fail("The layers were copied without the index");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            replaced.copyLayers().replaceLayer(0,map("a","default"));
+            fail("b is no longer defined by the defaults");
+        } catch (NoMatchingPropertyException e) {
+        }
+    }
+
+    @Test
+    public void testRemovingADefaultThatIsOverriddenThrowsWhenStrict() {
+        LayeredProperties layers = new LayeredProperties(true);
+        layers.addLayer("default",map("a","default","b","default"));
+        layers.addLayer("dev",map("b","dev"));
+
+        layers.copyLayers().replaceLayer(0,map("b","default"));
+        try {
+            layers.copyLayers().replaceLayer(0,map("a","default"));
+            fail("b is no longer defined by the defaults");
+        } catch (NoMatchingPropertyException e) {
+        }
+        try {
+            layers.copyLayers().replaceLayer(1,map("c","dev"));
+            fail("c is not defined by the defaults");
+        } catch (NoMatchingPropertyException e) {
+        }
+
+        LayeredProperties lenient = new LayeredProperties(false);
+        lenient.addLayer("default",map("a","default","b","default"));
+        lenient.addLayer("dev",map("b","dev"));
+        lenient.replaceLayer(1,new HashMap<String,String>());
+        lenient.replaceLayer(0,map("a","default"));
+        assertNull(lenient.getProperty("b"));
+        assertEquals(1,lenient.size());
+    }
+
+    @Test
+    public void testSnapshotDefaultsAreLookedUpInTheSnapshot() throws IOException {
+        PropertiesSnapshot defaults = snapshot("a","default","b","default","c","default");
+        LayeredProperties layers = new LayeredProperties(false);
+        layers.addLayer("default",defaults);
+        assertSame(defaults,layers.flattenToMap());
+        assertEquals(3,layers.size());
+        assertEquals(3,layers.getSources().size());
+        assertEquals("default",layers.getSources().getSourceOfProperty("a"));
+
+        layers.addLayer("dev",map("b","dev","c","dev","d","dev"));
+        layers.addLayer("ops",map("c","ops"));
+        assertEquals("default",layers.getProperty("a"));
+        assertEquals("dev",layers.getNameOfWinningLayer("b"));
+        assertEquals("ops",layers.getProperty("c"));
+        assertEquals(1,layers.getWinningLayer("d"));
+        assertEquals(-1,layers.getWinningLayer("e"));
+        assertEquals(4,layers.size());
+
+        Map<String,String> merged = map("a","default","b","dev","c","ops","d","dev");
+        assertEquals(merged,layers.flattenToMap());
+        assertEquals(layers.flattenToMap(),merged);
+        assertEquals(properties("a","default","b","dev","c","ops","d","dev"),layers.flatten());
+
+        PropertySources sources = layers.getSources();
+        assertEquals(4,sources.size());
+        for(String key : merged.keySet()) {
+            assertEquals(layers.getNameOfWinningLayer(key),sources.getSourceOfProperty(key));
+        }
+        assertNull(sources.getSourceOfProperty("e"));
+
+        // b falls back to the snapshot, d is removed, and e is added
+        Map<String,Integer> changed = new HashMap<String,Integer>();
+        changed.put("b",0);
+        changed.put("d",-1);
+        changed.put("e",1);
+        PropertySources updated = sources.update(changed);
+        assertEquals("default",updated.getSourceOfProperty("b"));
+        assertNull(updated.getSourceOfProperty("d"));
+        assertEquals("dev",updated.getSourceOfProperty("e"));
+        assertEquals(4,updated.size());
+    }
+
+    @Test(expected = NoMatchingPropertyException.class)
+    public void testPropertyWithoutSnapshotDefaultThrowsWhenStrict() throws IOException {
+        LayeredProperties layers = new LayeredProperties(true);
+        layers.addLayer("default",snapshot("a","default"));
+        layers.addLayer("dev",map("a","dev"));
+        layers.addLayer("ops",map("new","ops"));
+    }
+}
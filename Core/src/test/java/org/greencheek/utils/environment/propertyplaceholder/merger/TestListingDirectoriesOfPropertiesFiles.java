@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static junit.framework.Assert.*;
+
+public class TestListingDirectoriesOfPropertiesFiles {
+
+    private File directory;
+    private File overrides;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("TestListingDirectories","");
+        directory.delete();
+        new File(directory,"config/environments").mkdirs();
+        new File(directory,"overrides/environments").mkdirs();
+        overrides = new File(directory,"overrides");
+        write("config/default.properties","message=hello\nname=default\nhost=localhost\n");
+        write("config/environments/production.properties","message=production\n");
+        write("overrides/environments/production.properties","host=production.example.com\n");
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files!=null) for(File child : files) delete(child);
+        file.delete();
+    }
+
+    private void write(String name, String contents) throws IOException {
+        OutputStream out = new FileOutputStream(new File(directory,name));
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private PropertiesMergerBuilder builder() {
+        return new EnvironmentSpecificPropertiesMergerBuilder(new FileSystemResourceLoader(new File(directory,"config").getAbsolutePath()))
+                .setResourceLoaderForOperationalOverrides(new FileSystemResourceLoader(overrides.getAbsolutePath()))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV","ENV,SERVER_TYPE"})
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return property.equals("ENV") ? "production" : "web";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testListingMergesTheSameProperties() {
+        Properties listed = builder().setListingDirectoriesOfPropertiesFiles(true).buildProperties();
+        assertEquals(builder().buildProperties(),listed);
+        assertEquals("production",listed.getProperty("message"));
+        assertEquals("production.example.com",listed.getProperty("host"));
+        assertEquals("default",listed.getProperty("name"));
+    }
+
+    @Test
+    public void testReloadListsTheDirectoriesAgain() throws IOException {
+        EnvironmentSpecificPropertiesMerger merger = (EnvironmentSpecificPropertiesMerger)builder()
+                .setListingDirectoriesOfPropertiesFiles(true).build();
+        assertEquals("production",merger.getMergedProperties().getProperty("message"));
+
+        write("config/environments/production.web.properties","message=web\n");
+        assertEquals("web",merger.reload().getMergedProperties().getProperty("message"));
+    }
+
+    @Test
+    public void testADirectoryThatCannotBeListedFailsAReload() {
+        // a directory whose name is too long exists as far as the filesystem can tell, but cannot be listed
+        char[] name = new char[300];
+        Arrays.fill(name,'x');
+        overrides = new File(directory,new String(name));
+
+        EnvironmentSpecificPropertiesMerger merger = (EnvironmentSpecificPropertiesMerger)builder()
+                .setListingDirectoriesOfPropertiesFiles(true).build();
+        assertEquals("localhost",merger.getMergedProperties().getProperty("host"));
+        try {
+            merger.reload();
+            fail("the overrides directory cannot be listed");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
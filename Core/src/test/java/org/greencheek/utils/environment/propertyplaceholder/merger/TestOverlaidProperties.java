@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshot;
+import org.greencheek.utils.environment.propertyplaceholder.snapshot.PropertiesSnapshotWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+public class TestOverlaidProperties {
+
+    private static Map<String,String> properties(int size) {
+        Map<String,String> properties = new HashMap<String,String>();
+        for(int i=0;i<size;i++) {
+            properties.put("key" + i,"value" + i);
+        }
+        return properties;
+    }
+
+    /**
+     * Changes random keys of the expected properties, and overlays the same changes on the merged properties
+     */
+    private static Map<String,String> change(Random random, Map<String,String> expected, Map<String,String> merged) {
+        Map<String,String> changed = new HashMap<String,String>();
+        for(int i=0;i<10;i++) {
+            String key = "key" + random.nextInt(1200);
+            String value = random.nextBoolean() ? null : "changed" + random.nextInt();
+            changed.put(key,value);
+            if(value == null) expected.remove(key);
+            else expected.put(key,value);
+        }
+        return OverlaidProperties.overlay(merged,changed);
+    }
+
+    @Test
+    public void testOverlaidPropertiesAreTheSameAsChangingACopy() {
+        Map<String,String> expected = properties(1000);
+        Map<String,String> merged = properties(1000);
+        Random random = new Random(21);
+        boolean compacted = false;
+        for(int round=0;round<50;round++) {
+            merged = change(random,expected,merged);
+            compacted |= !(merged instanceof OverlaidProperties);
+            assertEquals(expected.size(),merged.size());
+            assertEquals(expected,merged);
+            assertEquals(merged,expected);
+            assertEquals(expected.hashCode(),merged.hashCode());
+            for(int i=0;i<1200;i++) {
+                assertEquals(expected.get("key" + i),merged.get("key" + i));
+                assertEquals(expected.containsKey("key" + i),merged.containsKey("key" + i));
+            }
+        }
+        assertTrue("the overlay should have been copied into a new base",compacted);
+    }
+
+    @Test
+    public void testChangesAreNotCopiedIntoASnapshot() throws IOException {
+        Map<String,String> expected = properties(1000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PropertiesSnapshotWriter.write(expected,out);
+        Map<String,String> merged = PropertiesSnapshot.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        Random random = new Random(23);
+        for(int round=0;round<50;round++) {
+            merged = change(random,expected,merged);
+            assertTrue(merged instanceof OverlaidProperties);
+        }
+        assertEquals(expected,merged);
+    }
+
+    @Test
+    public void testPreviousPropertiesAreNotChanged() {
+        Map<String,String> previous = properties(100);
+        Map<String,String> changed = new HashMap<String,String>();
+        changed.put("key1",null);
+        changed.put("key100","value100");
+        Map<String,String> merged = OverlaidProperties.overlay(previous,changed);
+
+        assertEquals(properties(100),previous);
+        assertNull(merged.get("key1"));
+        assertEquals("value100",merged.get("key100"));
+        assertEquals(100,merged.size());
+        try {
+            merged.entrySet().iterator().remove();
+            fail("the merged properties are read only");
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+public class TestPropertiesParser {
+
+    private static final byte[] ALPHABET = {' ','\t','\f','\r','\n','\\','\\','#','!','=',':','a','b','u','n','t','0','F',(byte)0xe9};
+
+    private static Map<String,String> parse(byte[] bytes) throws IOException {
+        return PropertiesParser.parse(new ByteArrayInputStream(bytes),new HashMap<String,String>());
+    }
+
+    private static Map<String,String> load(byte[] bytes) throws IOException {
+        Properties p = new Properties();
+        p.load(new ByteArrayInputStream(bytes));
+        return new HashMap(p);
+    }
+
+    @Test
+    public void testPropertiesSyntax() throws IOException {
+        String file = "# comment\n" +
+                      "! comment\n" +
+                      "  a = 1\n" +
+                      "b:2\n" +
+                      "c 3\n" +
+                      "d\n" +
+                      "e = multi \\\n" +
+                      "     line \\\r\n" +
+                      "     value\n" +
+                      "f = tab\\tnewline\\nunicode\\u00e9\\u0041\n" +
+                      "key\\ with\\=separators = value\r" +
+                      "g = trailing  \n" +
+                      "h = \\\n";
+
+        Map<String,String> parsed = parse(file.getBytes("ISO-8859-1"));
+        assertEquals(load(file.getBytes("ISO-8859-1")),parsed);
+        assertEquals("1",parsed.get("a"));
+        assertEquals("2",parsed.get("b"));
+        assertEquals("3",parsed.get("c"));
+        assertEquals("",parsed.get("d"));
+        assertEquals("multi line value",parsed.get("e"));
+        assertEquals("tab\tnewline\nunicodeéA",parsed.get("f"));
+        assertEquals("value",parsed.get("key with=separators"));
+        assertEquals("trailing  ",parsed.get("g"));
+        assertEquals("",parsed.get("h"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedUnicodeEscape() throws IOException {
+        parse("a=\\u00g1".getBytes("ISO-8859-1"));
+    }
+
+    @Test
+    public void testParsingIsTheSameAsPropertiesLoad() throws IOException {
+        Random random = new Random(20121018);
+        for(int i=0;i<50000;i++) {
+            byte[] bytes = new byte[random.nextInt(48)];
+            for(int j=0;j<bytes.length;j++) {
+                bytes[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+
+            Map<String,String> expected;
+            try {
+                expected = load(bytes);
+            } catch (IllegalArgumentException e) {
+                try {
+                    parse(bytes);
+                    fail("Expected IllegalArgumentException for: " + new String(bytes,"ISO-8859-1"));
+                } catch (IllegalArgumentException expectedException) {
+                }
+                continue;
+            }
+
+            assertEquals(new String(bytes,"ISO-8859-1"),expected,parse(bytes));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+            direct.put((byte)'\n').put(bytes).flip();
+            direct.get();
+            assertEquals(new String(bytes,"ISO-8859-1"),expected,
+                         PropertiesParser.parse(direct,new HashMap<String,String>()));
+        }
+    }
+
+    @Test
+    public void testParsingInChunksIsTheSameAsPropertiesLoad() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random random = new Random(20121019);
+            for(int i=0;i<20000;i++) {
+                byte[] bytes = new byte[random.nextInt(200)];
+                for(int j=0;j<bytes.length;j++) {
+                    bytes[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+                }
+
+                Map<String,String> expected;
+                try {
+                    expected = load(bytes);
+                } catch (IllegalArgumentException e) {
+                    try {
+                        PropertiesParser.parse(ByteBuffer.wrap(bytes),new HashMap<String,String>(),pool,8);
+                        fail("Expected IllegalArgumentException for: " + new String(bytes,"ISO-8859-1"));
+                    } catch (IllegalArgumentException expectedException) {
+                    }
+                    continue;
+                }
+
+                int chunks = 2 + random.nextInt(7);
+                assertEquals(new String(bytes,"ISO-8859-1"),expected,
+                             PropertiesParser.parse(ByteBuffer.wrap(bytes),new HashMap<String,String>(),pool,chunks));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testChunksStartAtTheStartOfLogicalLines() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap("a=1\\\nb=2\\\\\nc=3\\\r\nd=4\r\ne=5".getBytes("ISO-8859-1"));
+        assertEquals(11,PropertiesParser.indexOfStartOfLogicalLine(buffer,0,buffer.limit()));
+        assertEquals(22,PropertiesParser.indexOfStartOfLogicalLine(buffer,12,buffer.limit()));
+        assertEquals(buffer.limit(),PropertiesParser.indexOfStartOfLogicalLine(buffer,22,buffer.limit()));
+    }
+}
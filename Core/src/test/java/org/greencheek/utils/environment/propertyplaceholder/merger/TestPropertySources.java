@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class TestPropertySources {
+
+    @Test
+    public void testSourceOfEachPropertyIsTheFileThatSuppliedIt() {
+        PropertiesMerger merger = new EnvironmentSpecificPropertiesMergerBuilder(new ClassPathResourceLoader("/overrides_testing/config"))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"TARGET_PLATFORM"})
+                .setNameOfDefaultPropertiesFile("environment")
+                .setResourceLoaderForOperationalOverrides(new ClassPathResourceLoader("/overrides_testing/config/platform_opsoverrides/config"))
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "production";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                }).build();
+
+        assertTrue(merger.getSourceOfProperty("default").endsWith("/overrides_testing/config/environment.properties"));
+        assertTrue(merger.getSourceOfProperty("platform").endsWith("/overrides_testing/config/environments/production.properties"));
+        assertTrue(merger.getSourceOfProperty("override").endsWith("/platform_opsoverrides/config/environment.properties"));
+        assertTrue(merger.getSourceOfProperty("override_platform").endsWith("/platform_opsoverrides/config/environments/production.properties"));
+        assertNull(merger.getSourceOfProperty("missing"));
+        assertNull(merger.getSourceOfProperty(null));
+
+        PropertySources sources = merger.getSourcesOfProperties();
+        assertEquals(4,sources.size());
+        assertEquals(4,sources.getNamesOfSources().size());
+        assertEquals(merger.getSourceOfProperty("platform"),sources.getNamesOfSources().get(1));
+    }
+
+    @Test
+    public void testSourcesAreTheWinningLayers() {
+        Map<String,String> defaults = new HashMap<String,String>();
+        Map<String,String> dev = new HashMap<String,String>();
+        for(int i=0;i<10000;i++) {
+            defaults.put("key" + i,"default");
+            if(i % 3 == 0) dev.put("key" + i,"dev");
+        }
+        LayeredProperties layers = new LayeredProperties(true);
+        layers.addLayer("default",defaults);
+        layers.addLayer("dev",dev);
+
+        PropertySources sources = layers.getSources();
+        assertEquals(10000,sources.size());
+        for(int i=0;i<10000;i++) {
+            assertEquals(layers.getNameOfWinningLayer("key" + i),sources.getSourceOfProperty("key" + i));
+        }
+        assertNull(sources.getSourceOfProperty("key10000"));
+    }
+
+    @Test
+    public void testKeysWithTheSameHashCode() {
+        // "Aa" and "BB" have the same hash code
+        Map<String,String> defaults = new HashMap<String,String>();
+        Map<String,String> dev = new HashMap<String,String>();
+        for(String key : new String[] {"AaAa","AaBB","BBAa","BBBB","Aa","BB"}) {
+            defaults.put(key,"default");
+        }
+        dev.put("AaBB","dev");
+        dev.put("BB","dev");
+        LayeredProperties layers = new LayeredProperties(true);
+        layers.addLayer("default",defaults);
+        layers.addLayer("dev",dev);
+
+        PropertySources sources = layers.getSources();
+        for(String key : defaults.keySet()) {
+            assertEquals(key,layers.getNameOfWinningLayer(key),sources.getSourceOfProperty(key));
+        }
+        assertNull(sources.getSourceOfProperty("AaAaAa"));
+        assertNull(sources.getSourceOfProperty("C#"));
+    }
+
+    @Test
+    public void testUpdatedSourcesAreTheSameAsOrderingAgain() {
+        Map<String,String> defaults = new HashMap<String,String>();
+        Map<String,String> dev = new HashMap<String,String>();
+        for(int i=0;i<1000;i++) {
+            defaults.put("key" + i,"default");
+            if(i % 3 == 0) dev.put("key" + i,"dev");
+        }
+        for(String key : new String[] {"AaAa","AaBB","BBAa","Aa"}) {
+            defaults.put(key,"default");
+        }
+        LayeredProperties layers = new LayeredProperties(false);
+        layers.addLayer("default",defaults);
+        layers.addLayer("dev",dev);
+        PropertySources sources = layers.getSources();
+
+        // only the sources of existing keys change, so the keys are shared
+        Map<String,Integer> changed = new HashMap<String,Integer>();
+        changed.put("key1",1);
+        changed.put("key3",0);
+        PropertySources updated = sources.update(changed);
+        assertEquals("dev",updated.getSourceOfProperty("key1"));
+        assertEquals("default",updated.getSourceOfProperty("key3"));
+        assertEquals("default",sources.getSourceOfProperty("key1"));
+
+        // keys are added, including keys with the same hash code as existing keys, and removed
+        Map<String,String> defaults2 = new HashMap<String,String>(defaults);
+        Map<String,String> dev2 = new HashMap<String,String>(dev);
+        changed.clear();
+        for(String key : new String[] {"BBBB","BB","key1000","key1001"}) {
+            defaults2.put(key,"default");
+            changed.put(key,0);
+        }
+        dev2.put("key2","dev");
+        changed.put("key2",1);
+        for(String key : new String[] {"AaBB","key4","key5"}) {
+            defaults2.remove(key);
+            dev2.remove(key);
+            changed.put(key,-1);
+        }
+        LayeredProperties merged = new LayeredProperties(false);
+        merged.addLayer("default",defaults2);
+        merged.addLayer("dev",dev2);
+
+        updated = sources.update(changed);
+        assertEquals(merged.size(),updated.size());
+        for(String key : defaults2.keySet()) {
+            assertEquals(key,merged.getNameOfWinningLayer(key),updated.getSourceOfProperty(key));
+        }
+        for(String key : new String[] {"AaBB","key4","key5"}) {
+            assertNull(updated.getSourceOfProperty(key));
+            assertEquals("default",sources.getSourceOfProperty(key));
+        }
+        assertNull(sources.getSourceOfProperty("BBBB"));
+    }
+
+    @Test
+    public void testRepeatedUpdatesAreTheSameAsOrderingAgain() {
+        Map<String,String> defaults = new HashMap<String,String>();
+        Map<String,String> dev = new HashMap<String,String>();
+        for(int i=0;i<1000;i++) {
+            defaults.put("key" + i,"default");
+            if(i % 3 == 0) dev.put("key" + i,"dev");
+        }
+        LayeredProperties layers = new LayeredProperties(false);
+        layers.addLayer("default",defaults);
+        layers.addLayer("dev",dev);
+        PropertySources sources = layers.getSources();
+
+        // enough keys change that the changes are ordered into the arrays several times
+        Random random = new Random(17);
+        for(int round=0;round<30;round++) {
+            Map<String,Integer> changed = new HashMap<String,Integer>();
+            for(int i=0;i<20;i++) {
+                String key = "key" + random.nextInt(1200);
+                switch(random.nextInt(3)) {
+                    case 0:
+                        defaults.put(key,"default");
+                        dev.put(key,"dev");
+                        break;
+                    case 1:
+                        defaults.put(key,"default");
+                        dev.remove(key);
+                        break;
+                    default:
+                        defaults.remove(key);
+                        dev.remove(key);
+                }
+                changed.put(key,-1);
+            }
+            LayeredProperties merged = new LayeredProperties(false);
+            merged.addLayer("default",defaults);
+            merged.addLayer("dev",dev);
+            for(String key : changed.keySet()) {
+                changed.put(key,merged.getWinningLayer(key));
+            }
+
+            sources = sources.update(changed);
+            assertEquals(merged.size(),sources.size());
+            for(int i=0;i<1200;i++) {
+                assertEquals(merged.getNameOfWinningLayer("key" + i),sources.getSourceOfProperty("key" + i));
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+import static junit.framework.Assert.*;
+
+public class TestReadOnlyMergedProperties {
+
+    private PropertiesMergerBuilder builder() {
+        return new EnvironmentSpecificPropertiesMergerBuilder(new ClassPathResourceLoader("/config"))
+                .setLocationForLoadingOperationalOverrides("classpath:/nonexistent");
+    }
+
+    @Test
+    public void testReadOnlyViewsAreShared() {
+        PropertiesMerger merger = builder().setReturningReadOnlyMergedProperties(true).build();
+
+        Properties properties = merger.getMergedProperties();
+        assertSame(properties,merger.getMergedProperties());
+        assertSame(merger.getMergedPropertiesAsMap(),merger.getMergedPropertiesAsMap());
+
+        Properties copied = builder().build().getMergedProperties();
+        assertEquals(copied,properties);
+        assertEquals(new HashMap(copied),merger.getMergedPropertiesAsMap());
+        assertEquals("default",properties.getProperty("default"));
+        assertEquals("x",properties.getProperty("missing","x"));
+        assertEquals(copied.stringPropertyNames(),properties.stringPropertyNames());
+    }
+
+    @Test
+    public void testReadOnlyViewsCannotBeModified() {
+        PropertiesMerger merger = builder().setReturningReadOnlyMergedProperties(true).build();
+        Properties properties = merger.getMergedProperties();
+        Map<String,String> map = merger.getMergedPropertiesAsMap();
+
+        try {
+            properties.setProperty("default","changed");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            properties.keySet().remove("default");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            map.put("default","changed");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+        }
+        assertEquals("default",properties.getProperty("default"));
+    }
+
+    @Test
+    public void testInheritedReadersSeeTheProperties() throws Exception {
+        Properties copied = builder().build().getMergedProperties();
+        Properties properties = builder().setReturningReadOnlyMergedProperties(true).build().getMergedProperties();
+
+        assertEquals(properties,copied);
+        assertEquals(copied,properties);
+        assertEquals(copied.hashCode(),properties.hashCode());
+        assertEquals(new HashMap(copied).toString(),properties.toString());
+
+        final Map<Object,Object> visited = new HashMap<Object,Object>();
+        properties.forEach(new BiConsumer<Object,Object>() {
+            @Override
+            public void accept(Object key, Object value) {
+                visited.put(key,value);
+            }
+        });
+        assertEquals(new HashMap(copied),visited);
+
+        StringWriter stored = new StringWriter();
+        properties.store(stored,null);
+        Properties loaded = new Properties();
+        loaded.load(new StringReader(stored.toString()));
+        assertEquals(copied,loaded);
+
+        StringWriter listed = new StringWriter();
+        properties.list(new PrintWriter(listed));
+        assertTrue(listed.toString().contains("default=default"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(properties);
+        out.close();
+        Object deserialized = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(copied,deserialized);
+    }
+
+    @Test
+    public void testCopiesAreReturnedByDefault() {
+        PropertiesMerger merger = builder().build();
+        Properties properties = merger.getMergedProperties();
+        assertNotSame(properties,merger.getMergedProperties());
+
+        properties.setProperty("default","changed");
+        assertEquals("default",merger.getMergedProperties().getProperty("default"));
+    }
+}
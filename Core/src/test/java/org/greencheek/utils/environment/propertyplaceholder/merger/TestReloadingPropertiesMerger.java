@@ -0,0 +1,320 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class TestReloadingPropertiesMerger {
+
+    private File directory;
+    private ReloadingPropertiesMerger merger;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("TestReloadingPropertiesMerger","");
+        directory.delete();
+        new File(directory,"environments").mkdirs();
+        write("default.properties","host=localhost\nport=8080\n");
+        write("environments/production.properties","host=production.example.com\n");
+    }
+
+    @After
+    public void tearDown() {
+        if(merger!=null) merger.close();
+        for(File file : new File[] {new File(directory,"environments/production.properties"),
+                                    new File(directory,"environments"),
+                                    new File(directory,"default.properties"),
+                                    directory}) {
+            file.delete();
+        }
+    }
+
+    private void write(String name, String contents) throws IOException {
+        File file = new File(directory,name);
+        File temp = new File(directory,name + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        assertTrue(temp.renameTo(file));
+    }
+
+    private PropertiesMergerBuilder builder() {
+        return new EnvironmentSpecificPropertiesMergerBuilder(new FileSystemResourceLoader(directory.getAbsolutePath()))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV"})
+                .setStrictMergingOfProperties(true)
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "production";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    private static boolean waitFor(PropertiesMerger merger, String key, String value) throws InterruptedException {
+        for(int i=0;i<200;i++) {
+            if(value.equals(merger.getMergedProperties().getProperty(key))) return true;
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    @Test
+    public void testChangesAreReloaded() throws Exception {
+        merger = new ReloadingPropertiesMerger(builder());
+        assertEquals("production.example.com",merger.getMergedProperties().getProperty("host"));
+
+        write("environments/production.properties","host=production2.example.com\nport=9090\n");
+        assertTrue(waitFor(merger,"port","9090"));
+        assertEquals("production2.example.com",merger.getMergedPropertiesAsMap().get("host"));
+
+        write("default.properties","host=localhost\nport=8080\nname=app\n");
+        assertTrue(waitFor(merger,"name","app"));
+        assertEquals("9090",merger.getMergedProperties().getProperty("port"));
+    }
+
+    @Test
+    public void testPropertiesThatCannotBeMergedAreNotPublished() throws Exception {
+        merger = new ReloadingPropertiesMerger(builder());
+        Properties before = merger.getMergedProperties();
+
+        // strict merging fails, as timeout is not in the defaults
+        write("environments/production.properties","host=production2.example.com\ntimeout=10\n");
+        assertFalse(merger.reload());
+        assertEquals(before,merger.getMergedProperties());
+
+        write("environments/production.properties","host=production3.example.com\n");
+        assertTrue(waitFor(merger,"host","production3.example.com"));
+    }
+
+    @Test
+    public void testClosedMergerIsNotReloaded() throws Exception {
+        merger = new ReloadingPropertiesMerger(builder());
+        merger.close();
+
+        write("environments/production.properties","host=production2.example.com\n");
+        assertFalse(merger.reload());
+        Thread.sleep(500);
+        assertEquals("production.example.com",merger.getMergedProperties().getProperty("host"));
+    }
+
+    @Test
+    public void testReadOnlyPropertiesAreSharedUntilReloaded() throws Exception {
+        merger = new ReloadingPropertiesMerger(builder().setReturningReadOnlyMergedProperties(true));
+        Properties before = merger.getMergedProperties();
+        assertSame(before,merger.getMergedProperties());
+
+        assertTrue(merger.reload());
+        Properties after = merger.getMergedProperties();
+        assertNotSame(before,after);
+        assertEquals(before,after);
+        assertSame(after,merger.getMergedProperties());
+    }
+
+    /**
+     * Counts the files that are looked for
+     */
+    private static class CountingResourceLoader extends FileSystemResourceLoader {
+        private final List<String> files = new ArrayList<String>();
+
+        CountingResourceLoader(String location) {
+            super(location);
+        }
+
+        @Override
+        public Resource getFile(String resource) {
+            files.add(resource);
+            return super.getFile(resource);
+        }
+    }
+
+    @Test
+    public void testOnlyChangedFilesAreReadAgain() throws Exception {
+        CountingResourceLoader loader = new CountingResourceLoader(directory.getAbsolutePath());
+        PropertiesMergerBuilder builder = builder().setStrictMergingOfProperties(false);
+        builder.setResourceLoaderForLoadingConfigurationProperties(loader);
+        EnvironmentSpecificPropertiesMerger merger = new EnvironmentSpecificPropertiesMerger(builder,true);
+        assertEquals(2,loader.files.size());
+
+        File production = new File(directory,"environments/production.properties");
+        write("environments/production.properties","port=9090\nname=app\n");
+        loader.files.clear();
+        EnvironmentSpecificPropertiesMerger reloaded = merger.reload(Collections.singleton(production.getAbsoluteFile()));
+        assertEquals(Arrays.asList("environments/production.properties"),loader.files);
+
+        assertEquals("production.example.com",merger.getMergedProperties().getProperty("host"));
+        Properties expected = new Properties();
+        expected.setProperty("host","localhost");
+        expected.setProperty("port","9090");
+        expected.setProperty("name","app");
+        assertEquals(expected,reloaded.getMergedProperties());
+        assertEquals(new EnvironmentSpecificPropertiesMerger(builder).getMergedProperties(),reloaded.getMergedProperties());
+        assertTrue(reloaded.getSourceOfProperty("name").endsWith("production.properties"));
+        assertTrue(reloaded.getSourceOfProperty("host").endsWith("default.properties"));
+
+        // a file that is not merged
+        loader.files.clear();
+        assertSame(reloaded,reloaded.reload(Collections.singleton(new File(directory,"other.properties").getAbsoluteFile())));
+        assertTrue(loader.files.isEmpty());
+
+        // deleting a file removes a layer, so all the files are read again
+        assertTrue(production.delete());
+        EnvironmentSpecificPropertiesMerger deleted = reloaded.reload(Collections.singleton(production.getAbsoluteFile()));
+        assertEquals(3,loader.files.size());
+        assertEquals("8080",deleted.getMergedProperties().getProperty("port"));
+        assertNull(deleted.getMergedProperties().getProperty("name"));
+    }
+
+    @Test
+    public void testFilesWithTheSameContentsAreNotMergedAgain() throws Exception {
+        EnvironmentSpecificPropertiesMerger merger = new EnvironmentSpecificPropertiesMerger(builder(),true);
+        File production = new File(directory,"environments/production.properties").getAbsoluteFile();
+
+        // saved without being edited
+        write("environments/production.properties","host=production.example.com\n");
+        assertSame(merger,merger.reload(Collections.singleton(production)));
+
+        write("environments/production.properties","host=production2.example.com\n");
+        EnvironmentSpecificPropertiesMerger reloaded = merger.reload(Collections.singleton(production));
+        assertNotSame(merger,reloaded);
+        assertEquals("production2.example.com",reloaded.getMergedProperties().getProperty("host"));
+        assertSame(reloaded,reloaded.reload(Collections.singleton(production)));
+    }
+
+    @Test
+    public void testReadOnlyPropertiesAreMergedFromTheChangedFiles() throws Exception {
+        PropertiesMergerBuilder builder = builder().setStrictMergingOfProperties(false)
+                .setReturningReadOnlyMergedProperties(true);
+        EnvironmentSpecificPropertiesMerger merger = new EnvironmentSpecificPropertiesMerger(builder,true);
+        File production = new File(directory,"environments/production.properties").getAbsoluteFile();
+
+        write("environments/production.properties","port=9090\nname=app\n");
+        EnvironmentSpecificPropertiesMerger reloaded = merger.reload(Collections.singleton(production));
+        assertTrue(reloaded.getMergedProperties() instanceof ReadOnlyProperties);
+        assertEquals(new EnvironmentSpecificPropertiesMerger(builder).getMergedProperties(),reloaded.getMergedProperties());
+        assertEquals("production.example.com",merger.getMergedProperties().getProperty("host"));
+        assertNull(merger.getMergedProperties().getProperty("name"));
+        assertEquals(3,reloaded.getSourcesOfProperties().size());
+        assertTrue(reloaded.getSourceOfProperty("name").endsWith("production.properties"));
+        assertTrue(reloaded.getSourceOfProperty("host").endsWith("default.properties"));
+        assertTrue(merger.getSourceOfProperty("host").endsWith("production.properties"));
+
+        write("environments/production.properties","port=9091\n");
+        EnvironmentSpecificPropertiesMerger again = reloaded.reload(Collections.singleton(production));
+        assertEquals("9091",again.getMergedProperties().getProperty("port"));
+        assertNull(again.getMergedProperties().getProperty("name"));
+        assertNull(again.getSourceOfProperty("name"));
+        assertEquals(2,again.getSourcesOfProperties().size());
+    }
+
+    /**
+     * Fails to read the files, once told to; as if they were locked, or being replaced
+     */
+    private static class FailingResourceLoader extends FileSystemResourceLoader {
+        private volatile boolean failing;
+        private volatile boolean faulting;
+        private volatile int faults;
+
+        FailingResourceLoader(String location) {
+            super(location);
+        }
+
+        @Override
+        public Resource getFile(String resource) {
+            return new FileSystemResource(new File(getBaseLocation(),resource)) {
+                @Override
+                public ByteBuffer getByteBuffer() throws IOException {
+                    if(failing) throw new IOException("The process cannot access the file");
+                    if(faulting) {
+                        faults++;
+                        // as raised when a memory mapped file is truncated whilst it is read
+                        throw new InternalError("a fault occurred in an unsafe memory access operation");
+                    }
+                    return super.getByteBuffer();
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testFilesThatCannotBeReadAreNotMergedAsEmpty() throws Exception {
+        FailingResourceLoader loader = new FailingResourceLoader(directory.getAbsolutePath());
+        PropertiesMergerBuilder builder = builder();
+        builder.setResourceLoaderForLoadingConfigurationProperties(loader);
+        EnvironmentSpecificPropertiesMerger current = new EnvironmentSpecificPropertiesMerger(builder,true);
+        File production = new File(directory,"environments/production.properties").getAbsoluteFile();
+
+        write("environments/production.properties","host=production2.example.com\n");
+        loader.failing = true;
+        try {
+            current.reload(Collections.singleton(production));
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            current.reload();
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals("production.example.com",current.getMergedProperties().getProperty("host"));
+
+        loader.failing = false;
+        assertEquals("production2.example.com",
+                     current.reload(Collections.singleton(production)).getMergedProperties().getProperty("host"));
+    }
+
+    @Test
+    public void testWatchingContinuesAfterAFaultReadingAFile() throws Exception {
+        FailingResourceLoader loader = new FailingResourceLoader(directory.getAbsolutePath());
+        PropertiesMergerBuilder builder = builder();
+        builder.setResourceLoaderForLoadingConfigurationProperties(loader);
+        merger = new ReloadingPropertiesMerger(builder);
+
+        loader.faulting = true;
+        write("environments/production.properties","host=production2.example.com\n");
+        for(int i=0;i<200 && loader.faults==0;i++) Thread.sleep(50);
+        assertTrue(loader.faults>0);
+        assertFalse(merger.reload());
+        assertEquals("production.example.com",merger.getMergedProperties().getProperty("host"));
+
+        loader.faulting = false;
+        write("environments/production.properties","host=production3.example.com\n");
+        assertTrue(waitFor(merger,"host","production3.example.com"));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.merger;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.FileSystemResourceLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Properties;
+
+import static junit.framework.Assert.*;
+
+public class TestStringDeduplication {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("TestStringDeduplication","");
+        directory.delete();
+        new File(directory,"environments").mkdirs();
+        write("default.properties","a.enabled=true\nb.enabled=true\nhost=localhost\nc.host=localhost\n");
+        write("environments/production.properties","b.enabled=false\nhost=production.example.com\nc.host=production.example.com\n");
+    }
+
+    @After
+    public void tearDown() {
+        new File(directory,"environments/production.properties").delete();
+        new File(directory,"environments").delete();
+        new File(directory,"default.properties").delete();
+        directory.delete();
+    }
+
+    private void write(String name, String contents) throws IOException {
+        OutputStream out = new FileOutputStream(new File(directory,name));
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private PropertiesMergerBuilder builder() {
+        return new EnvironmentSpecificPropertiesMergerBuilder(new FileSystemResourceLoader(directory.getAbsolutePath()))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV"})
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "production";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testEqualValuesShareAnInstance() {
+        Map<String,String> deduplicated = builder().setDeduplicatingPropertyStrings(true).build().getMergedPropertiesAsMap();
+        assertSame(deduplicated.get("host"),deduplicated.get("c.host"));
+        assertEquals("true",deduplicated.get("a.enabled"));
+        assertEquals("false",deduplicated.get("b.enabled"));
+
+        Map<String,String> duplicated = builder().build().getMergedPropertiesAsMap();
+        assertEquals(duplicated,deduplicated);
+        assertNotSame(duplicated.get("host"),duplicated.get("c.host"));
+    }
+
+    @Test
+    public void testSharedPoolDeduplicatesAcrossMergers() {
+        StringPool pool = new ConcurrentStringPool();
+        Properties first = builder().setDeduplicatingPropertyStrings(true).setStringPoolForDeduplicatingProperties(pool)
+                .build().getMergedProperties();
+        Properties second = builder().setDeduplicatingPropertyStrings(true).setStringPoolForDeduplicatingProperties(pool)
+                .build().getMergedProperties();
+        assertSame(first.getProperty("host"),second.getProperty("host"));
+        assertSame(first.getProperty("a.enabled"),second.getProperty("a.enabled"));
+
+        Properties notShared = builder().setDeduplicatingPropertyStrings(true).build().getMergedProperties();
+        assertNotSame(first.getProperty("host"),notShared.getProperty("host"));
+
+        // the pool is not used unless deduplicating
+        Properties notDeduplicated = builder().setStringPoolForDeduplicatingProperties(pool).build().getMergedProperties();
+        assertNotSame(first.getProperty("host"),notDeduplicated.getProperty("host"));
+    }
+
+    @Test
+    public void testWeakPoolReturnsTheFirstInstance() {
+        WeakStringPool pool = new WeakStringPool();
+        String first = new String("localhost");
+        String second = new String("localhost");
+        assertSame(first,pool.intern(first));
+        assertSame(first,pool.intern(second));
+        assertEquals(1,pool.size());
+        assertSame(WeakStringPool.getSharedInstance(),WeakStringPool.getSharedInstance());
+
+        ConcurrentStringPool concurrent = new ConcurrentStringPool();
+        assertSame(second,concurrent.intern(second));
+        assertSame(second,concurrent.intern(first));
+        assertEquals(1,concurrent.size());
+    }
+
+    @Test
+    public void testWeakPoolReturnsOneInstanceToConcurrentThreads() throws Exception {
+        final WeakStringPool pool = new WeakStringPool();
+        final String[][] interned = new String[4][1000];
+        Thread[] threads = new Thread[interned.length];
+        for(int t=0;t<threads.length;t++) {
+            final String[] strings = interned[t];
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i=0;i<strings.length;i++) {
+                        strings[i] = pool.intern(new String("key" + i));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        for(int i=0;i<1000;i++) {
+            for(int t=1;t<interned.length;t++) {
+                assertSame(interned[0][i],interned[t][i]);
+            }
+        }
+        assertEquals(1000,pool.size());
+    }
+}
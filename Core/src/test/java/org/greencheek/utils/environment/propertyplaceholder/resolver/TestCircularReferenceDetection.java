@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesResolverBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.exception.CircularPlaceholderReferenceException;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.ValueResolver;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolver;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class TestCircularReferenceDetection {
+
+    private PropertiesResolver build(Properties p) {
+        return new EnvironmentSpecificPropertiesResolverBuilder().build(merger(p));
+    }
+
+    private PropertiesMerger merger(final Properties p) {
+        return new PropertiesMerger() {
+            @Override
+            public Properties getMergedProperties() {
+                return p;
+            }
+
+            @Override
+            public Map<String, String> getMergedPropertiesAsMap() {
+                return new HashMap(p);
+            }
+        };
+    }
+
+    @Test
+    public void testAllCircularReferencesAreReportedWhenBuilt() {
+        Properties p = new Properties();
+        p.setProperty("a","${b}");
+        p.setProperty("b","x${c}");
+        p.setProperty("c","${a}");
+        p.setProperty("self","${self}");
+        p.setProperty("depends.on.cycle","${a}");
+        p.setProperty("ok","${ok.value}");
+        p.setProperty("ok.value","ok");
+
+        try {
+            build(p);
+            fail("Expected CircularPlaceholderReferenceException");
+        } catch (CircularPlaceholderReferenceException e) {
+            List<List<String>> cycles = e.getCycles();
+            assertEquals(2,cycles.size());
+
+            Set<String> paths = new HashSet<String>();
+            for(List<String> cycle : cycles) {
+                assertEquals(cycle.get(0),cycle.get(cycle.size()-1));
+                paths.add(rotate(cycle).toString());
+            }
+            assertTrue(paths.contains("[a, b, c, a]"));
+            assertTrue(paths.contains("[self, self]"));
+            assertTrue(e.getMessage().contains("self -> self"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCircularReferenceThroughDefaultKeyIsReported() {
+        Properties p = new Properties();
+        p.setProperty("a","${b:none}");
+        p.setProperty("b","${a}");
+
+        build(p);
+    }
+
+    @Test
+    public void testResolverWithoutCircularReferencesResolves() {
+        Properties p = new Properties();
+        p.setProperty("a","${b}-${b}");
+        p.setProperty("b","${c:default}");
+
+        PropertiesResolver resolver = build(p);
+        assertEquals("default-default",resolver.getProperty("a"));
+        assertEquals("default-default",resolver.getProperties().getProperty("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCircularReferenceThroughNestedKeyIsDetectedOnResolution() {
+        Properties p = new Properties();
+        p.setProperty("name","a");
+        p.setProperty("a","${${name}}");
+
+        build(p).getProperty("a");
+    }
+
+    @Test
+    public void testResolverWithoutDependencyGraphResolvesEachProperty() {
+        Properties p = new Properties();
+        p.setProperty("a","${b}");
+        p.setProperty("b","${a}");
+        p.setProperty("ok","${ok.value}");
+        p.setProperty("ok.value","ok");
+
+        // only implements ValueResolver, so circular references are found when the properties are resolved
+        final ValueResolver delegate = new VariablePlaceholderValueResolver();
+        ValueResolver valueResolver = new ValueResolver() {
+            public Properties resolvedPropertyValues(Properties properties, boolean trimValues) {
+                return delegate.resolvedPropertyValues(properties,trimValues);
+            }
+            public Properties resolvedPropertyValues(Properties properties) {
+                return delegate.resolvedPropertyValues(properties);
+            }
+            public Map<String, String> resolvedPropertyValues(Map<String, String> properties, boolean trimValues) {
+                return delegate.resolvedPropertyValues(properties,trimValues);
+            }
+            public Map<String, String> resolvedPropertyValues(Map<String, String> properties) {
+                return delegate.resolvedPropertyValues(properties);
+            }
+            public String resolvedPropertyValue(Properties properties, String key, boolean trimValues) {
+                return delegate.resolvedPropertyValue(properties,key,trimValues);
+            }
+            public String resolvedPropertyValue(Properties properties, String key) {
+                return delegate.resolvedPropertyValue(properties,key);
+            }
+            public String resolvedPropertyValue(Map<String, String> map, String key, boolean trimValues) {
+                return delegate.resolvedPropertyValue(map,key,trimValues);
+            }
+            public String resolvedPropertyValue(Map<String, String> map, String key) {
+                return delegate.resolvedPropertyValue(map,key);
+            }
+        };
+
+        PropertiesResolver resolver = new EnvironmentSpecificPropertiesResolver(
+                new EnvironmentSpecificPropertiesResolverBuilder(),merger(p),valueResolver);
+        assertEquals("ok",resolver.getProperty("ok"));
+        assertNull(resolver.getProperty("missing"));
+        try {
+            resolver.getProperty("a");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertFalse(e instanceof CircularPlaceholderReferenceException);
+        }
+    }
+
+    /**
+     * rotates the cycle so that it starts from the smallest key
+     */
+    private static List<String> rotate(List<String> cycle) {
+        List<String> keys = cycle.subList(0,cycle.size()-1);
+        int start = keys.indexOf(Collections.min(keys));
+        List<String> rotated = new ArrayList<String>(keys.subList(start,keys.size()));
+        rotated.addAll(keys.subList(0,start));
+        rotated.add(rotated.get(0));
+        return rotated;
+    }
+}
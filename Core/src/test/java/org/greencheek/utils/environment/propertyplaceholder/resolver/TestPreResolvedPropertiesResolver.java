@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesResolverBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.value.VariablePlaceholderValueResolver;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Runs the resolver tests against a resolver that resolves all property values when it is built.
+ */
+public class TestPreResolvedPropertiesResolver extends AbstractTestMergingPropertiesUsingEnvironment {
+
+    @Override
+    public PropertiesResolver buildResolver(boolean trimValues) {
+        final Properties p = getProperties();
+
+        return new EnvironmentSpecificPropertiesResolverBuilder()
+                .setTrimmingPropertyValues(trimValues)
+                .setPreResolvingPropertyValues(true)
+                .setPropertyValueResolver(new VariablePlaceholderValueResolver())
+                .build(new PropertiesMerger() {
+                    @Override
+                    public Properties getMergedProperties() {
+                        return p;
+                    }
+
+                    @Override
+                    public Map<String, String> getMergedPropertiesAsMap() {
+                        return new HashMap(p);
+                    }
+                });
+    }
+
+    @Test
+    public void testPreResolvedPropertyIsNotResolvedOnEachRequest() {
+        assertSame(resolver.getProperty("two"), resolver.getProperty("two"));
+    }
+
+    @Test
+    public void testPreResolvedPropertiesContainAllResolvedValues() {
+        Properties p = resolver.getProperties();
+        assertEquals(4, p.size());
+        assertEquals("1+1", p.getProperty("two"));
+        assertEquals("resolved trimmed", p.getProperty("resolvedtrimmed"));
+    }
+}
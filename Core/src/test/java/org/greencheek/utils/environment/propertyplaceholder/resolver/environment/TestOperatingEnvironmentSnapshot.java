@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.environment;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesResolverBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static junit.framework.Assert.*;
+
+public class TestOperatingEnvironmentSnapshot {
+
+    private static final String PROPERTY = "TestOperatingEnvironmentSnapshot.property";
+
+    @After
+    public void tearDown() {
+        System.clearProperty(PROPERTY);
+        OperatingEnvironmentSnapshot.refresh();
+    }
+
+    @Test
+    public void testSnapshotIsSharedUntilRefreshed() {
+        OperatingEnvironmentSnapshot snapshot = OperatingEnvironmentSnapshot.current();
+        assertSame(snapshot,OperatingEnvironmentSnapshot.current());
+
+        System.setProperty(PROPERTY,"value");
+        assertNull(OperatingEnvironmentSnapshot.current().getSystemProperty(PROPERTY));
+
+        OperatingEnvironmentSnapshot.refresh();
+        OperatingEnvironmentSnapshot refreshed = OperatingEnvironmentSnapshot.current();
+        assertEquals("value",refreshed.getSystemProperty(PROPERTY));
+        assertTrue(refreshed.getGeneration() > snapshot.getGeneration());
+        assertSame(snapshot.getEnvironmentVariables(),refreshed.getEnvironmentVariables());
+    }
+
+    @Test
+    public void testSnapshotContainsTheProcessEnvironment() {
+        OperatingEnvironmentSnapshot snapshot = OperatingEnvironmentSnapshot.current();
+        assertEquals(System.getenv(),snapshot.getEnvironmentVariables());
+        assertEquals(System.getProperty("java.version"),snapshot.getSystemProperty("java.version"));
+    }
+
+    @Test
+    public void testBuildingAResolverDoesNotRefreshTheSnapshot() {
+        OperatingEnvironmentSnapshot snapshot = OperatingEnvironmentSnapshot.current();
+        new EnvironmentSpecificPropertiesResolverBuilder().build(new EnvironmentSpecificPropertiesMergerBuilder().build());
+        assertSame(snapshot,OperatingEnvironmentSnapshot.current());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable() {
+        OperatingEnvironmentSnapshot.current().getSystemProperties().put(PROPERTY,"value");
+    }
+
+    @Test
+    public void testCapturedSnapshot() {
+        OperatingEnvironmentSnapshot snapshot = OperatingEnvironmentSnapshot.capture(new OperatingEnvironmentProperties() {
+            @Override
+            public Properties getEnvironmentProperties() {
+                Properties p = new Properties();
+                p.setProperty("HOME","/home/test");
+                return p;
+            }
+
+            @Override
+            public Properties getSystemProperties() {
+                Properties p = new Properties();
+                p.setProperty("user.home","/home/sys");
+                return p;
+            }
+        });
+
+        assertEquals("/home/test",snapshot.getEnvironmentVariable("HOME"));
+        assertEquals("/home/sys",snapshot.getSystemProperty("user.home"));
+        assertNull(snapshot.getSystemProperty("java.version"));
+        assertEquals(0,snapshot.getGeneration());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class TestClassPathResource {
+
+    private ClassLoader originalClassLoader;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        originalClassLoader = Thread.currentThread().getContextClassLoader();
+        directory = File.createTempFile("class path","");
+        directory.delete();
+        directory.mkdirs();
+        ClassPathResourceLoader.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        ClassPathResourceLoader.clearCache();
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files!=null) for(File child : files) delete(child);
+        file.delete();
+    }
+
+    private File createJar(String... namesAndContents) throws IOException {
+        File jar = new File(directory,"config files.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for(int i=0;i<namesAndContents.length;i+=2) {
+                out.putNextEntry(new ZipEntry(namesAndContents[i]));
+                out.write(namesAndContents[i+1].getBytes("ISO-8859-1"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static String toString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes,"ISO-8859-1");
+    }
+
+    @Test
+    public void testResourcesAreReadFromSharedJarFile() throws IOException {
+        File jar = createJar("jarconfig/default.properties","message=hello\n",
+                             "jarconfig/environments/my env.properties","message=env\n");
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()},null));
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/jarconfig");
+        JarFileCache jars = new JarFileCache();
+
+        ClassPathResource resource = (ClassPathResource)loader.getFile("default.properties",jars);
+        assertEquals("message=hello\n",toString(resource.getByteBuffer()));
+        resource = (ClassPathResource)loader.getFile("environments/my env.properties",jars);
+        assertEquals("message=env\n",toString(resource.getByteBuffer()));
+        assertEquals(1,jars.size());
+
+        jars.close();
+        assertEquals(0,jars.size());
+        // read after the merge, opening and closing the jar
+        assertEquals("message=env\n",toString(resource.getByteBuffer()));
+        assertEquals(0,jars.size());
+    }
+
+    @Test
+    public void testJarIsClosedAfterReadingWithoutACache() throws IOException {
+        File jar = createJar("jarconfig/default.properties","message=hello\n");
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()},null));
+        ClassPathResource resource = (ClassPathResource)new ClassPathResourceLoader("/jarconfig").getFile("default.properties");
+        assertEquals("message=hello\n",toString(resource.getByteBuffer()));
+        assertEquals(14,resource.getLength());
+
+        // the jar can be replaced in place, and the new contents are read
+        assertTrue(jar.delete());
+        createJar("jarconfig/default.properties","message=replaced\n");
+        assertEquals("message=replaced\n",toString(resource.getByteBuffer()));
+        assertEquals(17,resource.getLength());
+    }
+
+    @Test
+    public void testResourceInDirectoryIsReadAsFile() throws IOException {
+        new File(directory,"dirconfig").mkdirs();
+        FileOutputStream out = new FileOutputStream(new File(directory,"dirconfig/default.properties"));
+        try {
+            out.write("message=directory\n".getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{directory.toURI().toURL()},null));
+
+        JarFileCache jars = new JarFileCache();
+        ClassPathResource resource = (ClassPathResource)new ClassPathResourceLoader("/dirconfig").getFile("default.properties",jars);
+        assertEquals("message=directory\n",toString(resource.getByteBuffer()));
+        assertEquals(0,jars.size());
+    }
+
+    @Test
+    public void testMergerReadsPropertiesFromJar() throws IOException {
+        File jar = createJar("jarconfig/default.properties","message=hello\nname=default\n",
+                             "jarconfig/environments/dev.properties","message=dev\n");
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()},null));
+
+        Properties p = new EnvironmentSpecificPropertiesMergerBuilder(new ClassPathResourceLoader("/jarconfig"))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV"})
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "dev";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                })
+                .buildProperties();
+        assertEquals("dev",p.getProperty("message"));
+        assertEquals("default",p.getProperty("name"));
+    }
+}
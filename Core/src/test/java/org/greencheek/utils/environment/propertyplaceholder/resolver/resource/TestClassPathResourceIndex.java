@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.CRC32;
+
+import static junit.framework.Assert.*;
+
+public class TestClassPathResourceIndex {
+
+    /**
+     * Counts the resources that are looked up from it
+     */
+    private static class CountingClassLoader extends URLClassLoader {
+        int lookups;
+
+        CountingClassLoader(File... roots) throws IOException {
+            super(urls(roots),null);
+        }
+
+        private static URL[] urls(File... roots) throws IOException {
+            URL[] urls = new URL[roots.length];
+            for(int i=0;i<roots.length;i++) {
+                urls[i] = roots[i].toURI().toURL();
+            }
+            return urls;
+        }
+
+        @Override
+        public URL getResource(String name) {
+            lookups++;
+            return super.getResource(name);
+        }
+    }
+
+    private ClassLoader originalClassLoader;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        originalClassLoader = Thread.currentThread().getContextClassLoader();
+        directory = File.createTempFile("classpath","");
+        directory.delete();
+        new File(directory,"config/environments").mkdirs();
+        ClassPathResourceLoader.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        ClassPathResourceLoader.clearCache();
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files!=null) for(File child : files) delete(child);
+        file.delete();
+    }
+
+    private void write(String name, String content) throws IOException {
+        write(directory,name,content);
+    }
+
+    private static void write(File root, String name, String content) throws IOException {
+        File file = new File(root,name);
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testIndexRecordsSizeAndChecksumOfFilesBeneathLocations() throws IOException {
+        write("config/default.properties","message=hello\n");
+        write("config/environments/dev.properties","message=dev\n");
+        write("other.properties","message=other\n");
+        ClassPathResourceIndex.write(directory,Arrays.asList("/config"));
+
+        CountingClassLoader classLoader = new CountingClassLoader(directory);
+        ClassPathResourceIndex index = ClassPathResourceIndex.read(classLoader);
+        assertNotNull(index);
+
+        CRC32 crc = new CRC32();
+        crc.update("message=dev\n".getBytes("UTF-8"));
+        ClassPathResourceIndex.Entry entry = index.getEntry("config/environments/dev.properties");
+        assertEquals(12,entry.getSize());
+        assertEquals(crc.getValue(),entry.getCrc32());
+        assertNotNull(index.getEntry("config/default.properties"));
+
+        assertTrue(index.isIndexed("config/environments/prod.properties"));
+        assertFalse(index.mayContain(classLoader,"config/environments/prod.properties"));
+        assertFalse(index.isIndexed("other.properties"));
+        assertTrue(index.mayContain(classLoader,"other.properties"));
+    }
+
+    @Test
+    public void testClassLoaderWithoutIndexHasNoIndex() throws IOException {
+        assertNull(ClassPathResourceIndex.read(new CountingClassLoader(directory)));
+    }
+
+    @Test
+    public void testResourcesMissingFromIndexAreNotLookedUp() throws IOException {
+        new File(directory,"indexed/config").mkdirs();
+        write("indexed/config/default.properties","message=hello\n");
+        ClassPathResourceIndex.write(directory,Arrays.asList("indexed/config"));
+        CountingClassLoader classLoader = new CountingClassLoader(directory);
+        Thread.currentThread().setContextClassLoader(classLoader);
+
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/indexed/config");
+        assertFalse(loader.getFile("environments/prod.properties").isAvailable());
+        assertEquals(0,classLoader.lookups);
+
+        assertTrue(loader.getFile("default.properties").isAvailable());
+        assertEquals(1,classLoader.lookups);
+    }
+
+    /**
+     * Writes the indexed/config/default.properties, and its index, to a jar with entries for its directories
+     */
+    private File writeIndexedJar() throws IOException {
+        File contents = new File(directory,"jar");
+        write(contents,"indexed/config/default.properties","message=hello\n");
+        ClassPathResourceIndex.write(contents,Arrays.asList("indexed/config"));
+        return writeJar(contents,"indexed.jar","META-INF/","META-INF/environment-properties.idx","indexed/",
+                        "indexed/config/","indexed/config/default.properties");
+    }
+
+    /**
+     * Writes the given entries, of the files and directories beneath the contents directory, to a jar
+     */
+    private File writeJar(File contents, String jarName, String... names) throws IOException {
+        File jar = new File(directory,jarName);
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for(String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                if(!name.endsWith("/")) {
+                    FileInputStream in = new FileInputStream(new File(contents,name));
+                    try {
+                        byte[] buffer = new byte[1024];
+                        int read;
+                        while((read = in.read(buffer))!=-1) out.write(buffer,0,read);
+                    } finally {
+                        in.close();
+                    }
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    @Test
+    public void testResourcesMissingFromIndexedJarAreNotLookedUp() throws IOException {
+        CountingClassLoader classLoader = new CountingClassLoader(writeIndexedJar());
+        Thread.currentThread().setContextClassLoader(classLoader);
+
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/indexed/config");
+        assertFalse(loader.getFile("environments/prod.properties").isAvailable());
+        assertEquals(0,classLoader.lookups);
+        assertTrue(loader.getFile("default.properties").isAvailable());
+    }
+
+    @Test
+    public void testUnindexedRootHoldingAnIndexedLocationIsLookedUp() throws IOException {
+        File jar = writeIndexedJar();
+        File testClasses = new File(directory,"test-classes");
+        write(testClasses,"indexed/config/environments/test.properties","message=test\n");
+        CountingClassLoader classLoader = new CountingClassLoader(jar,testClasses);
+        Thread.currentThread().setContextClassLoader(classLoader);
+
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/indexed/config");
+        assertTrue(loader.getFile("environments/test.properties").isAvailable());
+        assertFalse(loader.getFile("environments/prod.properties").isAvailable());
+        assertEquals(2,classLoader.lookups);
+    }
+
+    @Test
+    public void testResourceIsLookedUpWhenNoRootHasEntriesForItsLocation() throws IOException {
+        File indexedContents = new File(directory,"indexed-jar");
+        write(indexedContents,"indexed/config/default.properties","message=hello\n");
+        ClassPathResourceIndex.write(indexedContents,Arrays.asList("indexed/config"));
+        File indexed = writeJar(indexedContents,"indexed.jar","META-INF/environment-properties.idx",
+                                "indexed/config/default.properties");
+        File unindexedContents = new File(directory,"unindexed-jar");
+        write(unindexedContents,"indexed/config/environments/prod.properties","message=prod\n");
+        File unindexed = writeJar(unindexedContents,"unindexed.jar","indexed/config/environments/prod.properties");
+        Thread.currentThread().setContextClassLoader(new CountingClassLoader(indexed,unindexed));
+
+        // neither jar has entries for the directories, so the classloader reports no root holding the location
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/indexed/config");
+        assertTrue(loader.getFile("environments/prod.properties").isAvailable());
+        assertTrue(loader.getFile("default.properties").isAvailable());
+    }
+
+    @Test
+    public void testFileAddedToIndexedDirectoryIsFound() throws IOException {
+        write("indexed/config/default.properties","message=hello\n");
+        ClassPathResourceIndex.write(directory,Arrays.asList("indexed/config"));
+        write("indexed/config/environments/dev.properties","message=dev\n");
+        Thread.currentThread().setContextClassLoader(new CountingClassLoader(directory));
+
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/indexed/config");
+        assertTrue(loader.getFile("environments/dev.properties").isAvailable());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class TestClassPathResourceLoaderCache {
+
+    /**
+     * Counts the resources that are looked up from it
+     */
+    private static class CountingClassLoader extends URLClassLoader {
+        int lookups;
+
+        CountingClassLoader(File directory) throws IOException {
+            super(new URL[]{directory.toURI().toURL()},null);
+        }
+
+        @Override
+        public URL getResource(String name) {
+            lookups++;
+            return super.getResource(name);
+        }
+    }
+
+    private ClassLoader originalClassLoader;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        originalClassLoader = Thread.currentThread().getContextClassLoader();
+        directory = File.createTempFile("classpath","");
+        directory.delete();
+        directory.mkdirs();
+        ClassPathResourceLoader.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        ClassPathResourceLoader.clearCache();
+        File[] files = directory.listFiles();
+        if(files!=null) for(File file : files) file.delete();
+        directory.delete();
+    }
+
+    private void write(String name) throws IOException {
+        FileWriter writer = new FileWriter(new File(directory,name));
+        try {
+            writer.write("message=hello\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testResourcesAreLookedUpOncePerClassLoader() throws IOException {
+        write("cached.properties");
+        CountingClassLoader classLoader = new CountingClassLoader(directory);
+        Thread.currentThread().setContextClassLoader(classLoader);
+
+        assertTrue(new ClassPathResourceLoader("/").getFile("cached.properties").isAvailable());
+        assertFalse(new ClassPathResourceLoader("/").getFile("missing.properties").isAvailable());
+        assertEquals(2,classLoader.lookups);
+
+        assertTrue(new ClassPathResourceLoader("/").getFile("cached.properties").isAvailable());
+        assertFalse(new ClassPathResourceLoader("/").getFile("missing.properties").isAvailable());
+        assertEquals(2,classLoader.lookups);
+    }
+
+    @Test
+    public void testResourceAddedToClassPathIsFoundOnceCacheIsCleared() throws IOException {
+        Thread.currentThread().setContextClassLoader(new CountingClassLoader(directory));
+        ClassPathResourceLoader loader = new ClassPathResourceLoader("/");
+
+        assertFalse(loader.getFile("added.properties").isAvailable());
+        write("added.properties");
+        assertFalse(loader.getFile("added.properties").isAvailable());
+
+        ClassPathResourceLoader.clearCache();
+        assertTrue(loader.getFile("added.properties").isAvailable());
+    }
+
+    @Test
+    public void testCacheOfDiscardedClassLoaderIsDiscarded() throws Exception {
+        // the lookup falls back to the classloader of the loader, which stays cached
+        new ClassPathResourceLoader("/").getFile("missing.properties");
+        int cached = ClassPathResourceLoader.getNumberOfCachedClassLoaders();
+        Thread.currentThread().setContextClassLoader(new CountingClassLoader(directory));
+        new ClassPathResourceLoader("/").getFile("missing.properties");
+        assertEquals(cached+1,ClassPathResourceLoader.getNumberOfCachedClassLoaders());
+
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        for(int i=0;i<20 && ClassPathResourceLoader.getNumberOfCachedClassLoaders() > cached;i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(cached,ClassPathResourceLoader.getNumberOfCachedClassLoaders());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static junit.framework.Assert.*;
+
+public class TestDirectoryListing {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("TestDirectoryListing","");
+        directory.delete();
+        new File(directory,"environments").mkdirs();
+        write("default.properties","message=hello\n");
+        write("environments/dev.properties","message=dev\n");
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files!=null) for(File child : files) delete(child);
+        file.delete();
+    }
+
+    private void write(String name, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(new File(directory,name));
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testFilesAreAnsweredFromListingOfTheirDirectory() throws IOException {
+        FileSystemResourceLoader loader = new FileSystemResourceLoader(directory.getAbsolutePath());
+        DirectoryListing listing = new DirectoryListing();
+
+        assertTrue(loader.getFile("default.properties",listing).isAvailable());
+        assertFalse(loader.getFile("dev.properties",listing).isAvailable());
+        assertFalse(loader.getFile("environments",listing).isAvailable());
+        assertTrue(loader.getFile("environments/dev.properties",listing).isAvailable());
+        assertFalse(loader.getFile("environments/prod.properties",listing).isAvailable());
+        assertFalse(loader.getFile("missing/prod.properties",listing).isAvailable());
+        assertEquals(3,listing.getNumberOfDirectoriesListed());
+
+        // the listing is not updated
+        write("environments/prod.properties","message=prod\n");
+        assertFalse(loader.getFile("environments/prod.properties",listing).isAvailable());
+        assertTrue(loader.getFile("environments/prod.properties",new DirectoryListing()).isAvailable());
+    }
+
+    @Test
+    public void testListedFileIsRead() throws IOException {
+        FileSystemResourceLoader loader = new FileSystemResourceLoader(directory.getAbsolutePath());
+        FileSystemResource resource = (FileSystemResource)loader.getFile("environments/dev.properties",new DirectoryListing());
+        assertEquals(12,resource.getByteBuffer().remaining());
+    }
+
+    @Test
+    public void testSymbolicLinksAreFollowed() throws IOException {
+        try {
+            Files.createSymbolicLink(new File(directory,"linked.properties").toPath(),new File(directory,"default.properties").toPath());
+            Files.createSymbolicLink(new File(directory,"broken.properties").toPath(),new File(directory,"missing.properties").toPath());
+        } catch (UnsupportedOperationException e) {
+            return;
+        } catch (IOException e) {
+            // the platform does not allow links to be created
+            return;
+        }
+
+        FileSystemResourceLoader loader = new FileSystemResourceLoader(directory.getAbsolutePath());
+        DirectoryListing listing = new DirectoryListing();
+        assertTrue(loader.getFile("linked.properties",listing).isAvailable());
+        assertFalse(loader.getFile("broken.properties",listing).isAvailable());
+    }
+
+    @Test
+    public void testSnapshotLoaderReturnsSnapshotsForListedFiles() throws IOException {
+        SnapshotResourceLoader loader = new SnapshotResourceLoader(directory.getAbsolutePath());
+        DirectoryListing listing = new DirectoryListing();
+        assertTrue(loader.getFile("default.properties",listing) instanceof SnapshotResource);
+        assertFalse(loader.getFile("missing.snapshot",listing).isAvailable());
+    }
+
+    @Test
+    public void testFilesInAFileAreNotAvailable() throws IOException {
+        FileSystemResourceLoader loader = new FileSystemResourceLoader(directory.getAbsolutePath());
+        assertFalse(loader.getFile("default.properties/default.properties",new DirectoryListing()).isAvailable());
+    }
+
+    @Test
+    public void testDirectoryThatCannotBeListedIsAnError() {
+        // a directory whose name is too long cannot be listed, without it being known not to exist
+        char[] name = new char[300];
+        Arrays.fill(name,'x');
+        FileSystemResourceLoader loader = new FileSystemResourceLoader(directory.getAbsolutePath());
+        DirectoryListing listing = new DirectoryListing();
+        try {
+            loader.getFile(new String(name) + "/default.properties",listing);
+            fail("the directory cannot be listed");
+        } catch (IOException e) {
+            assertEquals(0,listing.getNumberOfDirectoriesListed());
+        }
+    }
+}
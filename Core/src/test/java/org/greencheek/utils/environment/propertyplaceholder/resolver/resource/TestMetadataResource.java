@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static junit.framework.Assert.*;
+
+public class TestMetadataResource {
+
+    private static final String CONTENTS = "message=hello\n";
+
+    private ClassLoader originalClassLoader;
+    private File directory;
+    private long crc;
+
+    @Before
+    public void setUp() throws IOException {
+        originalClassLoader = Thread.currentThread().getContextClassLoader();
+        directory = File.createTempFile("TestMetadataResource","");
+        directory.delete();
+        new File(directory,"metaconfig").mkdirs();
+        FileOutputStream out = new FileOutputStream(new File(directory,"metaconfig/default.properties"));
+        try {
+            out.write(CONTENTS.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(CONTENTS.getBytes("ISO-8859-1"));
+        crc = checksum.getValue();
+        ClassPathResourceLoader.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(originalClassLoader);
+        ClassPathResourceLoader.clearCache();
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files!=null) for(File child : files) delete(child);
+        file.delete();
+    }
+
+    private void assertMetadata(MetadataResource resource, long lastModified) throws IOException {
+        assertTrue(resource.isAvailable());
+        assertEquals(CONTENTS.length(),resource.getLength());
+        assertEquals(crc,resource.getFingerprint());
+        assertEquals(CONTENTS.length(),resource.getByteBuffer().remaining());
+        assertEquals(lastModified,resource.getLastModified());
+    }
+
+    @Test
+    public void testFileSystemResource() throws IOException {
+        File file = new File(directory,"metaconfig/default.properties");
+        FileSystemResourceLoader loader = new FileSystemResourceLoader(new File(directory,"metaconfig").getAbsolutePath());
+        assertMetadata((MetadataResource)loader.getFile("default.properties"),file.lastModified());
+        assertMetadata((MetadataResource)loader.getFile("default.properties",new DirectoryListing()),file.lastModified());
+
+        MetadataResource missing = (MetadataResource)loader.getFile("missing.properties");
+        assertEquals(-1,missing.getLength());
+        assertEquals(0,missing.getLastModified());
+        missing = (MetadataResource)loader.getFile("missing.properties",new DirectoryListing());
+        assertEquals(-1,missing.getLength());
+        assertEquals(0,missing.getLastModified());
+    }
+
+    @Test
+    public void testClassPathResourceInDirectory() throws IOException {
+        File file = new File(directory,"metaconfig/default.properties");
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{directory.toURI().toURL()},null));
+        assertMetadata((MetadataResource)new ClassPathResourceLoader("/metaconfig").getFile("default.properties"),
+                       file.lastModified());
+    }
+
+    @Test
+    public void testClassPathResourceInJar() throws IOException {
+        File jar = new File(directory,"config.jar");
+        ZipEntry entry = new ZipEntry("metaconfig/default.properties");
+        entry.setTime(1000000000000L);
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(entry);
+            out.write(CONTENTS.getBytes("ISO-8859-1"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()},null));
+        assertMetadata((MetadataResource)new ClassPathResourceLoader("/metaconfig").getFile("default.properties"),
+                       1000000000000L);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Checks the scanner finds the same placeholder end as testing for the suffix and nested prefix at each character.
+ */
+public class TestPlaceholderScanner {
+
+    private static final String[][] SYNTAXES = {
+            {"${", "}", "{"},
+            {"#{", "}", "{"},
+            {"${", ")", "${"},
+            {"<<", ">>", "<<"},
+            {"@", "@", "@"},
+    };
+
+    /**
+     * The original character by character search
+     */
+    private static int findPlaceholderEndIndex(String prefix, String suffix, String simplePrefix,
+                                               String buf, int startIndex) {
+        VariablePlaceholderValueResolver resolver = new VariablePlaceholderValueResolver();
+        int index = startIndex + prefix.length();
+        int withinNestedPlaceholder = 0;
+        while (index < buf.length()) {
+            if (resolver.substringMatch(buf, index, suffix)) {
+                if (withinNestedPlaceholder > 0) {
+                    withinNestedPlaceholder--;
+                    index = index + suffix.length();
+                }
+                else {
+                    return index;
+                }
+            }
+            else if (resolver.substringMatch(buf, index, simplePrefix)) {
+                withinNestedPlaceholder++;
+                index = index + simplePrefix.length();
+            }
+            else {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testNestedPlaceholders() {
+        PlaceholderScanner scanner = new PlaceholderScanner("${","}","{");
+        assertEquals(8,scanner.findPlaceholderEndIndex("${a.${b}}",0));
+        assertEquals(4,scanner.findPlaceholderEndIndex("x${a}${b}",1));
+        assertEquals(-1,scanner.findPlaceholderEndIndex("${a.${b}",0));
+        assertEquals(11,scanner.findPlaceholderEndIndex("${a{b}.${c}}",0));
+    }
+
+    @Test
+    public void testScannerIsTheSameAsCharacterByCharacterSearch() {
+        Random random = new Random(20121018);
+        for(String[] syntax : SYNTAXES) {
+            String prefix = syntax[0], suffix = syntax[1], simplePrefix = syntax[2];
+            PlaceholderScanner scanner = new PlaceholderScanner(prefix,suffix,simplePrefix);
+            String alphabet = prefix + suffix + simplePrefix + "ab";
+
+            for(int i=0;i<20000;i++) {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(24);
+                for(int j=0;j<length;j++) {
+                    value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                String text = value.toString();
+
+                int start = scanner.indexOfPlaceholderPrefix(text,0);
+                while(start != -1) {
+                    int expected = findPlaceholderEndIndex(prefix,suffix,simplePrefix,text,start);
+                    assertEquals(text,expected,scanner.findPlaceholderEndIndex(text,start));
+                    start = scanner.indexOfPlaceholderPrefix(text,start+1);
+                }
+            }
+        }
+    }
+}
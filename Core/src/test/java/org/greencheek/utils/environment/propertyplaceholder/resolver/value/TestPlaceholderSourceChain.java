@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
+
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.MapPlaceholderSource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.SystemPropertiesPlaceholderSource;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class TestPlaceholderSourceChain {
+
+    /**
+     * Counts the number of times it is asked for a value
+     */
+    private static class CountingSource implements PlaceholderSource {
+        final Map<String,String> values = new HashMap<String,String>();
+        final Capability capability;
+        long generation = 0;
+        int lookups = 0;
+        int generationLookups = 0;
+
+        CountingSource(Capability capability) {
+            this.capability = capability;
+        }
+
+        @Override
+        public String getValue(String name) {
+            lookups++;
+            return values.get(name);
+        }
+
+        @Override
+        public Capability getCapability() {
+            return capability;
+        }
+
+        @Override
+        public long getGeneration() {
+            generationLookups++;
+            return generation;
+        }
+    }
+
+    @Test
+    public void testSourcesAreConsultedInOrder() {
+        Map<String,String> secrets = new HashMap<String,String>();
+        secrets.put("db.password","secret");
+        secrets.put("java.version","overridden");
+
+        List<PlaceholderSource> sources = new ArrayList<PlaceholderSource>();
+        sources.add(new MapPlaceholderSource(secrets));
+        sources.add(new SystemPropertiesPlaceholderSource());
+
+        ValueResolver resolver = new VariablePlaceholderValueResolver(new VariablePlaceholderValueResolverConfig()
+                .setPlaceholderSources(sources));
+
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("password","${db.password}");
+        map.put("version","${java.version}");
+        map.put("home","${user.home}");
+
+        Map<String,String> resolved = resolver.resolvedPropertyValues(map);
+        assertEquals("secret",resolved.get("password"));
+        assertEquals("overridden",resolved.get("version"));
+        assertEquals(System.getProperty("user.home"),resolved.get("home"));
+    }
+
+    @Test
+    public void testStaticSourceLookupsAreCached() {
+        CountingSource first = new CountingSource(PlaceholderSource.Capability.STATIC);
+        CountingSource second = new CountingSource(PlaceholderSource.Capability.STATIC);
+        second.values.put("name","value");
+
+        PlaceholderSourceChain chain = new PlaceholderSourceChain(Arrays.<PlaceholderSource>asList(first,second));
+        for(int i=0;i<10;i++) {
+            assertEquals("value",chain.getValue("name"));
+            assertNull(chain.getValue("missing"));
+        }
+        assertEquals(2,first.lookups);
+        assertEquals(2,second.lookups);
+
+        second.values.put("missing","found");
+        second.generation++;
+        assertEquals("found",chain.getValue("missing"));
+        assertEquals(3,second.lookups);
+    }
+
+    @Test
+    public void testGenerationsAreNotReadUntilTheFirstLookup() {
+        CountingSource source = new CountingSource(PlaceholderSource.Capability.STATIC);
+        source.values.put("name","value");
+
+        PlaceholderSourceChain chain = new PlaceholderSourceChain(Arrays.<PlaceholderSource>asList(source));
+        assertEquals(0,source.generationLookups);
+        assertEquals("value",chain.getValue("name"));
+        assertTrue(source.generationLookups > 0);
+    }
+
+    @Test
+    public void testDynamicSourceIsAskedEveryTime() {
+        CountingSource staticSource = new CountingSource(PlaceholderSource.Capability.STATIC);
+        CountingSource dynamicSource = new CountingSource(PlaceholderSource.Capability.DYNAMIC);
+        dynamicSource.values.put("name","one");
+
+        PlaceholderSourceChain chain = new PlaceholderSourceChain(
+                Arrays.<PlaceholderSource>asList(staticSource,dynamicSource));
+        assertEquals("one",chain.getValue("name"));
+        dynamicSource.values.put("name","two");
+        assertEquals("two",chain.getValue("name"));
+
+        assertEquals(1,staticSource.lookups);
+        assertEquals(2,dynamicSource.lookups);
+    }
+}
@@ -16,17 +16,28 @@
 package org.greencheek.utils.environment.propertyplaceholder.resolver.value;
 
 import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentProperties;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.source.PlaceholderSource;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 
+import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.junit.Assert.assertThat;
@@ -295,4 +306,221 @@ public class TestValueResolver {
                 hasEntry("prop4","ealing")));
 
     }
+
+    @Test
+    public void testValueResolverResolvesNestedPlaceholderKeys() {
+        Properties p = new Properties();
+        p.setProperty("env","prod");
+        p.setProperty("db.prod.host","db01");
+        p.setProperty("url","jdbc:mysql://${db.${env}.host}:${db.port:3306}/admin");
+
+        assertEquals("jdbc:mysql://db01:3306/admin",resolver.resolvedPropertyValue(p,"url"));
+        // second resolution uses the compiled template of the value
+        assertEquals("jdbc:mysql://db01:3306/admin",resolver.resolvedPropertyValue(p,"url"));
+    }
+
+    @Test
+    public void testValueResolverLeavesUnresolvablePlaceholdersInPlace() {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("prop1","ONE");
+        map.put("prop2","${prop1}-${missing}-${prop1}");
+
+        assertEquals("ONE-${missing}-ONE",resolver.resolvedPropertyValue(map,"prop2"));
+    }
+
+    @Test
+    public void testValueResolverResolvesTheSamePlaceholderRepeatedly() {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("host","localhost");
+        map.put("name","host");
+        map.put("hosts"," ${host} , ${ host } , ${${name}} , ${${name}} ");
+
+        assertEquals("localhost , localhost , localhost , localhost",resolver.resolvedPropertyValue(map,"hosts"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueResolverDetectsCircularReferences() {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("a","${b}");
+        map.put("b","${a}");
+
+        resolver.resolvedPropertyValue(map,"a");
+    }
+
+    @Test
+    public void testValueResolverResolvesAllPropertiesInDependencyOrder() {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("url","jdbc:mysql://${host}:${port:3306}/${schema}");
+        map.put("host","${env}.db");
+        map.put("env","prod");
+        map.put("schema","admin");
+        map.put("copy","${url}");
+
+        PlaceholderDependencyGraph graph = new VariablePlaceholderValueResolver().buildDependencyGraph(map,false);
+        List<String> order = Arrays.asList(graph.getResolutionOrder());
+        assertEquals(5,order.size());
+        assertTrue(order.indexOf("env") < order.indexOf("host"));
+        assertTrue(order.indexOf("host") < order.indexOf("url"));
+        assertTrue(order.indexOf("schema") < order.indexOf("url"));
+        assertTrue(order.indexOf("url") < order.indexOf("copy"));
+        assertEquals(0,graph.getDependenciesAsMap().get("env").length);
+        assertEquals(2,graph.getDependenciesAsMap().get("url").length);
+
+        Map<String,String> resolved = resolver.resolvedPropertyValues(map);
+        assertEquals("jdbc:mysql://prod.db:3306/admin",resolved.get("url"));
+        assertEquals("jdbc:mysql://prod.db:3306/admin",resolved.get("copy"));
+        assertEquals("prod.db",resolved.get("host"));
+    }
+
+    @Test
+    public void testValueResolverResolvesLongChainsOfReferences() {
+        Map<String,String> map = new HashMap<String,String>();
+        int length = 20000;
+        map.put("key.0","value");
+        for(int i=1;i<length;i++) {
+            map.put("key." + i,"${key." + (i-1) + "}");
+        }
+
+        Map<String,String> resolved = resolver.resolvedPropertyValues(map);
+        assertEquals(length,resolved.size());
+        assertEquals("value",resolved.get("key." + (length-1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueResolverDetectsCircularReferencesWhenResolvingAllProperties() {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("a","${b}");
+        map.put("b","${c}");
+        map.put("c","${a}");
+        map.put("d","d");
+
+        resolver.resolvedPropertyValues(map);
+    }
+
+    @Test
+    public void testParallelResolutionIsTheSameAsSerialResolution() {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("env","prod");
+        map.put("name","env");
+        for(int i=0;i<20000;i++) {
+            switch (i%4) {
+                case 0 : map.put("key." + i,"value." + i); break;
+                case 1 : map.put("key." + i,"${key." + (i-1) + "}-${env}"); break;
+                case 2 : map.put("key." + i," ${${name}}.${missing:${key." + (i-1) + "}} "); break;
+                default : map.put("key." + i,"${key." + (i-3) + ":x}${key." + (i-1) + "}");
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ValueResolver parallel = new VariablePlaceholderValueResolver(new VariablePlaceholderValueResolverConfig()
+                    .setParallelResolutionEnabled(true)
+                    .setParallelResolutionThreshold(1)
+                    .setParallelResolutionPool(pool));
+
+            assertEquals(resolver.resolvedPropertyValues(map,false),parallel.resolvedPropertyValues(map,false));
+            assertEquals(resolver.resolvedPropertyValues(map,true),parallel.resolvedPropertyValues(map,true));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelResolutionFailsTheSameAsSerialResolution() {
+        Map<String,String> map = new HashMap<String,String>();
+        for(int i=0;i<5000;i++) {
+            map.put("key." + i,"${missing." + i + "}");
+        }
+
+        ValueResolverConfig config = new VariablePlaceholderValueResolverConfig()
+                .setIgnoreUnresolvablePlaceholders(false);
+        ValueResolver serial = new VariablePlaceholderValueResolver(config);
+        ValueResolver parallel = new VariablePlaceholderValueResolver(config
+                .setParallelResolutionEnabled(true)
+                .setParallelResolutionThreshold(1));
+
+        String serialMessage = null;
+        String parallelMessage = null;
+        try {
+            serial.resolvedPropertyValues(map);
+        } catch (IllegalArgumentException e) {
+            serialMessage = e.getMessage();
+        }
+        try {
+            parallel.resolvedPropertyValues(map);
+        } catch (IllegalArgumentException e) {
+            parallelMessage = e.getMessage();
+        }
+        assertNotNull(serialMessage);
+        assertEquals(serialMessage,parallelMessage);
+    }
+
+    @Test
+    public void testParallelResolutionDoesNotRetryOtherFailures() {
+        final int[] lookups = new int[1];
+        PlaceholderSource failing = new PlaceholderSource() {
+            @Override
+            public String getValue(String name) {
+                lookups[0]++;
+                throw new IllegalStateException("source unavailable");
+            }
+
+            @Override
+            public Capability getCapability() {
+                return Capability.DYNAMIC;
+            }
+
+            @Override
+            public long getGeneration() {
+                return 0;
+            }
+        };
+
+        ValueResolver parallel = new VariablePlaceholderValueResolver(new VariablePlaceholderValueResolverConfig()
+                .setPlaceholderSources(Arrays.asList(failing))
+                .setParallelResolutionEnabled(true)
+                .setParallelResolutionThreshold(1));
+        try {
+            parallel.resolvedPropertyValues(Collections.singletonMap("key","${external}"));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals(1,lookups[0]);
+        }
+    }
+
+    @Test
+    public void testStreamingResolutionOfAPropertyValue() throws IOException {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("host","  localhost ");
+        map.put("port"," 8080");
+        map.put("url"," http://${host}:${port}/${missing} ");
+
+        StreamingValueResolver streamingResolver = new VariablePlaceholderValueResolver();
+        StringWriter writer = new StringWriter();
+        assertTrue(streamingResolver.resolvePropertyValue(map,"url",true,writer));
+        assertEquals(resolver.resolvedPropertyValue(map,"url",true),writer.toString());
+        assertEquals("http://localhost:8080/${missing}",writer.toString());
+
+        writer = new StringWriter();
+        assertTrue(streamingResolver.resolvePropertyValue(map,"url",false,writer));
+        assertEquals(" http://  localhost : 8080/${missing} ",writer.toString());
+
+        assertFalse(streamingResolver.resolvePropertyValue(map,"nokey",writer));
+    }
+
+    @Test
+    public void testStreamingResolutionOfATemplate() throws IOException {
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("server.name","example.com");
+        map.put("server.port","80");
+        map.put("root","/var/www/${server.name}");
+
+        StreamingValueResolver streamingResolver = new VariablePlaceholderValueResolver();
+        StringBuilder out = new StringBuilder();
+        streamingResolver.resolveTemplate(map,
+                "server {\n  listen ${server.port};\n  server_name ${server.name};\n  root ${root};\n}\n",false,out);
+
+        assertEquals("server {\n  listen 80;\n  server_name example.com;\n  root /var/www/example.com;\n}\n",
+                     out.toString());
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.snapshot;
+
+import org.greencheek.utils.environment.propertyplaceholder.builder.EnvironmentSpecificPropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.builder.PropertiesMergerBuilder;
+import org.greencheek.utils.environment.propertyplaceholder.merger.PropertiesMerger;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.environment.OperatingEnvironmentVariableReader;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.PrefixBasedResourceLoaderFactory;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.SnapshotResourceLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class TestPropertiesSnapshot {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("TestPropertiesSnapshot","");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files!=null) {
+            for(File f : files) delete(f);
+        }
+        file.delete();
+    }
+
+    private static ByteBuffer write(Map<String,String> properties) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PropertiesSnapshotWriter.write(properties,out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Test
+    public void testSnapshotContainsTheSameProperties() throws IOException {
+        Map<String,String> properties = new HashMap<String,String>();
+        Random random = new Random(15);
+        for(int i=0;i<2000;i++) {
+            properties.put("key." + random.nextInt(100000),"value " + random.nextInt(50));
+        }
+        properties.put("","empty key");
+        properties.put("empty.value","");
+        properties.put("unicode.é中","😀 ü");
+
+        PropertiesSnapshot snapshot = PropertiesSnapshot.wrap(write(properties));
+        assertEquals(properties.size(),snapshot.size());
+        for(Map.Entry<String,String> entry : properties.entrySet()) {
+            assertEquals(entry.getValue(),snapshot.get(entry.getKey()));
+            assertTrue(snapshot.containsKey(entry.getKey()));
+        }
+        assertEquals(properties,snapshot);
+        assertEquals(snapshot,properties);
+        assertEquals(properties.hashCode(),snapshot.hashCode());
+    }
+
+    @Test
+    public void testMissingKeys() throws IOException {
+        Map<String,String> properties = new HashMap<String,String>();
+        properties.put("b","2");
+        properties.put("d","4");
+
+        PropertiesSnapshot snapshot = PropertiesSnapshot.wrap(write(properties));
+        assertNull(snapshot.get("a"));
+        assertNull(snapshot.get("c"));
+        assertNull(snapshot.get("e"));
+        assertNull(snapshot.get("bb"));
+        assertNull(snapshot.get(1));
+        assertFalse(snapshot.containsKey("c"));
+
+        PropertiesSnapshot empty = PropertiesSnapshot.wrap(write(new HashMap<String,String>()));
+        assertEquals(0,empty.size());
+        assertNull(empty.get("a"));
+    }
+
+    @Test
+    public void testEntriesAreInUnicodeOrder() throws IOException {
+        Map<String,String> properties = new HashMap<String,String>();
+        for(String key : new String[] {"b","a","é","Z","ab","😀","￠"}) {
+            properties.put(key,key);
+        }
+
+        List<String> keys = new ArrayList<String>();
+        for(Map.Entry<String,String> entry : PropertiesSnapshot.wrap(write(properties)).entrySet()) {
+            keys.add(entry.getKey());
+            assertEquals(entry.getKey(),entry.getValue());
+        }
+        // code point order: the supplementary character sorts after U+FFE0, unlike String.compareTo
+        assertEquals(Arrays.asList("Z","a","ab","b","é","￠","😀"),keys);
+    }
+
+    @Test
+    public void testSharedValuesAreWrittenOnce() throws IOException {
+        Map<String,String> properties = new HashMap<String,String>();
+        for(int i=0;i<100;i++) {
+            properties.put("key" + i,"a value that is shared by every key");
+        }
+        int size = write(properties).remaining();
+        assertTrue(size < PropertiesSnapshot.HEADER_SIZE + 100*PropertiesSnapshot.INDEX_ENTRY_SIZE + 100*5 + 40);
+        assertEquals("a value that is shared by every key",PropertiesSnapshot.wrap(write(properties)).get("key99"));
+    }
+
+    @Test
+    public void testSnapshotIsReadOnly() throws IOException {
+        Map<String,String> properties = new HashMap<String,String>();
+        properties.put("a","1");
+        PropertiesSnapshot snapshot = PropertiesSnapshot.wrap(write(properties));
+        try {
+            snapshot.put("b","2");
+            fail("snapshot should be read only");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            snapshot.entrySet().iterator().next().setValue("2");
+            fail("snapshot should be read only");
+        } catch (UnsupportedOperationException e) {
+        }
+        assertEquals("1",snapshot.get("a"));
+    }
+
+    @Test
+    public void testInvalidSnapshotsAreRejected() throws IOException {
+        File file = new File(directory,"invalid.snapshot");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write("a=properties file\n".getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        try {
+            PropertiesSnapshot.open(file);
+            fail("a properties file is not a snapshot");
+        } catch (IOException e) {
+        }
+
+        Map<String,String> properties = new HashMap<String,String>();
+        properties.put("a","1");
+        ByteBuffer truncated = write(properties);
+        truncated.limit(PropertiesSnapshot.HEADER_SIZE + 4);
+        try {
+            PropertiesSnapshot.wrap(truncated);
+            fail("a truncated snapshot should be rejected");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private PropertiesMergerBuilder builder(String location, String extension) {
+        return new EnvironmentSpecificPropertiesMergerBuilder(new PrefixBasedResourceLoaderFactory().createResourceLoader(location))
+                .setVariablesUsedForSwitchingConfiguration(new String[] {"ENV"})
+                .setExtensionForPropertiesFile(extension)
+                .setOperatingEnvironmentVariableReader(new OperatingEnvironmentVariableReader() {
+                    @Override
+                    public String getProperty(String property, String defaultValue) {
+                        return "production";
+                    }
+
+                    @Override
+                    public String getEnv(String property, String defaultValue) {
+                        return null;
+                    }
+                });
+    }
+
+    private void write(String name, Properties properties) throws IOException {
+        File file = new File(directory,name + ".properties");
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out,null);
+        } finally {
+            out.close();
+        }
+
+        Map<String,String> map = new HashMap<String,String>();
+        for(String key : properties.stringPropertyNames()) {
+            map.put(key,properties.getProperty(key));
+        }
+        PropertiesSnapshotWriter.write(map,new File(directory,name + ".snapshot"));
+    }
+
+    @Test
+    public void testMergingSnapshotsIsTheSameAsMergingPropertiesFiles() throws IOException {
+        Properties defaults = new Properties();
+        defaults.setProperty("host","localhost");
+        defaults.setProperty("port","8080");
+        defaults.setProperty("url","http://${host}:${port}/é");
+        Properties production = new Properties();
+        production.setProperty("host","production.example.com");
+
+        write("default",defaults);
+        write("environments/production",production);
+
+        assertTrue(new PrefixBasedResourceLoaderFactory().createResourceLoader("snapshot:" + directory) instanceof SnapshotResourceLoader);
+
+        Properties fromFiles = builder("file:" + directory,"properties").build().getMergedProperties();
+        Properties fromSnapshots = builder("snapshot:" + directory,"snapshot").build().getMergedProperties();
+        assertEquals("production.example.com",fromSnapshots.getProperty("host"));
+        assertEquals("8080",fromSnapshots.getProperty("port"));
+        assertEquals(fromFiles,fromSnapshots);
+    }
+
+    @Test
+    public void testPropertiesMergedOverASnapshotAreReadFromTheSnapshot() throws IOException {
+        Properties defaults = new Properties();
+        for(int i=0;i<1000;i++) {
+            defaults.setProperty("key" + i,"default " + i);
+        }
+        write("default",defaults);
+
+        PropertiesMerger merger = builder("snapshot:" + directory,"snapshot").setReturningReadOnlyMergedProperties(true).build();
+        assertEquals(defaults,merger.getMergedProperties());
+        assertEquals(1000,merger.getSourcesOfProperties().size());
+        assertTrue(merger.getSourceOfProperty("key999").endsWith("default.snapshot"));
+
+        Properties production = new Properties();
+        production.setProperty("key1","production");
+        production.setProperty("production","production");
+        write("environments/production",production);
+
+        for(boolean readOnly : new boolean[] {true,false}) {
+            merger = builder("snapshot:" + directory,"snapshot").setReturningReadOnlyMergedProperties(readOnly).build();
+            Properties merged = merger.getMergedProperties();
+            assertEquals(builder("file:" + directory,"properties").build().getMergedProperties(),merged);
+            assertEquals(1001,merged.size());
+            assertEquals("production",merged.getProperty("key1"));
+            assertEquals("default 2",merged.getProperty("key2"));
+            assertEquals("production",merger.getMergedPropertiesAsMap().get("production"));
+            assertEquals(1001,merger.getSourcesOfProperties().size());
+            assertTrue(merger.getSourceOfProperty("key1").endsWith("production.snapshot"));
+            assertTrue(merger.getSourceOfProperty("key2").endsWith("default.snapshot"));
+            assertNull(merger.getSourceOfProperty("key1000"));
+        }
+    }
+}
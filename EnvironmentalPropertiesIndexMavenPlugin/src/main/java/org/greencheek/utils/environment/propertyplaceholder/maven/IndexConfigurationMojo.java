@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 dominictootell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greencheek.utils.environment.propertyplaceholder.maven;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>
+ * Writes the {@link ClassPathResourceIndex} of the configuration files in the project's classes directory, to
+ * META-INF/environment-properties.idx; so that
+ * {@link org.greencheek.utils.environment.propertyplaceholder.resolver.resource.ClassPathResourceLoader} does not ask
+ * the classloader for the environment and operational override files that do not exist.
+ * </p>
+ * <pre>
+ *     &lt;plugin&gt;
+ *         &lt;groupId&gt;org.greencheek&lt;/groupId&gt;
+ *         &lt;artifactId&gt;environment-properties-merger-maven-plugin&lt;/artifactId&gt;
+ *         &lt;executions&gt;
+ *             &lt;execution&gt;
+ *                 &lt;goals&gt;&lt;goal&gt;index&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;/execution&gt;
+ *         &lt;/executions&gt;
+ *     &lt;/plugin&gt;
+ * </pre>
+ */
+@Mojo(name = "index", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class IndexConfigurationMojo extends AbstractMojo {
+
+    /**
+     * The classpath locations of the configuration to index; the locations set by
+     * setLocationForLoadingConfigurationProperties (without the classpath: prefix).
+     */
+    @Parameter(defaultValue = "config")
+    private List<String> locations;
+
+    /**
+     * The classes directory, which the configuration has been copied to
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    @Parameter(property = "environment-properties.index.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if(skip) {
+            getLog().info("Skipping the index of the configuration files");
+            return;
+        }
+        try {
+            File index = ClassPathResourceIndex.write(outputDirectory,locations);
+            getLog().info("Wrote the index of the configuration files in " + locations + " to " + index);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write the index of the configuration files",e);
+        }
+    }
+}